@@ -33,14 +33,28 @@ public class BasicSliceOutput
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(BasicSliceOutput.class).instanceSize();
 
-    private final Slice slice;
+    private final SlicePool pool;
+    private Slice slice;
     private int size;
 
     protected BasicSliceOutput(Slice slice)
     {
+        this.pool = null;
         this.slice = requireNonNull(slice, "slice is null");
     }
 
+    /**
+     * Creates an output over a buffer of at least the specified capacity
+     * from the pool.  The capacity is rounded up to the size class of the
+     * pool.  Call {@link #release()} to return the buffer to the pool once
+     * the output, and any slice returned by it, is no longer used.
+     */
+    public BasicSliceOutput(SlicePool pool, int capacity)
+    {
+        this.pool = requireNonNull(pool, "pool is null");
+        this.slice = pool.allocate(capacity);
+    }
+
     @Override
     public void reset()
     {
@@ -223,6 +237,20 @@ public class BasicSliceOutput
         return slice;
     }
 
+    /**
+     * Returns the buffer of this output to its pool, if it was allocated
+     * from one, and leaves this output empty with no capacity.  Slices
+     * previously returned by this output must not be used afterwards.
+     */
+    public void release()
+    {
+        if (pool != null) {
+            pool.release(slice);
+        }
+        slice = Slices.EMPTY_SLICE;
+        size = 0;
+    }
+
     @Override
     public String toString()
     {
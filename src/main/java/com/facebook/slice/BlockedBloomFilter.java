@@ -0,0 +1,241 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.SIZE_OF_INT;
+import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A Bloom filter that sets all bits for a key within a single 64 byte block,
+ * so each lookup touches one cache line.
+ * <p>
+ * The filter is stored in a single slice containing a small header followed
+ * by the blocks, which can be on heap or direct.  {@link #serialize()}
+ * returns that slice and {@link #deserialize(Slice)} wraps an existing slice,
+ * so neither copies the bits.
+ * <p>
+ * Keys are hashed with {@link XxHash64}.  Callers that already have a
+ * 64-bit hash of the key, for example from {@link Murmur3Hash128#hash64},
+ * can use the {@code Hash} methods instead, as long as every user of the
+ * filter hashes keys the same way.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class BlockedBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BlockedBloomFilter.class).instanceSize();
+
+    private static final byte FORMAT_VERSION = 1;
+
+    // version (byte), hash count (byte), reserved (short), block count (int)
+    private static final int HEADER_SIZE = SIZE_OF_LONG;
+    private static final int BLOCK_SIZE = 64;
+    private static final int BLOCK_BITS_MASK = BLOCK_SIZE * Byte.SIZE - 1;
+    private static final int MAX_HASH_COUNT = 16;
+    private static final int MAX_BLOCK_COUNT = (Slices.MAX_ARRAY_SIZE - HEADER_SIZE) / BLOCK_SIZE;
+
+    private final Slice data;
+    private final int blockCount;
+    private final int hashCount;
+
+    private BlockedBloomFilter(Slice data, int blockCount, int hashCount)
+    {
+        this.data = data;
+        this.blockCount = blockCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Creates a filter on heap sized for the expected number of keys and
+     * false positive probability.
+     */
+    public static BlockedBloomFilter create(long expectedInsertions, double falsePositiveProbability)
+    {
+        return create(expectedInsertions, falsePositiveProbability, false);
+    }
+
+    /**
+     * Creates a filter in direct memory sized for the expected number of
+     * keys and false positive probability.
+     */
+    public static BlockedBloomFilter createDirect(long expectedInsertions, double falsePositiveProbability)
+    {
+        return create(expectedInsertions, falsePositiveProbability, true);
+    }
+
+    private static BlockedBloomFilter create(long expectedInsertions, double falsePositiveProbability, boolean direct)
+    {
+        checkArgument(expectedInsertions >= 0, "expectedInsertions is negative");
+        checkArgument(falsePositiveProbability > 0 && falsePositiveProbability < 1, "falsePositiveProbability must be between 0 and 1");
+
+        // the optimal sizes for a standard Bloom filter, blocking raises the
+        // false positive rate slightly for the same number of bits
+        double bitsPerKey = -Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        int hashCount = (int) Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(bitsPerKey * Math.log(2))));
+        double blocks = Math.ceil(Math.max(1, expectedInsertions) * bitsPerKey / (BLOCK_SIZE * Byte.SIZE));
+        checkArgument(blocks <= MAX_BLOCK_COUNT, "Bloom filter would be too large");
+        int blockCount = (int) Math.max(1, blocks);
+
+        int size = HEADER_SIZE + blockCount * BLOCK_SIZE;
+        Slice data = direct ? Slices.allocateDirect(size) : Slices.allocate(size);
+        data.setByte(0, FORMAT_VERSION);
+        data.setByte(1, hashCount);
+        data.setInt(SIZE_OF_INT, blockCount);
+        return new BlockedBloomFilter(data, blockCount, hashCount);
+    }
+
+    /**
+     * Returns a filter backed by the specified slice, which must contain a
+     * filter produced by {@link #serialize()}.  The slice is not copied, so
+     * changes to the filter are visible in the slice and vice versa.
+     */
+    public static BlockedBloomFilter deserialize(Slice data)
+    {
+        requireNonNull(data, "data is null");
+        checkArgument(data.length() >= HEADER_SIZE, "Bloom filter data is too short");
+        checkArgument(data.getByte(0) == FORMAT_VERSION, "Unsupported Bloom filter format version");
+        int hashCount = data.getUnsignedByte(1);
+        int blockCount = data.getInt(SIZE_OF_INT);
+        checkArgument(hashCount >= 1 && hashCount <= MAX_HASH_COUNT, "Invalid Bloom filter hash count");
+        checkArgument(blockCount >= 1 && blockCount <= MAX_BLOCK_COUNT, "Invalid Bloom filter block count");
+        checkArgument(data.length() == HEADER_SIZE + blockCount * BLOCK_SIZE, "Bloom filter data size does not match the block count");
+        return new BlockedBloomFilter(data, blockCount, hashCount);
+    }
+
+    /**
+     * Returns the slice backing this filter.  The slice is not copied, so
+     * later changes to the filter are visible in the returned slice.
+     */
+    public Slice serialize()
+    {
+        return data;
+    }
+
+    public int getBlockCount()
+    {
+        return blockCount;
+    }
+
+    public int getHashCount()
+    {
+        return hashCount;
+    }
+
+    public long getRetainedSize()
+    {
+        return INSTANCE_SIZE + data.getRetainedSize();
+    }
+
+    public void put(Slice key)
+    {
+        putHash(XxHash64.hash(key));
+    }
+
+    public void put(Slice key, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, key.length());
+        putHash(XxHash64.hash(key, offset, length));
+    }
+
+    public void putHash(long hash)
+    {
+        int blockOffset = blockOffset(hash);
+        long probes = probes(hash);
+        int h1 = (int) probes;
+        int h2 = (int) (probes >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & BLOCK_BITS_MASK;
+            int wordOffset = blockOffset + ((bit >>> 6) << 3);
+            data.setLongUnchecked(wordOffset, data.getLongUnchecked(wordOffset) | (1L << bit));
+        }
+    }
+
+    /**
+     * Returns false if the key was definitely not added to this filter.
+     */
+    public boolean mightContain(Slice key)
+    {
+        return mightContainHash(XxHash64.hash(key));
+    }
+
+    public boolean mightContain(Slice key, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, key.length());
+        return mightContainHash(XxHash64.hash(key, offset, length));
+    }
+
+    public boolean mightContainHash(long hash)
+    {
+        int blockOffset = blockOffset(hash);
+        long probes = probes(hash);
+        int h1 = (int) probes;
+        int h2 = (int) (probes >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & BLOCK_BITS_MASK;
+            // the shift only uses the low six bits of the bit index
+            if ((data.getLongUnchecked(blockOffset + ((bit >>> 6) << 3)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all keys of the specified filter to this filter.  Both filters
+     * must have the same size and hash count.
+     */
+    public void merge(BlockedBloomFilter other)
+    {
+        checkArgument(blockCount == other.blockCount && hashCount == other.hashCount, "Bloom filters have different sizes");
+        int end = HEADER_SIZE + blockCount * BLOCK_SIZE;
+        for (int offset = HEADER_SIZE; offset < end; offset += SIZE_OF_LONG) {
+            data.setLongUnchecked(offset, data.getLongUnchecked(offset) | other.data.getLongUnchecked(offset));
+        }
+    }
+
+    /**
+     * Selects the block with the high 32 bits of the hash.
+     */
+    private int blockOffset(long hash)
+    {
+        int block = (int) (((hash >>> 32) * blockCount) >>> 32);
+        return HEADER_SIZE + block * BLOCK_SIZE;
+    }
+
+    /**
+     * Mixes the hash so the bits within the block do not depend on the bits
+     * used to select the block.
+     */
+    private static long probes(long hash)
+    {
+        long probes = hash * 0x9E3779B97F4A7C15L;
+        // an odd step visits distinct bits in the block
+        return (probes ^ (probes >>> 29)) | (1L << 32);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("BlockedBloomFilter{");
+        builder.append("blockCount=").append(blockCount);
+        builder.append(", hashCount=").append(hashCount);
+        builder.append('}');
+        return builder.toString();
+    }
+}
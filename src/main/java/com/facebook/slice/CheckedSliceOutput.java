@@ -0,0 +1,359 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.SizeOf.SIZE_OF_BYTE;
+import static com.facebook.slice.SizeOf.SIZE_OF_INT;
+import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
+import static com.facebook.slice.SizeOf.SIZE_OF_SHORT;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SliceOutput} that forwards all writes to a delegate and updates
+ * a {@link Checksum} with the written bytes, so the bytes are checksummed
+ * while they are written instead of being read back afterwards.  Hashers
+ * can be used through {@link XxHash64#asChecksum()} and
+ * {@link XxHash3#asChecksum()}.
+ * <p>
+ * Small writes are collected in a buffer and added to the checksum in
+ * bulk, so the checksum is only up to date when obtained through
+ * {@link #getChecksum()}, or after {@link #flush()} or {@link #close()}.
+ */
+public class CheckedSliceOutput
+        extends SliceOutput
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(CheckedSliceOutput.class).instanceSize();
+
+    private static final int PENDING_BUFFER_SIZE = 512;
+
+    private final SliceOutput delegate;
+    private final Checksum checksum;
+
+    // bytes written to the delegate but not yet added to the checksum
+    private final byte[] pendingBuffer = new byte[PENDING_BUFFER_SIZE];
+    private final Slice pending = Slices.wrappedBuffer(pendingBuffer);
+    private int pendingSize;
+
+    public CheckedSliceOutput(SliceOutput delegate, Checksum checksum)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.checksum = requireNonNull(checksum, "checksum is null");
+    }
+
+    /**
+     * Returns the checksum, updated with all bytes written so far.
+     */
+    public Checksum getChecksum()
+    {
+        flushPending();
+        return checksum;
+    }
+
+    public SliceOutput getDelegate()
+    {
+        return delegate;
+    }
+
+    @Override
+    public void flush()
+            throws IOException
+    {
+        flushPending();
+        delegate.flush();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        flushPending();
+        delegate.close();
+    }
+
+    /**
+     * Resets the delegate and the checksum.
+     */
+    @Override
+    public void reset()
+    {
+        delegate.reset();
+        checksum.reset();
+        pendingSize = 0;
+    }
+
+    /**
+     * Only a reset to the start of the output is supported, because a
+     * checksum can not be rewound.
+     */
+    @Override
+    public void reset(int position)
+    {
+        if (position != 0) {
+            throw new UnsupportedOperationException("Checksum can not be rewound");
+        }
+        reset();
+    }
+
+    @Override
+    public int size()
+    {
+        return delegate.size();
+    }
+
+    @Override
+    public long getRetainedSize()
+    {
+        return INSTANCE_SIZE + delegate.getRetainedSize() + pending.getRetainedSize();
+    }
+
+    @Override
+    public int writableBytes()
+    {
+        return delegate.writableBytes();
+    }
+
+    @Override
+    public boolean isWritable()
+    {
+        return delegate.isWritable();
+    }
+
+    @Override
+    public void writeByte(int value)
+    {
+        delegate.writeByte(value);
+        ensurePendingSpace(SIZE_OF_BYTE);
+        pending.setByteUnchecked(pendingSize, value);
+        pendingSize += SIZE_OF_BYTE;
+    }
+
+    @Override
+    public void writeShort(int value)
+    {
+        delegate.writeShort(value);
+        ensurePendingSpace(SIZE_OF_SHORT);
+        pending.setShortUnchecked(pendingSize, value);
+        pendingSize += SIZE_OF_SHORT;
+    }
+
+    @Override
+    public void writeInt(int value)
+    {
+        delegate.writeInt(value);
+        ensurePendingSpace(SIZE_OF_INT);
+        pending.setIntUnchecked(pendingSize, value);
+        pendingSize += SIZE_OF_INT;
+    }
+
+    @Override
+    public void writeLong(long value)
+    {
+        delegate.writeLong(value);
+        ensurePendingSpace(SIZE_OF_LONG);
+        pending.setLongUnchecked(pendingSize, value);
+        pendingSize += SIZE_OF_LONG;
+    }
+
+    // floating point values are written as raw bits, so the delegate and the checksum see the same bytes
+    @Override
+    public void writeFloat(float value)
+    {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void writeBytes(Slice source)
+    {
+        writeBytes(source, 0, source.length());
+    }
+
+    @Override
+    public void writeBytes(Slice source, int sourceIndex, int length)
+    {
+        delegate.writeBytes(source, sourceIndex, length);
+        if (length <= PENDING_BUFFER_SIZE - pendingSize) {
+            pending.setBytes(pendingSize, source, sourceIndex, length);
+            pendingSize += length;
+        }
+        else {
+            flushPending();
+            SliceChecksums.update(checksum, source, sourceIndex, length);
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] source)
+    {
+        writeBytes(source, 0, source.length);
+    }
+
+    @Override
+    public void writeBytes(byte[] source, int sourceIndex, int length)
+    {
+        delegate.writeBytes(source, sourceIndex, length);
+        if (length <= PENDING_BUFFER_SIZE - pendingSize) {
+            System.arraycopy(source, sourceIndex, pendingBuffer, pendingSize, length);
+            pendingSize += length;
+        }
+        else {
+            flushPending();
+            checksum.update(source, sourceIndex, length);
+        }
+    }
+
+    @Override
+    public void writeBytes(InputStream in, int length)
+            throws IOException
+    {
+        checkArgument(length >= 0, "length is negative");
+        flushPending();
+        while (length > 0) {
+            int bytesRead = in.read(pendingBuffer, 0, min(length, PENDING_BUFFER_SIZE));
+            if (bytesRead < 0) {
+                throw new EOFException("End of stream");
+            }
+            delegate.writeBytes(pendingBuffer, 0, bytesRead);
+            checksum.update(pendingBuffer, 0, bytesRead);
+            length -= bytesRead;
+        }
+    }
+
+    @Override
+    public void writeZero(int length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        delegate.writeZero(length);
+        while (length > 0) {
+            ensurePendingSpace(min(length, PENDING_BUFFER_SIZE));
+            int size = min(length, PENDING_BUFFER_SIZE - pendingSize);
+            Arrays.fill(pendingBuffer, pendingSize, pendingSize + size, (byte) 0);
+            pendingSize += size;
+            length -= size;
+        }
+    }
+
+    @Override
+    public SliceOutput appendLong(long value)
+    {
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendDouble(double value)
+    {
+        writeDouble(value);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendInt(int value)
+    {
+        writeInt(value);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendShort(int value)
+    {
+        writeShort(value);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendByte(int value)
+    {
+        writeByte(value);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendBytes(byte[] source, int sourceIndex, int length)
+    {
+        writeBytes(source, sourceIndex, length);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendBytes(byte[] source)
+    {
+        writeBytes(source);
+        return this;
+    }
+
+    @Override
+    public SliceOutput appendBytes(Slice slice)
+    {
+        writeBytes(slice);
+        return this;
+    }
+
+    @Override
+    public Slice slice()
+    {
+        return delegate.slice();
+    }
+
+    @Override
+    public Slice getUnderlyingSlice()
+    {
+        return delegate.getUnderlyingSlice();
+    }
+
+    @Override
+    public String toString(Charset charset)
+    {
+        return delegate.toString(charset);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("CheckedSliceOutput{");
+        builder.append("delegate=").append(delegate);
+        builder.append(", checksum=").append(checksum);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    private void ensurePendingSpace(int length)
+    {
+        if (pendingSize + length > PENDING_BUFFER_SIZE) {
+            flushPending();
+        }
+    }
+
+    private void flushPending()
+    {
+        checksum.update(pendingBuffer, 0, pendingSize);
+        pendingSize = 0;
+    }
+}
@@ -207,6 +207,22 @@ public final class ChunkedSliceInput
         return slice;
     }
 
+    @Override
+    Slice readBufferedSlice(int maxLength)
+    {
+        long remaining = globalLength - position();
+        if (maxLength <= 0 || remaining <= 0) {
+            return Slices.EMPTY_SLICE;
+        }
+        if (available() == 0) {
+            ensureAvailable((int) min(remaining, buffer.length()));
+        }
+        int length = min(maxLength, available());
+        Slice view = buffer.slice(bufferPosition, length);
+        bufferPosition += length;
+        return view;
+    }
+
     @Override
     public void readBytes(Slice destination, int destinationIndex, int length)
     {
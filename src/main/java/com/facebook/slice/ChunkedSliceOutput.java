@@ -0,0 +1,463 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.SIZE_OF_BYTE;
+import static com.facebook.slice.SizeOf.SIZE_OF_INT;
+import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
+import static com.facebook.slice.SizeOf.SIZE_OF_SHORT;
+import static com.facebook.slice.SizeOf.sizeOfObjectArray;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A growable output that appends to a list of fixed size chunks, so
+ * growing the output never copies the bytes already written, unlike
+ * {@link DynamicSliceOutput}, which copies its buffer every time it
+ * doubles.  The written bytes are exposed as a list of chunks by
+ * {@link #getChunks()}, for example for a gathering write, or copied into
+ * a single slice by {@link #slice()}.
+ * <p>
+ * The chunks are allocated from a {@link SlicePool} if one is given, in
+ * which case {@link #release()} should be called once the output is no
+ * longer used.  The size of the output is limited to 2 GB.
+ * <p>
+ * This class is not thread safe.
+ */
+public class ChunkedSliceOutput
+        extends SliceOutput
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(ChunkedSliceOutput.class).instanceSize();
+
+    private final int chunkSize;
+    @Nullable
+    private final SlicePool pool;
+
+    // all chunks of the output, the last of which is being filled
+    private final List<Slice> chunks = new ArrayList<>();
+    private Slice buffer = Slices.EMPTY_SLICE;
+    private int bufferPosition;
+    // the number of bytes in the chunks before the buffer
+    private int completedSize;
+
+    // used for values that span two chunks
+    private final Slice scratch = Slices.allocate(SIZE_OF_LONG);
+
+    public ChunkedSliceOutput(int chunkSize)
+    {
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        this.chunkSize = chunkSize;
+        this.pool = null;
+    }
+
+    /**
+     * Creates an output whose chunks are allocated from the specified pool.
+     * The chunk size is rounded up to the size class of the pool.
+     */
+    public ChunkedSliceOutput(int chunkSize, SlicePool pool)
+    {
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        this.chunkSize = chunkSize;
+        this.pool = requireNonNull(pool, "pool is null");
+    }
+
+    @Override
+    public void reset()
+    {
+        reset(0);
+    }
+
+    /**
+     * Truncates the output to the specified position.  Chunks after the
+     * position are released.
+     */
+    @Override
+    public void reset(int position)
+    {
+        checkArgument(position >= 0, "position is negative");
+        checkArgument(position <= size(), "position is larger than size");
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        int chunkLength = chunks.get(0).length();
+        int index = (position == 0) ? 0 : (position - 1) / chunkLength;
+        while (chunks.size() > index + 1) {
+            releaseChunk(chunks.remove(chunks.size() - 1));
+        }
+        buffer = chunks.get(index);
+        completedSize = index * chunkLength;
+        bufferPosition = position - completedSize;
+    }
+
+    @Override
+    public int size()
+    {
+        return completedSize + bufferPosition;
+    }
+
+    @Override
+    public long getRetainedSize()
+    {
+        long size = INSTANCE_SIZE + scratch.getRetainedSize() + sizeOfObjectArray(chunks.size());
+        for (Slice chunk : chunks) {
+            size += chunk.getRetainedSize();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isWritable()
+    {
+        return writableBytes() > 0;
+    }
+
+    @Override
+    public int writableBytes()
+    {
+        return buffer.length() - bufferPosition;
+    }
+
+    @Override
+    public void writeByte(int value)
+    {
+        if (bufferPosition == buffer.length()) {
+            nextChunk();
+        }
+        buffer.setByteUnchecked(bufferPosition, value);
+        bufferPosition += SIZE_OF_BYTE;
+    }
+
+    @Override
+    public void writeShort(int value)
+    {
+        if (buffer.length() - bufferPosition >= SIZE_OF_SHORT) {
+            buffer.setShortUnchecked(bufferPosition, value);
+            bufferPosition += SIZE_OF_SHORT;
+        }
+        else {
+            scratch.setShortUnchecked(0, value);
+            writeBytes(scratch, 0, SIZE_OF_SHORT);
+        }
+    }
+
+    @Override
+    public void writeInt(int value)
+    {
+        if (buffer.length() - bufferPosition >= SIZE_OF_INT) {
+            buffer.setIntUnchecked(bufferPosition, value);
+            bufferPosition += SIZE_OF_INT;
+        }
+        else {
+            scratch.setIntUnchecked(0, value);
+            writeBytes(scratch, 0, SIZE_OF_INT);
+        }
+    }
+
+    @Override
+    public void writeLong(long value)
+    {
+        if (buffer.length() - bufferPosition >= SIZE_OF_LONG) {
+            buffer.setLongUnchecked(bufferPosition, value);
+            bufferPosition += SIZE_OF_LONG;
+        }
+        else {
+            scratch.setLongUnchecked(0, value);
+            writeBytes(scratch, 0, SIZE_OF_LONG);
+        }
+    }
+
+    @Override
+    public void writeFloat(float value)
+    {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void writeBytes(Slice source)
+    {
+        writeBytes(source, 0, source.length());
+    }
+
+    @Override
+    public void writeBytes(Slice source, int sourceIndex, int length)
+    {
+        checkPositionIndexes(sourceIndex, sourceIndex + length, source.length());
+        while (length > 0) {
+            if (bufferPosition == buffer.length()) {
+                nextChunk();
+            }
+            int bytes = min(length, buffer.length() - bufferPosition);
+            buffer.setBytes(bufferPosition, source, sourceIndex, bytes);
+            bufferPosition += bytes;
+            sourceIndex += bytes;
+            length -= bytes;
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] source)
+    {
+        writeBytes(source, 0, source.length);
+    }
+
+    @Override
+    public void writeBytes(byte[] source, int sourceIndex, int length)
+    {
+        checkPositionIndexes(sourceIndex, sourceIndex + length, source.length);
+        while (length > 0) {
+            if (bufferPosition == buffer.length()) {
+                nextChunk();
+            }
+            int bytes = min(length, buffer.length() - bufferPosition);
+            buffer.setBytes(bufferPosition, source, sourceIndex, bytes);
+            bufferPosition += bytes;
+            sourceIndex += bytes;
+            length -= bytes;
+        }
+    }
+
+    @Override
+    public void writeBytes(InputStream in, int length)
+            throws IOException
+    {
+        checkArgument(length >= 0, "length is negative");
+        while (length > 0) {
+            if (bufferPosition == buffer.length()) {
+                nextChunk();
+            }
+            int bytes = min(length, buffer.length() - bufferPosition);
+            buffer.setBytes(bufferPosition, in, bytes);
+            bufferPosition += bytes;
+            length -= bytes;
+        }
+    }
+
+    // pooled chunks are not cleared, so the zeros are always written
+    @Override
+    public void writeZero(int length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        while (length > 0) {
+            if (bufferPosition == buffer.length()) {
+                nextChunk();
+            }
+            int bytes = min(length, buffer.length() - bufferPosition);
+            unsafe.setMemory(buffer.getBase(), buffer.getAddress() + bufferPosition, bytes, (byte) 0);
+            bufferPosition += bytes;
+            length -= bytes;
+        }
+    }
+
+    @Override
+    public ChunkedSliceOutput appendLong(long value)
+    {
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendDouble(double value)
+    {
+        writeDouble(value);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendInt(int value)
+    {
+        writeInt(value);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendShort(int value)
+    {
+        writeShort(value);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendByte(int value)
+    {
+        writeByte(value);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendBytes(byte[] source, int sourceIndex, int length)
+    {
+        writeBytes(source, sourceIndex, length);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendBytes(byte[] source)
+    {
+        writeBytes(source);
+        return this;
+    }
+
+    @Override
+    public ChunkedSliceOutput appendBytes(Slice slice)
+    {
+        writeBytes(slice);
+        return this;
+    }
+
+    /**
+     * Returns the written bytes as a list of slices sharing memory with
+     * this output.  All slices but the last cover an entire chunk, and
+     * the list is empty if nothing has been written.  The slices are only
+     * valid until this output is reset or released.
+     */
+    public List<Slice> getChunks()
+    {
+        List<Slice> result = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            result.add(chunks.get(i));
+        }
+        if (bufferPosition > 0) {
+            result.add(buffer.slice(0, bufferPosition));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Writes the written bytes to the channel with gathering writes, without
+     * copying them.
+     */
+    public void writeTo(GatheringByteChannel channel)
+            throws IOException
+    {
+        SliceChannels.write(channel, getChunks());
+    }
+
+    /**
+     * Returns the written bytes as a single slice.  The bytes are copied
+     * into a new slice, unless they all fit in the first chunk, in which
+     * case the returned slice shares memory with this output.
+     */
+    @Override
+    public Slice slice()
+    {
+        if (completedSize == 0) {
+            return buffer.slice(0, bufferPosition);
+        }
+        return copySlice();
+    }
+
+    /**
+     * Returns a copy of the written bytes.
+     */
+    public Slice copySlice()
+    {
+        Slice copy = Slices.allocate(size());
+        int position = 0;
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            Slice chunk = chunks.get(i);
+            copy.setBytes(position, chunk);
+            position += chunk.length();
+        }
+        copy.setBytes(position, buffer, 0, bufferPosition);
+        return copy;
+    }
+
+    /**
+     * Returns the chunk being filled.  The earlier chunks are returned by
+     * {@link #getChunks()}.
+     */
+    @Override
+    public Slice getUnderlyingSlice()
+    {
+        return buffer;
+    }
+
+    /**
+     * Returns all chunks to the pool, if any, and resets this output.
+     * Slices previously returned by this output must not be used
+     * afterwards, unless they were copied.
+     */
+    public void release()
+    {
+        for (Slice chunk : chunks) {
+            releaseChunk(chunk);
+        }
+        chunks.clear();
+        buffer = Slices.EMPTY_SLICE;
+        bufferPosition = 0;
+        completedSize = 0;
+    }
+
+    @Override
+    public String toString(Charset charset)
+    {
+        return slice().toString(charset);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("ChunkedSliceOutput{");
+        builder.append("size=").append(size());
+        builder.append(", chunkCount=").append(chunks.size());
+        builder.append(", chunkSize=").append(chunkSize);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    /**
+     * Moves to the next chunk, which must only be done once the current
+     * chunk is full.
+     */
+    private void nextChunk()
+    {
+        int chunkLength = chunks.isEmpty() ? chunkSize : chunks.get(0).length();
+        if (completedSize + bufferPosition > Integer.MAX_VALUE - chunkLength) {
+            throw new SliceTooLargeException("Chunked output would exceed " + Integer.MAX_VALUE + " bytes");
+        }
+        completedSize += bufferPosition;
+        buffer = (pool == null) ? Slices.allocate(chunkSize) : pool.allocate(chunkSize);
+        bufferPosition = 0;
+        chunks.add(buffer);
+    }
+
+    private void releaseChunk(Slice chunk)
+    {
+        if (pool != null) {
+            pool.release(chunk);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * A CRC32C (Castagnoli) checksum that reads slices in place, whether they
+ * are heap or direct.  This is a table driven implementation processing
+ * eight bytes per step, used when {@code java.util.zip.CRC32C} is not
+ * available; see {@link SliceChecksums#newCrc32c()}.
+ */
+public final class Crc32c
+        implements SliceChecksum
+{
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    // eight 256 entry tables, where table k advances the crc over a byte followed by k zero bytes
+    private static final int[] TABLES = createTables();
+
+    private int crc;
+
+    @Override
+    public void update(int b)
+    {
+        crc = ~updateByte(~crc, (byte) b);
+    }
+
+    @Override
+    public void update(byte[] data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length);
+        crc = update(crc, data, ARRAY_BYTE_BASE_OFFSET + offset, length);
+    }
+
+    public void update(Slice data)
+    {
+        update(data, 0, data.length());
+    }
+
+    @Override
+    public void update(Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        crc = update(crc, data.getBase(), data.getAddress() + offset, length);
+    }
+
+    @Override
+    public long getValue()
+    {
+        return crc & 0xFFFF_FFFFL;
+    }
+
+    @Override
+    public void reset()
+    {
+        crc = 0;
+    }
+
+    private static int update(int crc, Object base, long address, int length)
+    {
+        int[] tables = TABLES;
+        crc = ~crc;
+        while (length >= 8) {
+            long value = unsafe.getLong(base, address);
+            int low = ((int) value) ^ crc;
+            int high = (int) (value >>> 32);
+            crc = tables[7 * 256 + (low & 0xFF)] ^
+                    tables[6 * 256 + ((low >>> 8) & 0xFF)] ^
+                    tables[5 * 256 + ((low >>> 16) & 0xFF)] ^
+                    tables[4 * 256 + (low >>> 24)] ^
+                    tables[3 * 256 + (high & 0xFF)] ^
+                    tables[2 * 256 + ((high >>> 8) & 0xFF)] ^
+                    tables[256 + ((high >>> 16) & 0xFF)] ^
+                    tables[high >>> 24];
+            address += 8;
+            length -= 8;
+        }
+        while (length > 0) {
+            crc = updateByte(crc, unsafe.getByte(base, address));
+            address++;
+            length--;
+        }
+        return ~crc;
+    }
+
+    private static int updateByte(int crc, byte value)
+    {
+        return (crc >>> 8) ^ TABLES[(crc ^ value) & 0xFF];
+    }
+
+    private static int[] createTables()
+    {
+        int[] tables = new int[8 * 256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = ((crc & 1) != 0) ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            tables[i] = crc;
+        }
+        for (int table = 1; table < 8; table++) {
+            for (int i = 0; i < 256; i++) {
+                int previous = tables[(table - 1) * 256 + i];
+                tables[table * 256 + i] = (previous >>> 8) ^ tables[previous & 0xFF];
+            }
+        }
+        return tables;
+    }
+}
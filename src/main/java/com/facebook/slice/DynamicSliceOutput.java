@@ -26,20 +26,36 @@ import static com.facebook.slice.SizeOf.SIZE_OF_FLOAT;
 import static com.facebook.slice.SizeOf.SIZE_OF_INT;
 import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
 import static com.facebook.slice.SizeOf.SIZE_OF_SHORT;
+import static java.util.Objects.requireNonNull;
 
 public class DynamicSliceOutput
         extends SliceOutput
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(DynamicSliceOutput.class).instanceSize();
 
+    private final SlicePool pool;
     private Slice slice;
     private int size;
 
     public DynamicSliceOutput(int estimatedSize)
     {
+        this.pool = null;
         this.slice = Slices.allocate(estimatedSize);
     }
 
+    /**
+     * Creates an output whose buffers are allocated from the specified pool.
+     * When the output grows, the previous buffer is returned to the pool, so
+     * slices returned by {@link #slice()} and {@link #getUnderlyingSlice()}
+     * are only valid until the next write that grows the output.  Call
+     * {@link #release()} once the output is no longer used.
+     */
+    public DynamicSliceOutput(int estimatedSize, SlicePool pool)
+    {
+        this.pool = requireNonNull(pool, "pool is null");
+        this.slice = pool.allocate(estimatedSize);
+    }
+
     @Override
     public void reset()
     {
@@ -81,7 +97,7 @@ public class DynamicSliceOutput
     @Override
     public void writeByte(int value)
     {
-        slice = Slices.ensureSize(slice, size + SIZE_OF_BYTE);
+        ensureSize(size + SIZE_OF_BYTE);
         slice.setByte(size, value);
         size += SIZE_OF_BYTE;
     }
@@ -89,7 +105,7 @@ public class DynamicSliceOutput
     @Override
     public void writeShort(int value)
     {
-        slice = Slices.ensureSize(slice, size + SIZE_OF_SHORT);
+        ensureSize(size + SIZE_OF_SHORT);
         slice.setShort(size, value);
         size += SIZE_OF_SHORT;
     }
@@ -97,7 +113,7 @@ public class DynamicSliceOutput
     @Override
     public void writeInt(int value)
     {
-        slice = Slices.ensureSize(slice, size + SIZE_OF_INT);
+        ensureSize(size + SIZE_OF_INT);
         slice.setInt(size, value);
         size += SIZE_OF_INT;
     }
@@ -105,7 +121,7 @@ public class DynamicSliceOutput
     @Override
     public void writeLong(long value)
     {
-        slice = Slices.ensureSize(slice, size + SIZE_OF_LONG);
+        ensureSize(size + SIZE_OF_LONG);
         slice.setLong(size, value);
         size += SIZE_OF_LONG;
     }
@@ -113,7 +129,7 @@ public class DynamicSliceOutput
     @Override
     public void writeFloat(float value)
     {
-        slice = Slices.ensureSize(slice, size + SIZE_OF_FLOAT);
+        ensureSize(size + SIZE_OF_FLOAT);
         slice.setFloat(size, value);
         size += SIZE_OF_FLOAT;
     }
@@ -121,7 +137,7 @@ public class DynamicSliceOutput
     @Override
     public void writeDouble(double value)
     {
-        slice = Slices.ensureSize(slice, size + SIZE_OF_DOUBLE);
+        ensureSize(size + SIZE_OF_DOUBLE);
         slice.setDouble(size, value);
         size += SIZE_OF_DOUBLE;
     }
@@ -135,7 +151,7 @@ public class DynamicSliceOutput
     @Override
     public void writeBytes(byte[] source, int sourceIndex, int length)
     {
-        slice = Slices.ensureSize(slice, size + length);
+        ensureSize(size + length);
         slice.setBytes(size, source, sourceIndex, length);
         size += length;
     }
@@ -149,7 +165,7 @@ public class DynamicSliceOutput
     @Override
     public void writeBytes(Slice source, int sourceIndex, int length)
     {
-        slice = Slices.ensureSize(slice, size + length);
+        ensureSize(size + length);
         slice.setBytes(size, source, sourceIndex, length);
         size += length;
     }
@@ -158,7 +174,7 @@ public class DynamicSliceOutput
     public void writeBytes(InputStream in, int length)
             throws IOException
     {
-        slice = Slices.ensureSize(slice, size + length);
+        ensureSize(size + length);
         slice.setBytes(size, in, length);
         size += length;
     }
@@ -166,7 +182,7 @@ public class DynamicSliceOutput
     @Override
     public void writeZero(int length)
     {
-        slice = Slices.ensureSize(slice, size + length);
+        ensureSize(size + length);
         super.writeZero(length);
     }
 
@@ -245,6 +261,39 @@ public class DynamicSliceOutput
         return slice;
     }
 
+    /**
+     * Returns the buffer of this output to its pool, if any, and resets this
+     * output.  Slices previously returned by this output must not be used
+     * afterwards.
+     */
+    public void release()
+    {
+        if (pool != null) {
+            pool.release(slice);
+        }
+        slice = Slices.EMPTY_SLICE;
+        size = 0;
+    }
+
+    private void ensureSize(int minWritableBytes)
+    {
+        if (pool == null) {
+            slice = Slices.ensureSize(slice, minWritableBytes);
+            return;
+        }
+        if (minWritableBytes <= slice.length()) {
+            return;
+        }
+        if (minWritableBytes > Slices.MAX_ARRAY_SIZE) {
+            throw new SliceTooLargeException("Cannot allocate slice larger than " + Slices.MAX_ARRAY_SIZE + " bytes");
+        }
+
+        Slice newSlice = pool.allocate((int) Math.max(minWritableBytes, Math.min(slice.length() * 2L, Slices.MAX_ARRAY_SIZE)));
+        newSlice.setBytes(0, slice, 0, size);
+        pool.release(slice);
+        slice = newSlice;
+    }
+
     @Override
     public String toString()
     {
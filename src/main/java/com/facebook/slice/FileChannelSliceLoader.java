@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import com.facebook.slice.ChunkedSliceInput.BufferReference;
+import com.facebook.slice.ChunkedSliceInput.SliceLoader;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SliceLoader} for {@link ChunkedSliceInput} that reads a file with
+ * positional reads into a heap or direct buffer.
+ * <p>
+ * If an executor is given, the chunk following each load is read ahead on
+ * the executor into a second buffer, so a sequential scan decodes one
+ * chunk while the next is read.  A load served by the read-ahead copies
+ * the chunk into the buffer of the input, which is much cheaper than a
+ * blocking read.  The read-ahead starts slightly before the end of the
+ * previous load, since the input rereads a value that spans two chunks.
+ * The executor must not interrupt its threads, as an interrupted read
+ * closes the channel.
+ * <p>
+ * The loader owns the channel, and closes it when closed.
+ */
+public final class FileChannelSliceLoader
+        implements SliceLoader<BufferReference>
+{
+    private static final int READ_AHEAD_OVERLAP = 64;
+
+    private final FileChannel channel;
+    private final long size;
+    private final boolean direct;
+    @Nullable
+    private final Executor readAheadExecutor;
+
+    @Nullable
+    private Slice readAheadBuffer;
+    @Nullable
+    private CompletableFuture<?> readAhead;
+    private long readAheadPosition;
+    private int readAheadLength;
+
+    private long loadCount;
+    private long readAheadHitCount;
+
+    /**
+     * Creates a loader without read-ahead.
+     */
+    public FileChannelSliceLoader(FileChannel channel, boolean direct)
+    {
+        this(channel, direct, null);
+    }
+
+    /**
+     * Creates a loader that reads ahead on the specified executor, or
+     * without read-ahead if the executor is null.
+     */
+    public FileChannelSliceLoader(FileChannel channel, boolean direct, @Nullable Executor readAheadExecutor)
+    {
+        this.channel = requireNonNull(channel, "channel is null");
+        this.direct = direct;
+        this.readAheadExecutor = readAheadExecutor;
+        try {
+            this.size = channel.size();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public BufferReference createBuffer(int bufferSize)
+    {
+        Slice buffer = allocate(bufferSize);
+        if (readAheadExecutor != null) {
+            // larger than the buffer of the input, so a load starting in the overlap is covered
+            readAheadBuffer = allocate(bufferSize + READ_AHEAD_OVERLAP);
+        }
+        return () -> buffer;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public void load(long position, BufferReference bufferReference, int length)
+    {
+        Slice destination = bufferReference.getSlice();
+        loadCount++;
+        if (readAheadBuffer == null) {
+            read(position, destination, length);
+            return;
+        }
+
+        boolean covered = readAhead != null && position >= readAheadPosition && position + length <= readAheadPosition + readAheadLength;
+        if (covered && awaitReadAhead()) {
+            destination.setBytes(0, readAheadBuffer, (int) (position - readAheadPosition), length);
+            readAheadHitCount++;
+        }
+        else {
+            // a pending read-ahead into the other buffer does not conflict with this read
+            read(position, destination, length);
+            awaitReadAhead();
+        }
+        startReadAhead(position + length - min(READ_AHEAD_OVERLAP, length));
+    }
+
+    /**
+     * Returns the number of loads.
+     */
+    public long getLoadCount()
+    {
+        return loadCount;
+    }
+
+    /**
+     * Returns the number of loads served by the read-ahead.
+     */
+    public long getReadAheadHitCount()
+    {
+        return readAheadHitCount;
+    }
+
+    /**
+     * Returns the fraction of loads served by the read-ahead, or zero if
+     * there have been no loads.
+     */
+    public double getReadAheadHitRate()
+    {
+        return (loadCount == 0) ? 0 : (double) readAheadHitCount / loadCount;
+    }
+
+    /**
+     * Waits for a pending read-ahead and closes the channel.
+     */
+    @Override
+    public void close()
+    {
+        awaitReadAhead();
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("FileChannelSliceLoader{");
+        builder.append("size=").append(size);
+        builder.append(", direct=").append(direct);
+        builder.append(", readAhead=").append(readAheadExecutor != null);
+        builder.append(", loadCount=").append(loadCount);
+        builder.append(", readAheadHitCount=").append(readAheadHitCount);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    private void startReadAhead(long position)
+    {
+        if (position >= size) {
+            return;
+        }
+        long start = position;
+        int length = (int) min(readAheadBuffer.length(), size - position);
+        Slice buffer = readAheadBuffer;
+        try {
+            readAhead = CompletableFuture.runAsync(() -> read(start, buffer, length), readAheadExecutor);
+        }
+        catch (RejectedExecutionException e) {
+            // the next load reads synchronously
+            return;
+        }
+        readAheadPosition = start;
+        readAheadLength = length;
+    }
+
+    /**
+     * Waits for the pending read-ahead, if any.
+     *
+     * @return true if the read-ahead completed successfully
+     */
+    private boolean awaitReadAhead()
+    {
+        if (readAhead == null) {
+            return false;
+        }
+        CompletableFuture<?> future = readAhead;
+        readAhead = null;
+        try {
+            future.join();
+            return true;
+        }
+        catch (CompletionException | CancellationException e) {
+            // the failure is reported by the synchronous read, if the range is needed
+            return false;
+        }
+    }
+
+    private void read(long position, Slice destination, int length)
+    {
+        try {
+            SliceChannels.readFully(channel, position, destination, 0, length);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Slice allocate(int bufferSize)
+    {
+        return direct ? Slices.allocateDirect(bufferSize) : Slices.allocate(bufferSize);
+    }
+}
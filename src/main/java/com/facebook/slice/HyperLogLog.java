@@ -0,0 +1,367 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.SIZE_OF_BYTE;
+import static com.facebook.slice.SizeOf.SIZE_OF_INT;
+import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
+import static com.facebook.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct values.
+ * <p>
+ * A new sketch starts in the sparse format, which stores only the non-zero
+ * registers in a sorted int array, and switches to the dense format once
+ * that would use more memory than the dense registers.  The dense format
+ * stores one byte per register in a slice, after a two byte header.
+ * {@link #serialize()} returns that slice, and {@link #deserialize(Slice)}
+ * wraps a serialized dense sketch without copying, so a sketch read with
+ * {@link Slices#wrappedBuffer} can be merged directly.
+ * <p>
+ * Values are hashed with {@link XxHash64}.  Callers that already have a
+ * 64-bit hash of the value, for example from {@link Murmur3Hash128#hash64},
+ * can use {@link #addHash(long)} instead, as long as every sketch that is
+ * merged hashes values the same way.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class HyperLogLog
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(HyperLogLog.class).instanceSize();
+
+    private static final byte DENSE_FORMAT = 1;
+    private static final byte SPARSE_FORMAT = 2;
+
+    // format (byte), index bit length (byte)
+    private static final int HEADER_SIZE = 2 * SIZE_OF_BYTE;
+
+    private static final int MIN_INDEX_BIT_LENGTH = 4;
+    private static final int MAX_INDEX_BIT_LENGTH = 16;
+
+    private static final long HIGH_BITS = 0x8080_8080_8080_8080L;
+    private static final long LOW_BITS = 0x0101_0101_0101_0101L;
+
+    private static final double[] INVERSE_POWERS_OF_TWO = new double[Long.SIZE + 1];
+
+    static {
+        for (int i = 0; i < INVERSE_POWERS_OF_TWO.length; i++) {
+            INVERSE_POWERS_OF_TWO[i] = Math.scalb(1.0, -i);
+        }
+    }
+
+    private final int indexBitLength;
+    private final int registerCount;
+
+    // register index in the high bits and value in the low byte, sorted by index; null when dense
+    private int[] sparseEntries;
+    private int sparseSize;
+
+    // header followed by one byte per register; null when sparse
+    private Slice dense;
+
+    private HyperLogLog(int indexBitLength, int[] sparseEntries, int sparseSize, Slice dense)
+    {
+        this.indexBitLength = indexBitLength;
+        this.registerCount = 1 << indexBitLength;
+        this.sparseEntries = sparseEntries;
+        this.sparseSize = sparseSize;
+        this.dense = dense;
+    }
+
+    /**
+     * Creates an empty sketch with {@code 2^indexBitLength} registers.  The
+     * standard error of the estimate is about {@code 1.04 / sqrt(2^indexBitLength)}.
+     */
+    public static HyperLogLog newInstance(int indexBitLength)
+    {
+        checkArgument(indexBitLength >= MIN_INDEX_BIT_LENGTH && indexBitLength <= MAX_INDEX_BIT_LENGTH, "indexBitLength must be between 4 and 16");
+        return new HyperLogLog(indexBitLength, new int[8], 0, null);
+    }
+
+    /**
+     * Returns the sketch stored in the specified slice.  A dense sketch is
+     * backed by the slice without copying, so changes to the sketch are
+     * visible in the slice.
+     */
+    public static HyperLogLog deserialize(Slice serialized)
+    {
+        requireNonNull(serialized, "serialized is null");
+        checkArgument(serialized.length() >= HEADER_SIZE, "HyperLogLog data is too short");
+        byte format = serialized.getByte(0);
+        int indexBitLength = serialized.getUnsignedByte(1);
+        checkArgument(indexBitLength >= MIN_INDEX_BIT_LENGTH && indexBitLength <= MAX_INDEX_BIT_LENGTH, "Invalid HyperLogLog index bit length");
+        int registerCount = 1 << indexBitLength;
+
+        if (format == DENSE_FORMAT) {
+            checkArgument(serialized.length() == HEADER_SIZE + registerCount, "HyperLogLog data size does not match the register count");
+            for (int index = 0; index < registerCount; index++) {
+                checkArgument(isValidValue(serialized.getByteUnchecked(HEADER_SIZE + index), indexBitLength), "Invalid HyperLogLog register value");
+            }
+            return new HyperLogLog(indexBitLength, null, 0, serialized);
+        }
+
+        checkArgument(format == SPARSE_FORMAT, "Unsupported HyperLogLog format");
+        checkArgument(serialized.length() >= HEADER_SIZE + SIZE_OF_INT, "HyperLogLog data is too short");
+        int size = serialized.getInt(HEADER_SIZE);
+        checkArgument(size >= 0 && size <= registerCount && serialized.length() == HEADER_SIZE + SIZE_OF_INT + size * SIZE_OF_INT, "HyperLogLog data size does not match the entry count");
+        int[] entries = new int[Math.max(size, 8)];
+        serialized.getBytes(HEADER_SIZE + SIZE_OF_INT, Slices.wrappedIntArray(entries), 0, size * SIZE_OF_INT);
+        for (int i = 0; i < size; i++) {
+            // only non-zero registers are stored
+            int value = entries[i] & 0xFF;
+            checkArgument(index(entries[i]) < registerCount && value != 0 && isValidValue(value, indexBitLength), "Invalid HyperLogLog sparse entry");
+            checkArgument(i == 0 || index(entries[i - 1]) < index(entries[i]), "HyperLogLog sparse entries are not sorted");
+        }
+        return new HyperLogLog(indexBitLength, entries, size, null);
+    }
+
+    /**
+     * Returns the serialized form of this sketch.  For a dense sketch this is
+     * the slice backing the sketch, so later changes to the sketch are
+     * visible in the returned slice.
+     */
+    public Slice serialize()
+    {
+        if (dense != null) {
+            return dense;
+        }
+        Slice serialized = Slices.allocate(HEADER_SIZE + SIZE_OF_INT + sparseSize * SIZE_OF_INT);
+        serialized.setByte(0, SPARSE_FORMAT);
+        serialized.setByte(1, indexBitLength);
+        serialized.setInt(HEADER_SIZE, sparseSize);
+        serialized.setBytes(HEADER_SIZE + SIZE_OF_INT, Slices.wrappedIntArray(sparseEntries, 0, sparseSize));
+        return serialized;
+    }
+
+    public int getIndexBitLength()
+    {
+        return indexBitLength;
+    }
+
+    public boolean isSparse()
+    {
+        return dense == null;
+    }
+
+    public long getRetainedSize()
+    {
+        if (dense != null) {
+            return INSTANCE_SIZE + dense.getRetainedSize();
+        }
+        return INSTANCE_SIZE + sizeOf(sparseEntries);
+    }
+
+    public void add(Slice value)
+    {
+        addHash(XxHash64.hash(value));
+    }
+
+    public void add(Slice value, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, value.length());
+        addHash(XxHash64.hash(value, offset, length));
+    }
+
+    public void addHash(long hash)
+    {
+        int index = (int) (hash >>> (Long.SIZE - indexBitLength));
+        // the marker bit bounds the value when the remaining bits are all zero
+        int value = Long.numberOfLeadingZeros((hash << indexBitLength) | (1L << (indexBitLength - 1))) + 1;
+        setRegister(index, value);
+    }
+
+    private void setRegister(int index, int value)
+    {
+        if (dense != null) {
+            if (dense.getByteUnchecked(HEADER_SIZE + index) < value) {
+                dense.setByteUnchecked(HEADER_SIZE + index, value);
+            }
+            return;
+        }
+
+        int position = findSparseEntry(index);
+        if (position >= 0) {
+            if ((sparseEntries[position] & 0xFF) < value) {
+                sparseEntries[position] = entry(index, value);
+            }
+            return;
+        }
+
+        // switch to dense once the sparse entries would use more memory
+        if ((sparseSize + 1) * SIZE_OF_INT > registerCount) {
+            convertToDense();
+            setRegister(index, value);
+            return;
+        }
+        position = -(position + 1);
+        if (sparseSize == sparseEntries.length) {
+            sparseEntries = Arrays.copyOf(sparseEntries, sparseEntries.length * 2);
+        }
+        System.arraycopy(sparseEntries, position, sparseEntries, position + 1, sparseSize - position);
+        sparseEntries[position] = entry(index, value);
+        sparseSize++;
+    }
+
+    private int findSparseEntry(int index)
+    {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleIndex = index(sparseEntries[middle]);
+            if (middleIndex < index) {
+                low = middle + 1;
+            }
+            else if (middleIndex > index) {
+                high = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void convertToDense()
+    {
+        Slice registers = Slices.allocate(HEADER_SIZE + registerCount);
+        registers.setByte(0, DENSE_FORMAT);
+        registers.setByte(1, indexBitLength);
+        for (int i = 0; i < sparseSize; i++) {
+            registers.setByteUnchecked(HEADER_SIZE + index(sparseEntries[i]), sparseEntries[i] & 0xFF);
+        }
+        dense = registers;
+        sparseEntries = null;
+        sparseSize = 0;
+    }
+
+    /**
+     * Merges the specified sketch into this sketch.  Both sketches must have
+     * the same number of registers.  Dense sketches are merged eight
+     * registers at a time, reading the registers of the other sketch in
+     * place.
+     */
+    public void mergeWith(HyperLogLog other)
+    {
+        checkArgument(indexBitLength == other.indexBitLength, "Cannot merge HyperLogLogs with different index bit lengths");
+
+        if (other.dense == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                setRegister(index(other.sparseEntries[i]), other.sparseEntries[i] & 0xFF);
+            }
+            return;
+        }
+
+        if (dense == null) {
+            convertToDense();
+        }
+        Slice left = dense;
+        Slice right = other.dense;
+        int end = HEADER_SIZE + registerCount;
+        for (int offset = HEADER_SIZE; offset < end; offset += SIZE_OF_LONG) {
+            left.setLongUnchecked(offset, max(left.getLongUnchecked(offset), right.getLongUnchecked(offset)));
+        }
+    }
+
+    /**
+     * Returns the byte-wise maximum of two words whose bytes are all less
+     * than 128, as register values always are.
+     */
+    private static long max(long left, long right)
+    {
+        // the high bit of each byte is set where left is greater than or equal to right
+        long greaterOrEqual = ((left | HIGH_BITS) - right) & HIGH_BITS;
+        long mask = (greaterOrEqual >>> 7) * 0xFF;
+        return (left & mask) | (right & ~mask);
+    }
+
+    /**
+     * Returns the estimated number of distinct values added to this sketch.
+     */
+    public long cardinality()
+    {
+        double sum = 0;
+        int zeros = 0;
+        if (dense != null) {
+            for (int index = 0; index < registerCount; index++) {
+                int value = dense.getByteUnchecked(HEADER_SIZE + index);
+                sum += INVERSE_POWERS_OF_TWO[value];
+                if (value == 0) {
+                    zeros++;
+                }
+            }
+        }
+        else {
+            zeros = registerCount - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += INVERSE_POWERS_OF_TWO[sparseEntries[i] & 0xFF];
+            }
+        }
+
+        double estimate = alpha(registerCount) * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeros > 0) {
+            // linear counting is more accurate for small cardinalities
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int registerCount)
+    {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    private static boolean isValidValue(int value, int indexBitLength)
+    {
+        return value >= 0 && value <= Long.SIZE - indexBitLength + 1;
+    }
+
+    private static int entry(int index, int value)
+    {
+        return (index << Byte.SIZE) | value;
+    }
+
+    private static int index(int entry)
+    {
+        return entry >>> Byte.SIZE;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("HyperLogLog{");
+        builder.append("indexBitLength=").append(indexBitLength);
+        builder.append(", sparse=").append(isSparse());
+        builder.append(", cardinality=").append(cardinality());
+        builder.append('}');
+        return builder.toString();
+    }
+}
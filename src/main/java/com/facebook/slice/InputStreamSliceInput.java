@@ -245,6 +245,18 @@ public final class InputStreamSliceInput
         return newSlice;
     }
 
+    @Override
+    Slice readBufferedSlice(int maxLength)
+    {
+        int length = Math.min(maxLength, available());
+        if (length <= 0) {
+            return Slices.EMPTY_SLICE;
+        }
+        Slice view = slice.slice(bufferPosition, length);
+        bufferPosition += length;
+        return view;
+    }
+
     @Override
     public void readBytes(Slice destination, int destinationIndex, int length)
     {
@@ -15,10 +15,17 @@ package com.facebook.slice;
 
 import sun.misc.Unsafe;
 
+import javax.annotation.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
 import static com.facebook.slice.Preconditions.checkArgument;
+import static java.lang.invoke.MethodType.methodType;
 import static sun.misc.Unsafe.ARRAY_BOOLEAN_INDEX_SCALE;
 import static sun.misc.Unsafe.ARRAY_BYTE_INDEX_SCALE;
 import static sun.misc.Unsafe.ARRAY_DOUBLE_INDEX_SCALE;
@@ -33,6 +40,10 @@ final class JvmUtils
 
     private static final long ADDRESS_OFFSET;
 
+    // Unsafe.invokeCleaner, which was added in Java 9
+    @Nullable
+    private static final MethodHandle INVOKE_CLEANER;
+
     static {
         try {
             // fetch theUnsafe object
@@ -54,6 +65,8 @@ final class JvmUtils
 
             // fetch the address field for direct buffers
             ADDRESS_OFFSET = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+
+            INVOKE_CLEANER = findInvokeCleaner();
         }
         catch (ReflectiveOperationException e) {
             throw new RuntimeException(e);
@@ -73,5 +86,54 @@ final class JvmUtils
         return unsafe.getLong(buffer, ADDRESS_OFFSET);
     }
 
+    /**
+     * Frees the memory of a direct or memory mapped buffer without waiting
+     * for the garbage collector.  The buffer must not be a slice or a
+     * duplicate of another buffer, and neither the buffer nor anything
+     * sharing its memory may be used afterwards.
+     *
+     * @return false if the buffer can not be freed on this JVM, in which
+     * case it is freed when it is garbage collected
+     */
+    static boolean freeDirectBuffer(ByteBuffer buffer)
+    {
+        checkArgument(buffer.isDirect(), "buffer is not direct");
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invokeExact(buffer);
+                return true;
+            }
+
+            // before Java 9, the cleaner of the buffer is invoked directly
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) {
+                return false;
+            }
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            cleanMethod.invoke(cleaner);
+            return true;
+        }
+        catch (Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static MethodHandle findInvokeCleaner()
+    {
+        try {
+            return MethodHandles.lookup().findVirtual(Unsafe.class, "invokeCleaner", methodType(void.class, ByteBuffer.class)).bindTo(unsafe);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     private JvmUtils() {}
 }
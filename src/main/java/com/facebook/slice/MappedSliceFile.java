@@ -0,0 +1,966 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.slice.JvmUtils.freeDirectBuffer;
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.SIZE_OF_BYTE;
+import static com.facebook.slice.SizeOf.SIZE_OF_DOUBLE;
+import static com.facebook.slice.SizeOf.SIZE_OF_FLOAT;
+import static com.facebook.slice.SizeOf.SIZE_OF_INT;
+import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
+import static com.facebook.slice.SizeOf.SIZE_OF_SHORT;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A memory mapped file of any size, addressed with {@code long} positions.
+ * Unlike {@link Slices#mapFileReadOnly(File)}, which maps the whole file
+ * into a single slice and is limited to 2 GB, the file is mapped as a
+ * sequence of segments of a fixed power of two size.
+ * <p>
+ * {@link #slice(long, int)} returns a view of the mapped memory when the
+ * range is within a segment, and a copy when it spans two segments.
+ * Values spanning two segments are assembled from their bytes.
+ * <p>
+ * A file mapped with {@link #mapReadWrite(File)} is written in place, and
+ * the changes are made durable with {@link #force()}.  The file can be
+ * extended with {@link #grow(long)}, which maps only the new range, so
+ * slices obtained earlier remain valid until the replaced mappings are
+ * released.  A file mapped with
+ * {@link #mapPrivate(File)} is copy-on-write: changes are visible only
+ * through this object, and are never written to the file.  Writing to a
+ * read-only mapping fails with {@link UnsupportedOperationException}, but
+ * writing to a slice of a read-only mapping crashes the JVM.
+ * <p>
+ * The segments are unmapped when the file is closed, rather than when
+ * the garbage collector finds them unreachable.  Accessing a closed file
+ * fails with {@link IllegalStateException}, but slices and segments
+ * obtained from the file must not be used after it is closed, and the
+ * file must not be closed or grown while other threads use it, as
+ * accessing unmapped memory crashes the JVM.  If the JVM does not support
+ * unmapping, the segments are unmapped when garbage collected.
+ * <p>
+ * The pages of a new mapping are read from the file on first access, one
+ * page fault at a time.  {@link #load(long, long)} reads a range ahead of
+ * random lookups, so they do not stall on page faults.
+ */
+public final class MappedSliceFile
+        implements Closeable
+{
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    private static final int PAGE_SIZE = unsafe.pageSize();
+
+    // written by touchPages, so the JIT does not eliminate the reads
+    @SuppressWarnings("unused")
+    private static int touched;
+
+    private final MapMode mode;
+    private final int segmentShift;
+    private final long segmentMask;
+    // kept open for growing a read-write mapping
+    @Nullable
+    private final RandomAccessFile randomAccessFile;
+
+    private long length;
+    private MappedByteBuffer[] buffers;
+    private Slice[] segments;
+    // segments replaced by grow, which are kept mapped for slices obtained before
+    private final List<MappedByteBuffer> retiredBuffers = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Maps the entire file read-only, with the default segment size.
+     */
+    public static MappedSliceFile map(File file)
+            throws IOException
+    {
+        return map(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the entire file read-only, with the specified segment size,
+     * which must be a power of two.
+     */
+    public static MappedSliceFile map(File file, int segmentSize)
+            throws IOException
+    {
+        return open(file, MapMode.READ_ONLY, segmentSize);
+    }
+
+    /**
+     * Maps the entire file for reading and writing, with the default
+     * segment size.  The file is created if it does not exist.
+     */
+    public static MappedSliceFile mapReadWrite(File file)
+            throws IOException
+    {
+        return mapReadWrite(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the entire file for reading and writing, with the specified
+     * segment size, which must be a power of two.  The file is created if
+     * it does not exist.
+     */
+    public static MappedSliceFile mapReadWrite(File file, int segmentSize)
+            throws IOException
+    {
+        return open(file, MapMode.READ_WRITE, segmentSize);
+    }
+
+    /**
+     * Maps the entire file copy-on-write, with the default segment size.
+     */
+    public static MappedSliceFile mapPrivate(File file)
+            throws IOException
+    {
+        return mapPrivate(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the entire file copy-on-write, with the specified segment size,
+     * which must be a power of two.
+     */
+    public static MappedSliceFile mapPrivate(File file, int segmentSize)
+            throws IOException
+    {
+        return open(file, MapMode.PRIVATE, segmentSize);
+    }
+
+    private static MappedSliceFile open(File file, MapMode mode, int segmentSize)
+            throws IOException
+    {
+        requireNonNull(file, "file is null");
+        checkArgument(segmentSize > 0 && Integer.bitCount(segmentSize) == 1, "segmentSize must be a power of two");
+        if (mode != MapMode.READ_WRITE && !file.exists()) {
+            throw new FileNotFoundException(file.toString());
+        }
+
+        // a private mapping requires a file opened for writing, although it is never written
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, (mode == MapMode.READ_ONLY) ? "r" : "rw");
+        try {
+            MappedSliceFile mappedFile = new MappedSliceFile(randomAccessFile, mode, segmentSize);
+            if (mode != MapMode.READ_WRITE) {
+                // the mappings remain valid after the file is closed
+                randomAccessFile.close();
+            }
+            return mappedFile;
+        }
+        catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private MappedSliceFile(RandomAccessFile randomAccessFile, MapMode mode, int segmentSize)
+            throws IOException
+    {
+        this.mode = mode;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+        this.randomAccessFile = (mode == MapMode.READ_WRITE) ? randomAccessFile : null;
+
+        buffers = new MappedByteBuffer[0];
+        segments = new Slice[0];
+        mapSegments(randomAccessFile.getChannel(), randomAccessFile.length());
+    }
+
+    /**
+     * Returns the size of the mapped file.
+     */
+    public long length()
+    {
+        return length;
+    }
+
+    public MapMode getMapMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the number of segments the file is mapped as.
+     */
+    public int getSegmentCount()
+    {
+        return segments.length;
+    }
+
+    /**
+     * Returns the mapped memory of the specified segment.  The slice is
+     * writable, unless the file is mapped read-only, and must not be used
+     * after the file is closed.
+     */
+    public Slice getSegment(int index)
+    {
+        checkNotClosed();
+        checkArgument(index >= 0 && index < segments.length, "Invalid segment index");
+        return segments[index];
+    }
+
+    public int getSegmentSize()
+    {
+        return 1 << segmentShift;
+    }
+
+    public byte getByte(long position)
+    {
+        checkRange(position, SIZE_OF_BYTE);
+        return segments[segmentIndex(position)].getByteUnchecked(segmentOffset(position));
+    }
+
+    public short getShort(long position)
+    {
+        checkRange(position, SIZE_OF_SHORT);
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - SIZE_OF_SHORT) {
+            return segment.getShortUnchecked(offset);
+        }
+        return (short) getSpanning(position, SIZE_OF_SHORT);
+    }
+
+    public int getInt(long position)
+    {
+        checkRange(position, SIZE_OF_INT);
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - SIZE_OF_INT) {
+            return segment.getIntUnchecked(offset);
+        }
+        return (int) getSpanning(position, SIZE_OF_INT);
+    }
+
+    public long getLong(long position)
+    {
+        checkRange(position, SIZE_OF_LONG);
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - SIZE_OF_LONG) {
+            return segment.getLongUnchecked(offset);
+        }
+        return getSpanning(position, SIZE_OF_LONG);
+    }
+
+    public float getFloat(long position)
+    {
+        return Float.intBitsToFloat(getInt(position));
+    }
+
+    public double getDouble(long position)
+    {
+        return Double.longBitsToDouble(getLong(position));
+    }
+
+    /**
+     * Copies the bytes of the file at the specified position into the
+     * specified portion of the destination slice.
+     */
+    public void getBytes(long position, Slice destination, int destinationIndex, int length)
+    {
+        checkPositionIndexes(destinationIndex, destinationIndex + length, destination.length());
+        checkRange(position, length);
+        while (length > 0) {
+            Slice segment = segments[segmentIndex(position)];
+            int offset = segmentOffset(position);
+            int size = min(length, segment.length() - offset);
+            segment.getBytes(offset, destination, destinationIndex, size);
+            position += size;
+            destinationIndex += size;
+            length -= size;
+        }
+    }
+
+    /**
+     * Copies the bytes of the file at the specified position into the
+     * specified portion of the destination array.
+     */
+    public void getBytes(long position, byte[] destination, int destinationIndex, int length)
+    {
+        checkPositionIndexes(destinationIndex, destinationIndex + length, destination.length);
+        checkRange(position, length);
+        while (length > 0) {
+            Slice segment = segments[segmentIndex(position)];
+            int offset = segmentOffset(position);
+            int size = min(length, segment.length() - offset);
+            segment.getBytes(offset, destination, destinationIndex, size);
+            position += size;
+            destinationIndex += size;
+            length -= size;
+        }
+    }
+
+    /**
+     * Returns the specified range of the file.  If the range is within a
+     * segment, the returned slice is a view of the mapped memory, and must
+     * not be used after the file is closed; otherwise it is a copy.
+     */
+    public Slice slice(long position, int length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        checkRange(position, length);
+        if (length == 0) {
+            return Slices.EMPTY_SLICE;
+        }
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - length) {
+            return segment.slice(offset, length);
+        }
+        Slice copy = Slices.allocate(length);
+        getBytes(position, copy, 0, length);
+        return copy;
+    }
+
+    public void setByte(long position, int value)
+    {
+        checkWritable();
+        checkRange(position, SIZE_OF_BYTE);
+        segments[segmentIndex(position)].setByteUnchecked(segmentOffset(position), value);
+    }
+
+    public void setShort(long position, int value)
+    {
+        checkWritable();
+        checkRange(position, SIZE_OF_SHORT);
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - SIZE_OF_SHORT) {
+            segment.setShortUnchecked(offset, value);
+        }
+        else {
+            setSpanning(position, value, SIZE_OF_SHORT);
+        }
+    }
+
+    public void setInt(long position, int value)
+    {
+        checkWritable();
+        checkRange(position, SIZE_OF_INT);
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - SIZE_OF_INT) {
+            segment.setIntUnchecked(offset, value);
+        }
+        else {
+            setSpanning(position, value, SIZE_OF_INT);
+        }
+    }
+
+    public void setLong(long position, long value)
+    {
+        checkWritable();
+        checkRange(position, SIZE_OF_LONG);
+        Slice segment = segments[segmentIndex(position)];
+        int offset = segmentOffset(position);
+        if (offset <= segment.length() - SIZE_OF_LONG) {
+            segment.setLongUnchecked(offset, value);
+        }
+        else {
+            setSpanning(position, value, SIZE_OF_LONG);
+        }
+    }
+
+    public void setFloat(long position, float value)
+    {
+        setInt(position, Float.floatToRawIntBits(value));
+    }
+
+    public void setDouble(long position, double value)
+    {
+        setLong(position, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Copies the specified portion of the source slice into the file at the
+     * specified position.
+     */
+    public void setBytes(long position, Slice source, int sourceIndex, int length)
+    {
+        checkWritable();
+        checkPositionIndexes(sourceIndex, sourceIndex + length, source.length());
+        checkRange(position, length);
+        while (length > 0) {
+            Slice segment = segments[segmentIndex(position)];
+            int offset = segmentOffset(position);
+            int size = min(length, segment.length() - offset);
+            segment.setBytes(offset, source, sourceIndex, size);
+            position += size;
+            sourceIndex += size;
+            length -= size;
+        }
+    }
+
+    /**
+     * Copies the specified portion of the source array into the file at the
+     * specified position.
+     */
+    public void setBytes(long position, byte[] source, int sourceIndex, int length)
+    {
+        checkWritable();
+        checkPositionIndexes(sourceIndex, sourceIndex + length, source.length);
+        checkRange(position, length);
+        while (length > 0) {
+            Slice segment = segments[segmentIndex(position)];
+            int offset = segmentOffset(position);
+            int size = min(length, segment.length() - offset);
+            segment.setBytes(offset, source, sourceIndex, size);
+            position += size;
+            sourceIndex += size;
+            length -= size;
+        }
+    }
+
+    /**
+     * Writes the changes to a read-write mapping to the storage device.
+     * This has no effect on other mappings.
+     */
+    public void force()
+    {
+        checkNotClosed();
+        if (mode != MapMode.READ_WRITE) {
+            return;
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+        for (MappedByteBuffer buffer : retiredBuffers) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Extends a read-write mapped file to the specified length, and maps the
+     * new range.  The new bytes are zero.  Slices obtained before remain
+     * valid, as the replaced mapping of a partial last segment is kept until
+     * {@link #releaseRetiredMappings()} or {@link #close()}.  Each grow can
+     * retire a mapping, so a file that grows in small steps should grow by
+     * amortized amounts, such as doubling its length.
+     */
+    public void grow(long newLength)
+            throws IOException
+    {
+        if (mode != MapMode.READ_WRITE) {
+            throw new UnsupportedOperationException("Only a read-write mapping can grow");
+        }
+        checkArgument(newLength >= length, "newLength is less than the file length");
+        checkNotClosed();
+        if (newLength == length) {
+            return;
+        }
+        randomAccessFile.setLength(newLength);
+        mapSegments(randomAccessFile.getChannel(), newLength);
+    }
+
+    /**
+     * Unmaps the mappings replaced by {@link #grow(long)}.  Slices obtained
+     * from the last segment before it was grown must not be used afterwards,
+     * as accessing unmapped memory crashes the JVM.  The data is not lost,
+     * as it is also mapped by the current segments.
+     */
+    public void releaseRetiredMappings()
+    {
+        for (MappedByteBuffer buffer : retiredBuffers) {
+            freeDirectBuffer(buffer);
+        }
+        retiredBuffers.clear();
+    }
+
+    /**
+     * Returns the number of mappings replaced by {@link #grow(long)} that are
+     * still mapped.
+     */
+    public int getRetiredMappingCount()
+    {
+        return retiredBuffers.size();
+    }
+
+    /**
+     * Returns a new input over the entire file.  Slices read from the input
+     * are views of the mapped memory when they are within a segment.
+     */
+    public FixedLengthSliceInput getInput()
+    {
+        return new Input(this);
+    }
+
+    /**
+     * Loads the specified range of the file into physical memory, so it can
+     * be accessed without page faults until the operating system evicts
+     * it.  Segments are loaded with {@link MappedByteBuffer#load()}, which
+     * also advises the operating system to read the range ahead.  Where the
+     * JVM can not load part of a mapping, one byte of each page is read.
+     */
+    public void load(long position, long length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        checkRange(position, length);
+        long end = position + length;
+        while (position < end) {
+            int index = segmentIndex(position);
+            int offset = segmentOffset(position);
+            int size = (int) min(segments[index].length() - offset, end - position);
+            loadSegment(index, offset, size);
+            position += size;
+        }
+    }
+
+    /**
+     * Advises how the specified range of the file will be accessed.  The JVM
+     * does not expose {@code madvise}, so only {@link AccessHint#WILL_NEED}
+     * is applied, with {@link #load(long, long)}, and the other hints are
+     * ignored.
+     *
+     * @return true if the hint was applied
+     */
+    public boolean advise(long position, long length, AccessHint hint)
+    {
+        requireNonNull(hint, "hint is null");
+        checkArgument(length >= 0, "length is negative");
+        checkRange(position, length);
+        if (hint == AccessHint.WILL_NEED) {
+            load(position, length);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unmaps the file.  Closing an already closed file has no effect.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        MappedByteBuffer[] unmapped = buffers;
+        buffers = new MappedByteBuffer[0];
+        segments = new Slice[0];
+        for (MappedByteBuffer buffer : unmapped) {
+            freeDirectBuffer(buffer);
+        }
+        releaseRetiredMappings();
+
+        if (randomAccessFile != null) {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Maps the file up to the new length, reusing the existing mappings of
+     * full segments.
+     */
+    private void mapSegments(FileChannel channel, long newLength)
+            throws IOException
+    {
+        int segmentSize = getSegmentSize();
+        int oldCount = segments.length;
+        // a partial last segment is mapped again with its new size
+        int first = ((length & segmentMask) == 0) ? oldCount : oldCount - 1;
+        int newCount = toIntExact((newLength + segmentMask) >>> segmentShift);
+
+        MappedByteBuffer[] newBuffers = Arrays.copyOf(buffers, newCount);
+        Slice[] newSegments = Arrays.copyOf(segments, newCount);
+        int index = first;
+        try {
+            for (; index < newCount; index++) {
+                long position = (long) index << segmentShift;
+                newBuffers[index] = channel.map(mode, position, min(segmentSize, newLength - position));
+                newSegments[index] = Slices.wrappedBuffer(newBuffers[index]);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            for (int i = first; i < index; i++) {
+                freeDirectBuffer(newBuffers[i]);
+            }
+            throw e;
+        }
+
+        if (first < oldCount) {
+            retiredBuffers.add(buffers[first]);
+        }
+        buffers = newBuffers;
+        segments = newSegments;
+        length = newLength;
+    }
+
+    private void loadSegment(int index, int offset, int size)
+    {
+        MappedByteBuffer buffer = buffers[index];
+        if (offset == 0 && size == buffer.capacity()) {
+            buffer.load();
+            return;
+        }
+
+        ByteBuffer range = buffer.duplicate();
+        ((Buffer) range).position(offset).limit(offset + size);
+        try {
+            ((MappedByteBuffer) range.slice()).load();
+            return;
+        }
+        catch (UnsupportedOperationException e) {
+            // before Java 13, a slice of a mapping is not a mapping, and can not be loaded
+        }
+        touchPages(segments[index], offset, size);
+    }
+
+    private static void touchPages(Slice segment, int offset, int size)
+    {
+        if (size == 0) {
+            return;
+        }
+        int sum = 0;
+        for (int index = offset; index < offset + size; index += PAGE_SIZE) {
+            sum += segment.getByteUnchecked(index);
+        }
+        // the range may end on a page that the stride skipped
+        sum += segment.getByteUnchecked(offset + size - 1);
+        touched = sum;
+    }
+
+    private int segmentIndex(long position)
+    {
+        return (int) (position >>> segmentShift);
+    }
+
+    private int segmentOffset(long position)
+    {
+        return (int) (position & segmentMask);
+    }
+
+    /**
+     * Reads a little endian value that spans two segments.
+     */
+    private long getSpanning(long position, int size)
+    {
+        long value = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            long bytePosition = position + i;
+            value = (value << 8) | (segments[segmentIndex(bytePosition)].getByteUnchecked(segmentOffset(bytePosition)) & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Writes a little endian value that spans two segments.
+     */
+    private void setSpanning(long position, long value, int size)
+    {
+        for (int i = 0; i < size; i++) {
+            long bytePosition = position + i;
+            segments[segmentIndex(bytePosition)].setByteUnchecked(segmentOffset(bytePosition), (int) (value >>> (i * 8)));
+        }
+    }
+
+    private void checkWritable()
+    {
+        if (mode == MapMode.READ_ONLY) {
+            throw new UnsupportedOperationException("File is mapped read-only");
+        }
+    }
+
+    private void checkNotClosed()
+    {
+        if (closed) {
+            throw new IllegalStateException("File is closed");
+        }
+    }
+
+    private void checkRange(long position, long size)
+    {
+        // accessing a closed file fails instead of reading unmapped memory
+        checkNotClosed();
+        if (position < 0 || size < 0 || position > length - size) {
+            throw new IndexOutOfBoundsException("Invalid position " + position + " and size " + size + " for file of length " + length);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("MappedSliceFile{");
+        builder.append("mode=").append(mode);
+        builder.append(", length=").append(length);
+        builder.append(", segmentSize=").append(getSegmentSize());
+        builder.append(", segmentCount=").append(segments.length);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    /**
+     * The expected access pattern of a range of a mapped file.
+     */
+    public enum AccessHint
+    {
+        /**
+         * The range is read sequentially, so it can be read ahead aggressively.
+         */
+        SEQUENTIAL,
+        /**
+         * The range is read in random order, so reading ahead is wasted.
+         */
+        RANDOM,
+        /**
+         * The range will be read soon, so it should be loaded now.
+         */
+        WILL_NEED,
+        /**
+         * The range will not be read soon, so its pages can be evicted.
+         */
+        DONT_NEED
+    }
+
+    private static final class Input
+            extends FixedLengthSliceInput
+    {
+        private static final int INSTANCE_SIZE = ClassLayout.parseClass(Input.class).instanceSize();
+
+        private final MappedSliceFile file;
+        private long position;
+
+        public Input(MappedSliceFile file)
+        {
+            this.file = file;
+        }
+
+        @Override
+        public long length()
+        {
+            return file.length;
+        }
+
+        @Override
+        public long position()
+        {
+            return position;
+        }
+
+        @Override
+        public void setPosition(long position)
+        {
+            if (position < 0 || position > file.length) {
+                throw new IndexOutOfBoundsException("Invalid position " + position + " for file of length " + file.length);
+            }
+            this.position = position;
+        }
+
+        @Override
+        public boolean isReadable()
+        {
+            return position < file.length;
+        }
+
+        @Override
+        public int available()
+        {
+            return (int) min(file.length - position, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int read()
+        {
+            if (position >= file.length) {
+                return -1;
+            }
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public boolean readBoolean()
+        {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte()
+        {
+            byte value = file.getByte(position);
+            position += SIZE_OF_BYTE;
+            return value;
+        }
+
+        @Override
+        public int readUnsignedByte()
+        {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort()
+        {
+            short value = file.getShort(position);
+            position += SIZE_OF_SHORT;
+            return value;
+        }
+
+        @Override
+        public int readUnsignedShort()
+        {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public int readInt()
+        {
+            int value = file.getInt(position);
+            position += SIZE_OF_INT;
+            return value;
+        }
+
+        @Override
+        public long readLong()
+        {
+            long value = file.getLong(position);
+            position += SIZE_OF_LONG;
+            return value;
+        }
+
+        @Override
+        public float readFloat()
+        {
+            float value = file.getFloat(position);
+            position += SIZE_OF_FLOAT;
+            return value;
+        }
+
+        @Override
+        public double readDouble()
+        {
+            double value = file.getDouble(position);
+            position += SIZE_OF_DOUBLE;
+            return value;
+        }
+
+        @Override
+        public Slice readSlice(int length)
+        {
+            Slice slice = file.slice(position, length);
+            position += length;
+            return slice;
+        }
+
+        @Override
+        Slice readBufferedSlice(int maxLength)
+        {
+            if (maxLength <= 0 || position >= file.length) {
+                return Slices.EMPTY_SLICE;
+            }
+            // a view of the rest of the current segment
+            int offset = file.segmentOffset(position);
+            int size = (int) min(maxLength, min(file.getSegmentSize() - offset, file.length - position));
+            return readSlice(size);
+        }
+
+        @Override
+        public int read(byte[] destination, int destinationIndex, int length)
+        {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= file.length) {
+                return -1;
+            }
+            length = (int) min(length, file.length - position);
+            readBytes(destination, destinationIndex, length);
+            return length;
+        }
+
+        @Override
+        public void readBytes(byte[] destination, int destinationIndex, int length)
+        {
+            file.getBytes(position, destination, destinationIndex, length);
+            position += length;
+        }
+
+        @Override
+        public void readBytes(Slice destination, int destinationIndex, int length)
+        {
+            file.getBytes(position, destination, destinationIndex, length);
+            position += length;
+        }
+
+        @Override
+        public void readBytes(OutputStream out, int length)
+                throws IOException
+        {
+            file.checkRange(position, length);
+            while (length > 0) {
+                Slice segment = file.segments[file.segmentIndex(position)];
+                int offset = file.segmentOffset(position);
+                int size = min(length, segment.length() - offset);
+                segment.getBytes(offset, out, size);
+                position += size;
+                length -= size;
+            }
+        }
+
+        @Override
+        public long skip(long length)
+        {
+            length = min(length, remaining());
+            position += length;
+            return length;
+        }
+
+        @Override
+        public int skipBytes(int length)
+        {
+            return (int) skip(length);
+        }
+
+        @Override
+        public long getRetainedSize()
+        {
+            return INSTANCE_SIZE;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder("MappedSliceFile.Input{");
+            builder.append("position=").append(position);
+            builder.append(", length=").append(file.length);
+            builder.append('}');
+            return builder.toString();
+        }
+    }
+}
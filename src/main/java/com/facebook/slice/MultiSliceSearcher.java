@@ -0,0 +1,270 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Finds all occurrences of a set of patterns in a single pass over a slice
+ * using the Aho-Corasick algorithm.  Patterns are identified by their index
+ * in the list passed to the constructor.
+ * <p>
+ * The automaton is compiled into a deterministic transition table stored in
+ * a single int array.  Bytes that do not occur in any pattern share a single
+ * column of the table, so the table size is proportional to the total length
+ * of the patterns times the number of distinct bytes in the patterns.
+ */
+public final class MultiSliceSearcher
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(MultiSliceSearcher.class).instanceSize();
+
+    private static final int ROOT = 0;
+    private static final int NO_PATTERN = -1;
+
+    /**
+     * Column of the transition table for each byte value.
+     */
+    private final int[] byteClasses;
+    private final int classCount;
+
+    /**
+     * Transition table with one row of {@code classCount} entries per state.
+     * Each entry is the row offset of the next state, or the complement of the
+     * row offset if the next state matches at least one pattern.
+     */
+    private final int[] transitions;
+
+    /**
+     * First pattern ending at each state, or -1.
+     */
+    private final int[] statePatterns;
+
+    /**
+     * Next pattern with the same content, or -1.
+     */
+    private final int[] nextPatterns;
+
+    /**
+     * Longest proper suffix of each state that matches a pattern, or the root.
+     */
+    private final int[] dictionaryLinks;
+
+    private final int[] patternLengths;
+
+    public MultiSliceSearcher(Slice... patterns)
+    {
+        this(Arrays.asList(requireNonNull(patterns, "patterns is null")));
+    }
+
+    public MultiSliceSearcher(List<Slice> patterns)
+    {
+        requireNonNull(patterns, "patterns is null");
+
+        // assign a column to each distinct byte, column 0 is all other bytes
+        byteClasses = new int[256];
+        int classes = 1;
+        long totalLength = 0;
+        patternLengths = new int[patterns.size()];
+        for (int i = 0; i < patterns.size(); i++) {
+            Slice pattern = requireNonNull(patterns.get(i), "pattern is null");
+            checkArgument(pattern.length() > 0, "pattern is empty");
+            patternLengths[i] = pattern.length();
+            totalLength += pattern.length();
+            for (int index = 0; index < pattern.length(); index++) {
+                int value = pattern.getByteUnchecked(index) & 0xFF;
+                if (byteClasses[value] == 0) {
+                    byteClasses[value] = classes;
+                    classes++;
+                }
+            }
+        }
+        classCount = classes;
+        checkArgument((totalLength + 1) * classCount <= Slices.MAX_ARRAY_SIZE, "patterns are too large");
+
+        // build the trie, a zero entry means no transition since the root is never a target
+        int maxStates = (int) totalLength + 1;
+        int[] trie = new int[maxStates * classCount];
+        int[] patternStates = new int[maxStates];
+        Arrays.fill(patternStates, NO_PATTERN);
+        nextPatterns = new int[patterns.size()];
+        int stateCount = 1;
+        for (int i = 0; i < patterns.size(); i++) {
+            Slice pattern = patterns.get(i);
+            int state = ROOT;
+            for (int index = 0; index < pattern.length(); index++) {
+                int entry = state * classCount + byteClasses[pattern.getByteUnchecked(index) & 0xFF];
+                if (trie[entry] == ROOT) {
+                    trie[entry] = stateCount;
+                    stateCount++;
+                }
+                state = trie[entry];
+            }
+            nextPatterns[i] = patternStates[state];
+            patternStates[state] = i;
+        }
+        statePatterns = Arrays.copyOf(patternStates, stateCount);
+
+        // convert the trie to a deterministic automaton in breadth first order,
+        // so the failure state of each state is complete before the state is visited
+        int[] failures = new int[stateCount];
+        dictionaryLinks = new int[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int column = 0; column < classCount; column++) {
+            int child = trie[column];
+            if (child != ROOT) {
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int failure = failures[state];
+            for (int column = 0; column < classCount; column++) {
+                int entry = state * classCount + column;
+                int child = trie[entry];
+                int failureChild = trie[failure * classCount + column];
+                if (child == ROOT) {
+                    trie[entry] = failureChild;
+                    continue;
+                }
+                failures[child] = failureChild;
+                dictionaryLinks[child] = (statePatterns[failureChild] != NO_PATTERN) ? failureChild : dictionaryLinks[failureChild];
+                queue[tail++] = child;
+            }
+        }
+
+        // store row offsets, flagging states with a match
+        transitions = Arrays.copyOf(trie, stateCount * classCount);
+        for (int entry = 0; entry < transitions.length; entry++) {
+            int state = transitions[entry];
+            int row = state * classCount;
+            transitions[entry] = hasMatch(state) ? ~row : row;
+        }
+    }
+
+    private boolean hasMatch(int state)
+    {
+        return statePatterns[state] != NO_PATTERN || dictionaryLinks[state] != ROOT;
+    }
+
+    public int getPatternCount()
+    {
+        return patternLengths.length;
+    }
+
+    public long getRetainedSize()
+    {
+        return INSTANCE_SIZE + sizeOf(byteClasses) + sizeOf(transitions) + sizeOf(statePatterns) + sizeOf(nextPatterns) + sizeOf(dictionaryLinks) + sizeOf(patternLengths);
+    }
+
+    /**
+     * Reports all occurrences of the patterns in the specified slice to the
+     * listener.  Occurrences are reported in order of their end offset, and
+     * longer patterns are reported first for the same end offset.
+     */
+    public void find(Slice slice, MatchListener listener)
+    {
+        find(slice, 0, slice.length(), listener);
+    }
+
+    /**
+     * Reports all occurrences of the patterns in the specified portion of the
+     * slice to the listener.  Occurrences are reported in order of their end
+     * offset, and longer patterns are reported first for the same end offset.
+     * The offsets reported are relative to the start of the slice.
+     */
+    public void find(Slice slice, int offset, int length, MatchListener listener)
+    {
+        checkPositionIndexes(offset, offset + length, slice.length());
+        requireNonNull(listener, "listener is null");
+
+        int row = ROOT;
+        int end = offset + length;
+        for (int index = offset; index < end; index++) {
+            int next = transitions[row + byteClasses[slice.getByteUnchecked(index) & 0xFF]];
+            if (next >= 0) {
+                row = next;
+                continue;
+            }
+
+            row = ~next;
+            if (!reportMatches(row / classCount, index, listener)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns true if any of the patterns occurs in the specified slice.
+     */
+    public boolean containsAny(Slice slice)
+    {
+        int row = ROOT;
+        for (int index = 0; index < slice.length(); index++) {
+            row = transitions[row + byteClasses[slice.getByteUnchecked(index) & 0xFF]];
+            if (row < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean reportMatches(int state, int endIndex, MatchListener listener)
+    {
+        if (statePatterns[state] == NO_PATTERN) {
+            state = dictionaryLinks[state];
+        }
+        while (state != ROOT) {
+            for (int pattern = statePatterns[state]; pattern != NO_PATTERN; pattern = nextPatterns[pattern]) {
+                if (!listener.onMatch(pattern, endIndex - patternLengths[pattern] + 1)) {
+                    return false;
+                }
+            }
+            state = dictionaryLinks[state];
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("MultiSliceSearcher{");
+        builder.append("patterns=").append(patternLengths.length);
+        builder.append(", states=").append(statePatterns.length);
+        builder.append(", byteClasses=").append(classCount);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    public interface MatchListener
+    {
+        /**
+         * Called for each occurrence of a pattern.
+         *
+         * @param patternId the index of the pattern in the pattern list
+         * @param offset the offset of the first byte of the occurrence
+         * @return true to continue searching, or false to stop
+         */
+        boolean onMatch(int patternId, int offset);
+    }
+}
@@ -15,6 +15,11 @@ package com.facebook.slice;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static java.lang.Math.min;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
 public final class Murmur3Hash128
 {
     private static final long C1 = 0x87c37b91114253d5L;
@@ -22,7 +27,203 @@ public final class Murmur3Hash128
 
     private static final long DEFAULT_SEED = 0;
 
-    private Murmur3Hash128() {}
+    private static final int BLOCK_SIZE = 2 * SizeOf.SIZE_OF_LONG;
+
+    private final long seed;
+
+    private static final long BUFFER_ADDRESS = ARRAY_BYTE_BASE_OFFSET;
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private int bufferSize;
+
+    private long bodyLength;
+
+    private long h1;
+    private long h2;
+
+    public Murmur3Hash128()
+    {
+        this(DEFAULT_SEED);
+    }
+
+    public Murmur3Hash128(long seed)
+    {
+        this.seed = seed;
+        reset();
+    }
+
+    public Murmur3Hash128 update(byte[] data)
+    {
+        return update(data, 0, data.length);
+    }
+
+    public Murmur3Hash128 update(byte[] data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length);
+        updateHash(data, ARRAY_BYTE_BASE_OFFSET + offset, length);
+        return this;
+    }
+
+    public Murmur3Hash128 update(Slice data)
+    {
+        return update(data, 0, data.length());
+    }
+
+    public Murmur3Hash128 update(Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        updateHash(data.getBase(), data.getAddress() + offset, length);
+        return this;
+    }
+
+    /**
+     * Returns the 128 bit hash of the data added so far, which is equal to
+     * {@link #hash(long, Slice, int, int)} of the concatenated data.  This
+     * allocates a new slice; use {@link #hash(Slice, int)} to avoid that.
+     */
+    public Slice hash()
+    {
+        Slice result = Slices.allocate(2 * SizeOf.SIZE_OF_LONG);
+        finalizeHash(result, 0);
+        return result;
+    }
+
+    /**
+     * Writes the 128 bit hash of the data added so far to the specified
+     * position of the destination, in the format returned by {@link #hash()}.
+     */
+    public void hash(Slice destination, int offset)
+    {
+        checkPositionIndexes(offset, offset + 2 * SizeOf.SIZE_OF_LONG, destination.length());
+        finalizeHash(destination, offset);
+    }
+
+    /**
+     * Returns the 64 most significant bits of the hash of the data added so
+     * far, which is equal to {@link #hash64(long, Slice, int, int)} of the
+     * concatenated data.
+     */
+    public long hash64()
+    {
+        return finalizeHash(null, 0);
+    }
+
+    /**
+     * Resets this hasher to its initial state, so it can be reused.
+     */
+    public void reset()
+    {
+        h1 = seed;
+        h2 = seed;
+        bufferSize = 0;
+        bodyLength = 0;
+    }
+
+    private void updateHash(Object base, long address, int length)
+    {
+        if (bufferSize > 0) {
+            int available = min(BLOCK_SIZE - bufferSize, length);
+
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS + bufferSize, available);
+
+            bufferSize += available;
+            address += available;
+            length -= available;
+
+            if (bufferSize == BLOCK_SIZE) {
+                updateBody(buffer, BUFFER_ADDRESS);
+                bufferSize = 0;
+            }
+        }
+
+        while (length >= BLOCK_SIZE) {
+            updateBody(base, address);
+            address += BLOCK_SIZE;
+            length -= BLOCK_SIZE;
+        }
+
+        if (length > 0) {
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS, length);
+            bufferSize = length;
+        }
+    }
+
+    private void updateBody(Object base, long address)
+    {
+        long k1 = unsafe.getLong(base, address);
+        long k2 = unsafe.getLong(base, address + SizeOf.SIZE_OF_LONG);
+
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729L;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5L;
+
+        bodyLength += BLOCK_SIZE;
+    }
+
+    /**
+     * Computes the hash without changing the state of this hasher.
+     *
+     * @param result if not null, receives the full 128 bit hash at the offset
+     * @return the 64 most significant bits of the hash
+     */
+    private long finalizeHash(Slice result, int offset)
+    {
+        long h1 = this.h1;
+        long h2 = this.h2;
+
+        if (bufferSize > SizeOf.SIZE_OF_LONG) {
+            long k2 = 0;
+            for (int i = bufferSize - 1; i >= SizeOf.SIZE_OF_LONG; i--) {
+                k2 ^= (buffer[i] & 0xFFL) << ((i - SizeOf.SIZE_OF_LONG) * Byte.SIZE);
+            }
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+        if (bufferSize > 0) {
+            long k1 = 0;
+            for (int i = min(bufferSize, SizeOf.SIZE_OF_LONG) - 1; i >= 0; i--) {
+                k1 ^= (buffer[i] & 0xFFL) << (i * Byte.SIZE);
+            }
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            h1 ^= k1;
+        }
+
+        long length = bodyLength + bufferSize;
+        h1 ^= length;
+        h2 ^= length;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = mix64(h1);
+        h2 = mix64(h2);
+
+        h1 += h2;
+        h2 += h1;
+
+        if (result != null) {
+            result.setLong(offset, h1);
+            result.setLong(offset + SizeOf.SIZE_OF_LONG, h2);
+        }
+        return h1;
+    }
 
     public static Slice hash(Slice data)
     {
@@ -148,8 +349,46 @@ public final class Murmur3Hash128
         return hash64(DEFAULT_SEED, data, offset, length);
     }
 
-    @SuppressFBWarnings({"SF_SWITCH_NO_DEFAULT", "SF_SWITCH_FALLTHROUGH"})
     public static long hash64(long seed, Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        return hash64Unchecked(seed, data, offset, length);
+    }
+
+    /**
+     * Hashes {@code count} values stored in {@code data}, where value {@code i}
+     * starts at {@code offsets[i]} and has length {@code lengths[i]}, and
+     * stores the hash of value {@code i} in {@code hashes[i]}.
+     */
+    public static void hash64Batch(Slice data, int[] offsets, int[] lengths, int count, long[] hashes)
+    {
+        hash64Batch(DEFAULT_SEED, data, offsets, lengths, count, hashes);
+    }
+
+    public static void hash64Batch(long seed, Slice data, int[] offsets, int[] lengths, int count, long[] hashes)
+    {
+        XxHash64.checkBatch(data, offsets, lengths, count, hashes.length);
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash64Unchecked(seed, data, offsets[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Hashes {@code count} values stored back to back in {@code data}, where
+     * value {@code i} starts at {@code offsets[i]} and ends at
+     * {@code offsets[i + 1]}, and stores the hash of value {@code i} in
+     * {@code hashes[i]}.
+     */
+    public static void hash64Batch(Slice data, int[] offsets, int count, long[] hashes)
+    {
+        XxHash64.checkBatch(data, offsets, count, hashes.length);
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash64Unchecked(DEFAULT_SEED, data, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    @SuppressFBWarnings({"SF_SWITCH_NO_DEFAULT", "SF_SWITCH_FALLTHROUGH"})
+    private static long hash64Unchecked(long seed, Slice data, int offset, int length)
     {
         final int fastLimit = offset + length - (2 * SizeOf.SIZE_OF_LONG) + 1;
 
@@ -158,10 +397,10 @@ public final class Murmur3Hash128
 
         int current = offset;
         while (current < fastLimit) {
-            long k1 = data.getLong(current);
+            long k1 = data.getLongUnchecked(current);
             current += SizeOf.SIZE_OF_LONG;
 
-            long k2 = data.getLong(current);
+            long k2 = data.getLongUnchecked(current);
             current += SizeOf.SIZE_OF_LONG;
 
             k1 *= C1;
@@ -188,19 +427,19 @@ public final class Murmur3Hash128
 
         switch (length & 15) {
             case 15:
-                k2 ^= ((long) data.getUnsignedByte(current + 14)) << 48;
+                k2 ^= (data.getByteUnchecked(current + 14) & 0xFFL) << 48;
             case 14:
-                k2 ^= ((long) data.getUnsignedByte(current + 13)) << 40;
+                k2 ^= (data.getByteUnchecked(current + 13) & 0xFFL) << 40;
             case 13:
-                k2 ^= ((long) data.getUnsignedByte(current + 12)) << 32;
+                k2 ^= (data.getByteUnchecked(current + 12) & 0xFFL) << 32;
             case 12:
-                k2 ^= ((long) data.getUnsignedByte(current + 11)) << 24;
+                k2 ^= (data.getByteUnchecked(current + 11) & 0xFFL) << 24;
             case 11:
-                k2 ^= ((long) data.getUnsignedByte(current + 10)) << 16;
+                k2 ^= (data.getByteUnchecked(current + 10) & 0xFFL) << 16;
             case 10:
-                k2 ^= ((long) data.getUnsignedByte(current + 9)) << 8;
+                k2 ^= (data.getByteUnchecked(current + 9) & 0xFFL) << 8;
             case 9:
-                k2 ^= ((long) data.getUnsignedByte(current + 8)) << 0;
+                k2 ^= (data.getByteUnchecked(current + 8) & 0xFFL) << 0;
 
                 k2 *= C2;
                 k2 = Long.rotateLeft(k2, 33);
@@ -208,21 +447,21 @@ public final class Murmur3Hash128
                 h2 ^= k2;
 
             case 8:
-                k1 ^= ((long) data.getUnsignedByte(current + 7)) << 56;
+                k1 ^= (data.getByteUnchecked(current + 7) & 0xFFL) << 56;
             case 7:
-                k1 ^= ((long) data.getUnsignedByte(current + 6)) << 48;
+                k1 ^= (data.getByteUnchecked(current + 6) & 0xFFL) << 48;
             case 6:
-                k1 ^= ((long) data.getUnsignedByte(current + 5)) << 40;
+                k1 ^= (data.getByteUnchecked(current + 5) & 0xFFL) << 40;
             case 5:
-                k1 ^= ((long) data.getUnsignedByte(current + 4)) << 32;
+                k1 ^= (data.getByteUnchecked(current + 4) & 0xFFL) << 32;
             case 4:
-                k1 ^= ((long) data.getUnsignedByte(current + 3)) << 24;
+                k1 ^= (data.getByteUnchecked(current + 3) & 0xFFL) << 24;
             case 3:
-                k1 ^= ((long) data.getUnsignedByte(current + 2)) << 16;
+                k1 ^= (data.getByteUnchecked(current + 2) & 0xFFL) << 16;
             case 2:
-                k1 ^= ((long) data.getUnsignedByte(current + 1)) << 8;
+                k1 ^= (data.getByteUnchecked(current + 1) & 0xFFL) << 8;
             case 1:
-                k1 ^= ((long) data.getUnsignedByte(current + 0)) << 0;
+                k1 ^= (data.getByteUnchecked(current + 0) & 0xFFL) << 0;
 
                 k1 *= C1;
                 k1 = Long.rotateLeft(k1, 31);
@@ -15,6 +15,8 @@ package com.facebook.slice;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+
 public final class Murmur3Hash32
 {
     private static final int C1 = 0xcc9e2d51;
@@ -34,8 +36,46 @@ public final class Murmur3Hash32
         return hash(DEFAULT_SEED, data, offset, length);
     }
 
-    @SuppressFBWarnings({"SF_SWITCH_NO_DEFAULT", "SF_SWITCH_FALLTHROUGH"})
     public static int hash(int seed, Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        return hashUnchecked(seed, data, offset, length);
+    }
+
+    /**
+     * Hashes {@code count} values stored in {@code data}, where value {@code i}
+     * starts at {@code offsets[i]} and has length {@code lengths[i]}, and
+     * stores the hash of value {@code i} in {@code hashes[i]}.
+     */
+    public static void hashBatch(Slice data, int[] offsets, int[] lengths, int count, int[] hashes)
+    {
+        hashBatch(DEFAULT_SEED, data, offsets, lengths, count, hashes);
+    }
+
+    public static void hashBatch(int seed, Slice data, int[] offsets, int[] lengths, int count, int[] hashes)
+    {
+        XxHash64.checkBatch(data, offsets, lengths, count, hashes.length);
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hashUnchecked(seed, data, offsets[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Hashes {@code count} values stored back to back in {@code data}, where
+     * value {@code i} starts at {@code offsets[i]} and ends at
+     * {@code offsets[i + 1]}, and stores the hash of value {@code i} in
+     * {@code hashes[i]}.
+     */
+    public static void hashBatch(Slice data, int[] offsets, int count, int[] hashes)
+    {
+        XxHash64.checkBatch(data, offsets, count, hashes.length);
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hashUnchecked(DEFAULT_SEED, data, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    @SuppressFBWarnings({"SF_SWITCH_NO_DEFAULT", "SF_SWITCH_FALLTHROUGH"})
+    private static int hashUnchecked(int seed, Slice data, int offset, int length)
     {
         final int fastLimit = offset + length - SizeOf.SIZE_OF_INT + 1;
 
@@ -43,7 +83,7 @@ public final class Murmur3Hash32
 
         int current = offset;
         while (current < fastLimit) {
-            int k1 = mixK1(data.getInt(current));
+            int k1 = mixK1(data.getIntUnchecked(current));
             current += SizeOf.SIZE_OF_INT;
             h1 = mixH1(h1, k1);
         }
@@ -52,11 +92,11 @@ public final class Murmur3Hash32
 
         switch (length & 3) {
             case 3:
-                k1 ^= ((int) data.getUnsignedByte(current + 2)) << 16;
+                k1 ^= (data.getByteUnchecked(current + 2) & 0xFF) << 16;
             case 2:
-                k1 ^= ((int) data.getUnsignedByte(current + 1)) << 8;
+                k1 ^= (data.getByteUnchecked(current + 1) & 0xFF) << 8;
             case 1:
-                k1 ^= ((int) data.getUnsignedByte(current + 0)) << 0;
+                k1 ^= (data.getByteUnchecked(current + 0) & 0xFF) << 0;
         }
 
         h1 ^= mixK1(k1);
@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkArgument;
+
+/**
+ * Off-heap memory allocated with {@code Unsafe.allocateMemory}, which is
+ * freed when this object is closed rather than when the garbage collector
+ * gets around to it, as with {@link Slices#allocateDirect(int)}.
+ * <p>
+ * The slice returned by {@link #getSlice()}, and any slice derived from
+ * it, must not be used after this object is closed, as the memory may
+ * have been reused.  The slices reference this object, so this object is
+ * only unreachable once all of its slices are.
+ * <p>
+ * Memory that is never closed is leaked.  When leak detection is enabled
+ * with {@link #setLeakListener(Consumer)}, the stack trace of each
+ * allocation is recorded, and when the garbage collector finds an
+ * allocation that was not closed, its memory is freed and the allocation
+ * trace is passed to the listener.  Leaks are detected during later
+ * allocations, or by calling {@link #detectLeaks()}.
+ * <p>
+ * This class is thread safe.
+ */
+public final class OffHeapMemory
+        implements Closeable
+{
+    private static final AtomicLong allocatedBytes = new AtomicLong();
+    private static final AtomicLong allocationCount = new AtomicLong();
+    private static final AtomicLong leakCount = new AtomicLong();
+
+    private static final ReferenceQueue<OffHeapMemory> leakQueue = new ReferenceQueue<>();
+    // keeps the leak trackers reachable until the memory is freed
+    private static final Set<LeakTracker> leakTrackers = ConcurrentHashMap.newKeySet();
+    @Nullable
+    private static volatile Consumer<? super Throwable> leakListener;
+
+    private final Allocation allocation;
+    @Nullable
+    private final LeakTracker leakTracker;
+    private final Slice slice;
+
+    /**
+     * Allocates the specified number of bytes off-heap.  The memory is
+     * filled with zeros.
+     */
+    public static OffHeapMemory allocate(int size)
+    {
+        OffHeapMemory memory = allocateUninitialized(size);
+        if (size > 0) {
+            unsafe.setMemory(memory.allocation.address, size, (byte) 0);
+        }
+        return memory;
+    }
+
+    /**
+     * Allocates the specified number of bytes off-heap, without clearing
+     * the memory.
+     */
+    public static OffHeapMemory allocateUninitialized(int size)
+    {
+        checkArgument(size >= 0, "size is negative");
+        Consumer<? super Throwable> listener = leakListener;
+        if (listener != null) {
+            detectLeaks(listener);
+        }
+
+        long address = (size == 0) ? 0 : unsafe.allocateMemory(size);
+        allocatedBytes.addAndGet(size);
+        allocationCount.incrementAndGet();
+        return new OffHeapMemory(new Allocation(address, size), listener != null);
+    }
+
+    private OffHeapMemory(Allocation allocation, boolean trackLeaks)
+    {
+        this.allocation = allocation;
+        if (allocation.size == 0) {
+            slice = Slices.EMPTY_SLICE;
+        }
+        else {
+            slice = new Slice(null, allocation.address, allocation.size, allocation.size, this);
+        }
+
+        if (trackLeaks) {
+            leakTracker = new LeakTracker(this, allocation);
+            leakTrackers.add(leakTracker);
+        }
+        else {
+            leakTracker = null;
+        }
+    }
+
+    /**
+     * Returns a slice over the memory.  The slice must not be used after
+     * this object is closed.
+     *
+     * @throws IllegalStateException if this object is closed
+     */
+    public Slice getSlice()
+    {
+        if (allocation.isFreed()) {
+            throw new IllegalStateException("Off-heap memory is closed");
+        }
+        return slice;
+    }
+
+    public int size()
+    {
+        return allocation.size;
+    }
+
+    public boolean isClosed()
+    {
+        return allocation.isFreed();
+    }
+
+    /**
+     * Frees the memory.  Closing an already closed object has no effect.
+     */
+    @Override
+    public void close()
+    {
+        if (allocation.free() && leakTracker != null) {
+            leakTrackers.remove(leakTracker);
+            leakTracker.clear();
+        }
+    }
+
+    /**
+     * Returns the total size of the off-heap memory that has been allocated
+     * and not yet freed.
+     */
+    public static long getAllocatedBytes()
+    {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Returns the number of allocations that have not yet been freed.
+     */
+    public static long getAllocationCount()
+    {
+        return allocationCount.get();
+    }
+
+    /**
+     * Returns the number of leaked allocations found by the leak detector.
+     */
+    public static long getLeakCount()
+    {
+        return leakCount.get();
+    }
+
+    /**
+     * Enables leak detection for subsequent allocations, reporting each
+     * leaked allocation to the specified listener, or disables it if the
+     * listener is null.  Recording the allocation stack traces is
+     * expensive, so leak detection is intended for tests and debugging.
+     */
+    public static void setLeakListener(@Nullable Consumer<? super Throwable> listener)
+    {
+        leakListener = listener;
+    }
+
+    /**
+     * Frees the memory of the allocations found by the garbage collector
+     * to be unreachable but not closed, and reports them to the leak
+     * listener.  Only allocations made while leak detection was enabled
+     * are found.
+     *
+     * @return the number of leaks found
+     */
+    public static int detectLeaks()
+    {
+        Consumer<? super Throwable> listener = leakListener;
+        return detectLeaks((listener == null) ? trace -> {} : listener);
+    }
+
+    private static int detectLeaks(Consumer<? super Throwable> listener)
+    {
+        int leaks = 0;
+        for (Reference<? extends OffHeapMemory> reference = leakQueue.poll(); reference != null; reference = leakQueue.poll()) {
+            LeakTracker tracker = (LeakTracker) reference;
+            leakTrackers.remove(tracker);
+            if (tracker.allocation.free()) {
+                leaks++;
+                leakCount.incrementAndGet();
+                listener.accept(tracker.allocationTrace);
+            }
+        }
+        return leaks;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("OffHeapMemory{");
+        builder.append("address=").append(allocation.address);
+        builder.append(", size=").append(allocation.size);
+        builder.append(", closed=").append(allocation.isFreed());
+        builder.append('}');
+        return builder.toString();
+    }
+
+    /**
+     * The memory of an allocation, kept separate from {@link OffHeapMemory}
+     * so a leaked allocation can be freed after its owner is collected.
+     */
+    private static final class Allocation
+    {
+        private final long address;
+        private final int size;
+        private final AtomicBoolean freed = new AtomicBoolean();
+
+        public Allocation(long address, int size)
+        {
+            this.address = address;
+            this.size = size;
+        }
+
+        public boolean isFreed()
+        {
+            return freed.get();
+        }
+
+        /**
+         * Frees the memory, unless it has already been freed.
+         *
+         * @return true if the memory was freed by this call
+         */
+        public boolean free()
+        {
+            if (!freed.compareAndSet(false, true)) {
+                return false;
+            }
+            if (address != 0) {
+                unsafe.freeMemory(address);
+            }
+            allocatedBytes.addAndGet(-size);
+            allocationCount.decrementAndGet();
+            return true;
+        }
+    }
+
+    private static final class LeakTracker
+            extends PhantomReference<OffHeapMemory>
+    {
+        private final Allocation allocation;
+        private final Throwable allocationTrace;
+
+        public LeakTracker(OffHeapMemory memory, Allocation allocation)
+        {
+            super(memory, leakQueue);
+            this.allocation = allocation;
+            this.allocationTrace = new Throwable("Off-heap memory of " + allocation.size + " bytes was allocated here and never closed");
+        }
+    }
+}
@@ -347,6 +347,27 @@ public final class Slice
         return base instanceof byte[];
     }
 
+    /**
+     * Returns true if {@link #toByteBuffer()} is supported for this slice.
+     */
+    boolean hasByteBuffer()
+    {
+        return hasByteArray() || ((reference instanceof ByteBuffer) && ((ByteBuffer) reference).isDirect());
+    }
+
+    /**
+     * Returns true if this slice covers the entire direct buffer that owns
+     * its memory, rather than a part of it.
+     */
+    boolean isWholeDirectBuffer()
+    {
+        if (!(reference instanceof ByteBuffer) || !((ByteBuffer) reference).isDirect()) {
+            return false;
+        }
+        ByteBuffer buffer = (ByteBuffer) reference;
+        return address == bufferAddress(buffer) && size == buffer.capacity();
+    }
+
     /**
      * Returns the byte array wrapped by this Slice, if any. Callers are expected to check {@link Slice#hasByteArray()} before calling
      * this method since not all instances are backed by a byte array. Callers should also take care to use {@link Slice#byteArrayOffset()}
@@ -888,11 +909,45 @@ public final class Slice
 
     public int indexOfByte(int b)
     {
-        b = b & 0xFF;
-        for (int i = 0; i < size; i++) {
-            if (getByteUnchecked(i) == b) {
-                return i;
+        return indexOfByteUnchecked((byte) b, 0, size);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified byte in
+     * the range {@code [fromIndex, toIndex)} of this slice, or -1 if the byte
+     * is not found.  The 24 high-order bits of the specified value are ignored.
+     *
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is less than {@code 0},
+     * if {@code toIndex} is less than {@code fromIndex}, or if {@code toIndex}
+     * is greater than {@code this.length()}
+     */
+    public int indexOfByte(int b, int fromIndex, int toIndex)
+    {
+        checkPositionIndexes(fromIndex, toIndex, size);
+        return indexOfByteUnchecked((byte) b, fromIndex, toIndex);
+    }
+
+    int indexOfByteUnchecked(byte b, int fromIndex, int toIndex)
+    {
+        int index = fromIndex;
+
+        // Compare eight bytes at a time against the value replicated into every byte of a long
+        // see https://graphics.stanford.edu/~seander/bithacks.html#ValueInWord
+        long pattern = fillLong(b);
+        while (index <= toIndex - SIZE_OF_LONG) {
+            long matches = zeroBytes(getLongUnchecked(index) ^ pattern);
+            if (matches != 0) {
+                // bytes are read in little-endian order, so the lowest marked byte is the first match
+                return index + (Long.numberOfTrailingZeros(matches) >>> 3);
             }
+            index += SIZE_OF_LONG;
+        }
+
+        while (index < toIndex) {
+            if (getByteUnchecked(index) == b) {
+                return index;
+            }
+            index++;
         }
         return -1;
     }
@@ -930,31 +985,19 @@ public final class Slice
         // Using first four bytes for faster search. We are not using eight bytes for long
         // because we want more strings to get use of fast search.
         int head = pattern.getIntUnchecked(0);
-
-        // Take the first byte of head for faster skipping
-        int firstByteMask = head & 0xff;
-        firstByteMask |= firstByteMask << 8;
-        firstByteMask |= firstByteMask << 16;
+        byte firstByte = (byte) head;
 
         int lastValidIndex = size - pattern.length();
         int index = offset;
         while (index <= lastValidIndex) {
-            // Read four bytes in sequence
-            int value = getIntUnchecked(index);
-
-            // Compare all bytes of value with first byte of search data
-            // see https://graphics.stanford.edu/~seander/bithacks.html#ZeroInWord
-            int valueXor = value ^ firstByteMask;
-            int hasZeroBytes = (valueXor - 0x01010101) & ~valueXor & 0x80808080;
-
-            // If valueXor doesn't have any zero byte then there is no match and we can advance
-            if (hasZeroBytes == 0) {
-                index += SIZE_OF_INT;
-                continue;
+            // Skip to the next candidate position, scanning eight bytes at a time
+            index = indexOfByteUnchecked(firstByte, index, lastValidIndex + 1);
+            if (index < 0) {
+                return -1;
             }
 
             // Try fast match of head and the rest
-            if (value == head && equalsUnchecked(index, pattern, 0, pattern.length())) {
+            if (getIntUnchecked(index) == head && equalsUnchecked(index, pattern, 0, pattern.length())) {
                 return index;
             }
 
@@ -1058,6 +1101,76 @@ public final class Slice
         return Integer.compare(length, otherLength);
     }
 
+    /**
+     * Returns the first eight bytes of a portion of this slice as a big-endian long,
+     * padded with zero bytes if the portion is shorter than eight bytes.  Comparing
+     * the results of two portions with {@link Long#compareUnsigned} produces the
+     * same order as {@link #compareTo(int, int, Slice, int, int)}, except that
+     * portions can not be ordered when the results are equal.  In that case, the
+     * portions must be compared with {@code compareTo}.
+     *
+     * @throws IndexOutOfBoundsException if the specified {@code offset} is less than {@code 0} or
+     * {@code offset + length} is greater than {@code this.length()}
+     */
+    public long getAbbreviatedKey(int offset, int length)
+    {
+        checkIndexLength(offset, length);
+
+        if (length >= SIZE_OF_LONG) {
+            return Long.reverseBytes(getLongUnchecked(offset));
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (offset <= size - SIZE_OF_LONG) {
+            // read a whole word and mask off the bytes past the end of the portion
+            return Long.reverseBytes(getLongUnchecked(offset)) & (-1L << ((SIZE_OF_LONG - length) * Byte.SIZE));
+        }
+
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            key |= (getByteUnchecked(offset + i) & 0xFFL) << ((SIZE_OF_LONG - 1 - i) * Byte.SIZE);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the number of leading bytes this slice has in common with the specified slice.
+     */
+    public int commonPrefixLength(Slice that)
+    {
+        return commonPrefixLength(0, size, that, 0, that.size);
+    }
+
+    /**
+     * Returns the number of leading bytes a portion of this slice has in common with
+     * a portion of the specified slice.
+     */
+    public int commonPrefixLength(int offset, int length, Slice that, int otherOffset, int otherLength)
+    {
+        checkIndexLength(offset, length);
+        that.checkIndexLength(otherOffset, otherLength);
+
+        long thisAddress = address + offset;
+        long thatAddress = that.address + otherOffset;
+
+        int compareLength = min(length, otherLength);
+        int index = 0;
+        while (index <= compareLength - SIZE_OF_LONG) {
+            long difference = unsafe.getLong(base, thisAddress + index) ^ unsafe.getLong(that.base, thatAddress + index);
+            if (difference != 0) {
+                // bytes are read in little-endian order, so the lowest differing byte is the first one
+                return index + (Long.numberOfTrailingZeros(difference) >>> 3);
+            }
+            index += SIZE_OF_LONG;
+        }
+
+        while (index < compareLength && unsafe.getByte(base, thisAddress + index) == unsafe.getByte(that.base, thatAddress + index)) {
+            index++;
+        }
+        return index;
+    }
+
     /**
      * Compares the specified object with this slice for equality.  Equality is
      * solely based on the contents of the slice.
@@ -1301,6 +1414,16 @@ public final class Slice
         checkPositionIndexes(index, index + length, length());
     }
 
+    /**
+     * Returns a long with the high bit set in every byte position where the
+     * specified value has a zero byte.  Bits above the first zero byte may
+     * also be set, so only the lowest set bit is meaningful.
+     */
+    private static long zeroBytes(long value)
+    {
+        return (value - 0x0101_0101_0101_0101L) & ~value & 0x8080_8080_8080_8080L;
+    }
+
     //
     // The following methods were forked from Guava primitives
     //
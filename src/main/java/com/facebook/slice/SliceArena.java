@@ -0,0 +1,306 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.sizeOf;
+
+/**
+ * Allocates many small slices from a few large blocks by bumping a
+ * pointer, so each allocation costs a slice header but no array of its
+ * own.  The memory of all allocations is reclaimed at once: {@link #reset()}
+ * keeps the blocks for the next use of the arena, and {@link #close()}
+ * releases them.
+ * <p>
+ * Blocks are either heap arrays or {@link OffHeapMemory}.  Allocations
+ * larger than a quarter of the block size get a dedicated block.  Off-heap
+ * blocks are freed when the arena is closed, and dedicated blocks are also
+ * freed when it is reset.
+ * <p>
+ * Slices allocated from the arena must not be used after the arena is
+ * reset or closed.  The memory of an allocation is not cleared.  Each
+ * slice retains its entire block, so {@link Slice#getRetainedSize()} of
+ * an allocated slice is the size of the block; use
+ * {@link #getRetainedSize()} of the arena instead.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class SliceArena
+        implements Closeable
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(SliceArena.class).instanceSize();
+    private static final int BLOCK_INSTANCE_SIZE = ClassLayout.parseClass(Block.class).instanceSize();
+    private static final int SLICE_INSTANCE_SIZE = ClassLayout.parseClass(Slice.class).instanceSize();
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final boolean offHeap;
+    private final int blockSize;
+
+    // blocks of blockSize, which are kept on reset
+    private Block[] blocks = new Block[4];
+    private int blockCount;
+    // dedicated blocks of large allocations, which are released on reset
+    private Block[] largeBlocks = new Block[4];
+    private int largeBlockCount;
+
+    // index of the block being filled, or -1 before the first allocation
+    private int blockIndex = -1;
+    private Slice block = Slices.EMPTY_SLICE;
+    private int position;
+
+    private long allocatedBytes;
+    private boolean closed;
+
+    /**
+     * Creates an arena of heap blocks with the default block size.
+     */
+    public static SliceArena heap()
+    {
+        return new SliceArena(false, DEFAULT_BLOCK_SIZE);
+    }
+
+    public static SliceArena heap(int blockSize)
+    {
+        return new SliceArena(false, blockSize);
+    }
+
+    /**
+     * Creates an arena of off-heap blocks with the default block size.
+     */
+    public static SliceArena offHeap()
+    {
+        return new SliceArena(true, DEFAULT_BLOCK_SIZE);
+    }
+
+    public static SliceArena offHeap(int blockSize)
+    {
+        return new SliceArena(true, blockSize);
+    }
+
+    private SliceArena(boolean offHeap, int blockSize)
+    {
+        checkArgument(blockSize > 0, "blockSize must be positive");
+        this.offHeap = offHeap;
+        this.blockSize = blockSize;
+    }
+
+    public boolean isOffHeap()
+    {
+        return offHeap;
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * Returns a slice of the specified size.  The contents of the slice are
+     * undefined.
+     */
+    public Slice allocate(int size)
+    {
+        checkArgument(size >= 0, "size is negative");
+        checkNotClosed();
+        if (size == 0) {
+            return Slices.EMPTY_SLICE;
+        }
+
+        allocatedBytes += size;
+        if (size > blockSize / 4) {
+            Block large = newBlock(size);
+            if (largeBlockCount == largeBlocks.length) {
+                largeBlocks = Arrays.copyOf(largeBlocks, largeBlockCount * 2);
+            }
+            largeBlocks[largeBlockCount++] = large;
+            return large.slice;
+        }
+
+        if (size > block.length() - position) {
+            nextBlock();
+        }
+        Slice slice = block.slice(position, size);
+        position += size;
+        return slice;
+    }
+
+    /**
+     * Returns a copy of the slice allocated from this arena.
+     */
+    public Slice copy(Slice slice)
+    {
+        return copy(slice, 0, slice.length());
+    }
+
+    /**
+     * Returns a copy of the specified portion of the slice allocated from
+     * this arena.
+     */
+    public Slice copy(Slice slice, int index, int length)
+    {
+        checkPositionIndexes(index, index + length, slice.length());
+        Slice copy = allocate(length);
+        copy.setBytes(0, slice, index, length);
+        return copy;
+    }
+
+    /**
+     * Returns the total size of the slices allocated since the arena was
+     * created or last reset.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the number of bytes retained by this arena, including its
+     * blocks.  Off-heap blocks are included, as they are in the retained
+     * size of an off-heap slice.
+     */
+    public long getRetainedSize()
+    {
+        long size = INSTANCE_SIZE + sizeOf(blocks) + sizeOf(largeBlocks);
+        for (int i = 0; i < blockCount; i++) {
+            size += blocks[i].getRetainedSize();
+        }
+        for (int i = 0; i < largeBlockCount; i++) {
+            size += largeBlocks[i].getRetainedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Reclaims the memory of all allocations.  Blocks of the regular block
+     * size are kept for reuse, and dedicated blocks are released.
+     */
+    public void reset()
+    {
+        checkNotClosed();
+        releaseLargeBlocks();
+        blockIndex = -1;
+        block = Slices.EMPTY_SLICE;
+        position = 0;
+        allocatedBytes = 0;
+    }
+
+    /**
+     * Releases all blocks.  Closing an already closed arena has no effect.
+     */
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseLargeBlocks();
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i].release();
+            blocks[i] = null;
+        }
+        blockCount = 0;
+        blockIndex = -1;
+        block = Slices.EMPTY_SLICE;
+        position = 0;
+        allocatedBytes = 0;
+    }
+
+    private void nextBlock()
+    {
+        blockIndex++;
+        if (blockIndex == blockCount) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+            }
+            blocks[blockCount++] = newBlock(blockSize);
+        }
+        block = blocks[blockIndex].slice;
+        position = 0;
+    }
+
+    private Block newBlock(int size)
+    {
+        if (offHeap) {
+            OffHeapMemory memory = OffHeapMemory.allocateUninitialized(size);
+            return new Block(memory.getSlice(), memory);
+        }
+        return new Block(Slices.allocate(size), null);
+    }
+
+    private void releaseLargeBlocks()
+    {
+        for (int i = 0; i < largeBlockCount; i++) {
+            largeBlocks[i].release();
+            largeBlocks[i] = null;
+        }
+        largeBlockCount = 0;
+    }
+
+    private void checkNotClosed()
+    {
+        if (closed) {
+            throw new IllegalStateException("Arena is closed");
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("SliceArena{");
+        builder.append("offHeap=").append(offHeap);
+        builder.append(", blockSize=").append(blockSize);
+        builder.append(", blockCount=").append(blockCount);
+        builder.append(", largeBlockCount=").append(largeBlockCount);
+        builder.append(", allocatedBytes=").append(allocatedBytes);
+        builder.append(", closed=").append(closed);
+        builder.append('}');
+        return builder.toString();
+    }
+
+    private static final class Block
+    {
+        private final Slice slice;
+        @Nullable
+        private final OffHeapMemory memory;
+
+        public Block(Slice slice, @Nullable OffHeapMemory memory)
+        {
+            this.slice = slice;
+            this.memory = memory;
+        }
+
+        public long getRetainedSize()
+        {
+            // the retained size of a heap slice includes the slice itself, but that of an off-heap slice does not
+            return BLOCK_INSTANCE_SIZE + slice.getRetainedSize() + ((memory == null) ? 0 : SLICE_INSTANCE_SIZE);
+        }
+
+        public void release()
+        {
+            if (memory != null) {
+                memory.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Transfers slices to and from NIO channels.  Heap slices and slices over
+ * direct or memory mapped buffers are passed to the channel as
+ * {@link ByteBuffer} views, without intermediate copies; many slices are
+ * written with a single gathering write, and read with a single
+ * scattering read.  Other slices, such as {@link OffHeapMemory} slices,
+ * are copied through a small direct buffer.
+ * <p>
+ * The channels must be in blocking mode.
+ */
+public final class SliceChannels
+{
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024;
+
+    // direct, so the channel does not copy the staged bytes again
+    private static final ThreadLocal<Slice> stagingBuffer = ThreadLocal.withInitial(() -> Slices.allocateDirect(STAGING_BUFFER_SIZE));
+
+    private SliceChannels() {}
+
+    /**
+     * Writes the entire slice to the channel.
+     */
+    public static void write(WritableByteChannel channel, Slice slice)
+            throws IOException
+    {
+        write(channel, slice, 0, slice.length());
+    }
+
+    /**
+     * Writes the specified portion of the slice to the channel.
+     */
+    public static void write(WritableByteChannel channel, Slice slice, int index, int length)
+            throws IOException
+    {
+        requireNonNull(channel, "channel is null");
+        checkPositionIndexes(index, index + length, slice.length());
+        if (length == 0) {
+            return;
+        }
+        if (slice.hasByteBuffer()) {
+            writeFully(channel, slice.toByteBuffer(index, length));
+        }
+        else {
+            writeStaged(channel, slice, index, length);
+        }
+    }
+
+    /**
+     * Writes the slices to the channel, in order.  Consecutive slices that
+     * can be viewed as byte buffers are written with a single gathering
+     * write.
+     *
+     * @return the number of bytes written
+     */
+    public static long write(GatheringByteChannel channel, List<Slice> slices)
+            throws IOException
+    {
+        requireNonNull(channel, "channel is null");
+        requireNonNull(slices, "slices is null");
+
+        long written = 0;
+        int start = 0;
+        while (start < slices.size()) {
+            Slice slice = slices.get(start);
+            if (!slice.hasByteBuffer() && slice.length() > 0) {
+                writeStaged(channel, slice, 0, slice.length());
+                written += slice.length();
+                start++;
+                continue;
+            }
+
+            int end = start;
+            while (end < slices.size() && (slices.get(end).hasByteBuffer() || slices.get(end).length() == 0)) {
+                end++;
+            }
+            written += writeGathering(channel, slices, start, end);
+            start = end;
+        }
+        return written;
+    }
+
+    /**
+     * Fills the slice with the bytes of the file at the specified position.
+     * The position of the channel is not changed.
+     *
+     * @throws EOFException if the file ends before the slice is filled
+     */
+    public static void readFully(FileChannel channel, long position, Slice destination)
+            throws IOException
+    {
+        readFully(channel, position, destination, 0, destination.length());
+    }
+
+    /**
+     * Fills the specified portion of the slice with the bytes of the file at
+     * the specified position.  The position of the channel is not changed.
+     *
+     * @throws EOFException if the file ends before the slice is filled
+     */
+    public static void readFully(FileChannel channel, long position, Slice destination, int index, int length)
+            throws IOException
+    {
+        requireNonNull(channel, "channel is null");
+        checkArgument(position >= 0, "position is negative");
+        checkPositionIndexes(index, index + length, destination.length());
+        if (length == 0) {
+            return;
+        }
+        if (destination.hasByteBuffer()) {
+            readFully(channel, position, destination.toByteBuffer(index, length));
+            return;
+        }
+
+        Slice staging = stagingBuffer.get();
+        while (length > 0) {
+            int size = min(length, staging.length());
+            readFully(channel, position, staging.toByteBuffer(0, size));
+            destination.setBytes(index, staging, 0, size);
+            position += size;
+            index += size;
+            length -= size;
+        }
+    }
+
+    /**
+     * Fills the slices, in order, with consecutive bytes of the file
+     * starting at the specified position.  The position of the channel is
+     * not changed, so a file channel can be shared by concurrent readers.
+     *
+     * @return the number of bytes read
+     * @throws EOFException if the file ends before the slices are filled
+     */
+    public static long readFully(FileChannel channel, long position, List<Slice> destinations)
+            throws IOException
+    {
+        requireNonNull(destinations, "destinations is null");
+        long start = position;
+        // FileChannel has no positional scattering read, so each slice is read with a positional read
+        for (Slice destination : destinations) {
+            readFully(channel, position, destination);
+            position += destination.length();
+        }
+        return position - start;
+    }
+
+    /**
+     * Fills the slice with bytes read from the channel.
+     *
+     * @throws EOFException if the channel ends before the slice is filled
+     */
+    public static void readFully(ReadableByteChannel channel, Slice destination)
+            throws IOException
+    {
+        readFully(channel, destination, 0, destination.length());
+    }
+
+    /**
+     * Fills the specified portion of the slice with bytes read from the
+     * channel.
+     *
+     * @throws EOFException if the channel ends before the slice is filled
+     */
+    public static void readFully(ReadableByteChannel channel, Slice destination, int index, int length)
+            throws IOException
+    {
+        requireNonNull(channel, "channel is null");
+        checkPositionIndexes(index, index + length, destination.length());
+        if (length == 0) {
+            return;
+        }
+        if (destination.hasByteBuffer()) {
+            readFully(channel, destination.toByteBuffer(index, length));
+            return;
+        }
+        readStaged(channel, destination, index, length);
+    }
+
+    /**
+     * Fills the slices, in order, with bytes read from the channel.
+     * Consecutive slices that can be viewed as byte buffers are read with a
+     * single scattering read.
+     *
+     * @return the number of bytes read
+     * @throws EOFException if the channel ends before the slices are filled
+     */
+    public static long readFully(ScatteringByteChannel channel, List<Slice> destinations)
+            throws IOException
+    {
+        requireNonNull(channel, "channel is null");
+        requireNonNull(destinations, "destinations is null");
+
+        long read = 0;
+        int start = 0;
+        while (start < destinations.size()) {
+            Slice destination = destinations.get(start);
+            if (!destination.hasByteBuffer() && destination.length() > 0) {
+                readStaged(channel, destination, 0, destination.length());
+                read += destination.length();
+                start++;
+                continue;
+            }
+
+            int end = start;
+            while (end < destinations.size() && (destinations.get(end).hasByteBuffer() || destinations.get(end).length() == 0)) {
+                end++;
+            }
+            read += readScattering(channel, destinations, start, end);
+            start = end;
+        }
+        return read;
+    }
+
+    /**
+     * Writes the slices in the specified range, which can all be viewed as
+     * byte buffers or are empty, with gathering writes.
+     */
+    private static long writeGathering(GatheringByteChannel channel, List<Slice> slices, int start, int end)
+            throws IOException
+    {
+        ByteBuffer[] buffers = new ByteBuffer[end - start];
+        int count = 0;
+        long remaining = 0;
+        for (int i = start; i < end; i++) {
+            Slice slice = slices.get(i);
+            if (slice.length() > 0) {
+                buffers[count++] = slice.toByteBuffer();
+                remaining += slice.length();
+            }
+        }
+
+        long written = remaining;
+        int offset = 0;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, offset, count - offset);
+            while (offset < count && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Fills the slices in the specified range, which can all be viewed as
+     * byte buffers or are empty, with scattering reads.
+     */
+    private static long readScattering(ScatteringByteChannel channel, List<Slice> slices, int start, int end)
+            throws IOException
+    {
+        ByteBuffer[] buffers = new ByteBuffer[end - start];
+        int count = 0;
+        long remaining = 0;
+        for (int i = start; i < end; i++) {
+            Slice slice = slices.get(i);
+            if (slice.length() > 0) {
+                buffers[count++] = slice.toByteBuffer();
+                remaining += slice.length();
+            }
+        }
+
+        long read = remaining;
+        int offset = 0;
+        while (remaining > 0) {
+            long bytes = channel.read(buffers, offset, count - offset);
+            if (bytes < 0) {
+                throw new EOFException("End of channel");
+            }
+            remaining -= bytes;
+            while (offset < count && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        return read;
+    }
+
+    private static void readStaged(ReadableByteChannel channel, Slice slice, int index, int length)
+            throws IOException
+    {
+        Slice staging = stagingBuffer.get();
+        while (length > 0) {
+            int size = min(length, staging.length());
+            readFully(channel, staging.toByteBuffer(0, size));
+            slice.setBytes(index, staging, 0, size);
+            index += size;
+            length -= size;
+        }
+    }
+
+    private static void writeStaged(WritableByteChannel channel, Slice slice, int index, int length)
+            throws IOException
+    {
+        Slice staging = stagingBuffer.get();
+        while (length > 0) {
+            int size = min(length, staging.length());
+            staging.setBytes(0, slice, index, size);
+            writeFully(channel, staging.toByteBuffer(0, size));
+            index += size;
+            length -= size;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("End of channel");
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            int bytes = channel.read(buffer, position);
+            if (bytes < 0) {
+                throw new EOFException("End of file at position " + position);
+            }
+            position += bytes;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static java.lang.Math.min;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Feeds slices into {@link Checksum} implementations without first copying
+ * them to a new byte array.  Heap slices are passed as their backing array,
+ * and direct slices are passed as a {@link ByteBuffer} view to checksums
+ * that accept one, such as {@link CRC32} and {@link Adler32}.  {@link Crc32c}
+ * and the checksum views of {@link XxHash64} and {@link XxHash3} read
+ * slices in place.
+ * <p>
+ * To checksum the bytes written to an {@link OutputStreamSliceOutput},
+ * wrap its stream in a {@link java.util.zip.CheckedOutputStream}; the
+ * output writes its buffer to the stream in large chunks.
+ */
+public final class SliceChecksums
+{
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    // java.util.zip.CRC32C and Checksum.update(ByteBuffer) were added in Java 9
+    private static final MethodHandle NEW_JDK_CRC32C = findJdkCrc32c();
+    private static final MethodHandle UPDATE_BYTE_BUFFER = findUpdateByteBuffer();
+
+    private SliceChecksums() {}
+
+    /**
+     * Returns a new CRC32C checksum, which is {@code java.util.zip.CRC32C}
+     * when available, and {@link Crc32c} otherwise.
+     */
+    public static Checksum newCrc32c()
+    {
+        if (NEW_JDK_CRC32C == null) {
+            return new Crc32c();
+        }
+        try {
+            return (Checksum) NEW_JDK_CRC32C.invoke();
+        }
+        catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    public static long crc32(Slice data)
+    {
+        return crc32(data, 0, data.length());
+    }
+
+    public static long crc32(Slice data, int offset, int length)
+    {
+        return checksum(new CRC32(), data, offset, length);
+    }
+
+    public static long crc32c(Slice data)
+    {
+        return crc32c(data, 0, data.length());
+    }
+
+    public static long crc32c(Slice data, int offset, int length)
+    {
+        return checksum(newCrc32c(), data, offset, length);
+    }
+
+    public static long adler32(Slice data)
+    {
+        return adler32(data, 0, data.length());
+    }
+
+    public static long adler32(Slice data, int offset, int length)
+    {
+        return checksum(new Adler32(), data, offset, length);
+    }
+
+    public static void update(Checksum checksum, Slice data)
+    {
+        update(checksum, data, 0, data.length());
+    }
+
+    public static void update(Checksum checksum, Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+
+        if (data.hasByteArray()) {
+            checksum.update(data.byteArray(), data.byteArrayOffset() + offset, length);
+        }
+        else if (checksum instanceof SliceChecksum) {
+            ((SliceChecksum) checksum).update(data, offset, length);
+        }
+        else if (data.hasByteBuffer() && checksum instanceof CRC32) {
+            ((CRC32) checksum).update(data.toByteBuffer(offset, length));
+        }
+        else if (data.hasByteBuffer() && checksum instanceof Adler32) {
+            ((Adler32) checksum).update(data.toByteBuffer(offset, length));
+        }
+        else if (data.hasByteBuffer() && UPDATE_BYTE_BUFFER != null) {
+            try {
+                UPDATE_BYTE_BUFFER.invokeExact(checksum, data.toByteBuffer(offset, length));
+            }
+            catch (Throwable e) {
+                throw propagate(e);
+            }
+        }
+        else {
+            byte[] buffer = new byte[min(length, COPY_BUFFER_SIZE)];
+            while (length > 0) {
+                int size = min(buffer.length, length);
+                data.getBytes(offset, buffer, 0, size);
+                checksum.update(buffer, 0, size);
+                offset += size;
+                length -= size;
+            }
+        }
+    }
+
+    /**
+     * Updates the checksum with the next {@code length} bytes of the input.
+     * The bytes are read from the internal buffer of the input when
+     * possible, without copying.
+     *
+     * @throws IndexOutOfBoundsException if the input has fewer than {@code length} bytes
+     */
+    public static void update(Checksum checksum, SliceInput input, long length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        while (length > 0) {
+            Slice slice = input.readBufferedSlice((int) min(length, Integer.MAX_VALUE));
+            if (slice.length() == 0) {
+                throw new IndexOutOfBoundsException("End of stream");
+            }
+            update(checksum, slice);
+            length -= slice.length();
+        }
+    }
+
+    /**
+     * Updates the checksum with the remaining bytes of the input.
+     */
+    public static void update(Checksum checksum, SliceInput input)
+    {
+        while (true) {
+            Slice slice = input.readBufferedSlice(Integer.MAX_VALUE);
+            if (slice.length() == 0) {
+                return;
+            }
+            update(checksum, slice);
+        }
+    }
+
+    private static long checksum(Checksum checksum, Slice data, int offset, int length)
+    {
+        update(checksum, data, offset, length);
+        return checksum.getValue();
+    }
+
+    private static RuntimeException propagate(Throwable throwable)
+    {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new RuntimeException(throwable);
+    }
+
+    private static MethodHandle findJdkCrc32c()
+    {
+        try {
+            return MethodHandles.publicLookup().findConstructor(Class.forName("java.util.zip.CRC32C"), methodType(void.class));
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findUpdateByteBuffer()
+    {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Checksum.class, "update", methodType(void.class, ByteBuffer.class));
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
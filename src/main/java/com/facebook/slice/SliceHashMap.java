@@ -0,0 +1,271 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.sizeOf;
+
+/**
+ * An open addressing hash table that assigns a dense id to each distinct
+ * binary key.  Ids are assigned in insertion order starting at zero, so
+ * values can be stored in plain arrays indexed by id; see
+ * {@link SliceLongHashMap} and {@link SliceIntHashMap}.
+ * <p>
+ * The key bytes are copied into a single append-only arena slice, and the
+ * offset, length and {@link XxHash64} hash of each key are stored in parallel
+ * arrays, so the table holds no per-entry objects.  Keys can not be removed.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class SliceHashMap
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(SliceHashMap.class).instanceSize();
+
+    public static final int NOT_FOUND = -1;
+
+    private static final float FILL_RATIO = 0.75f;
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+    private static final int EMPTY = -1;
+
+    private Slice arena;
+    private int arenaSize;
+
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private long[] keyHashes;
+    private int size;
+
+    // key id for each slot of the table, or EMPTY
+    private int[] table;
+    private int mask;
+    private int maxFill;
+
+    public SliceHashMap()
+    {
+        this(16);
+    }
+
+    public SliceHashMap(int expectedSize)
+    {
+        checkArgument(expectedSize >= 0, "expectedSize is negative");
+
+        int tableSize = tableSize(expectedSize);
+        table = new int[tableSize];
+        Arrays.fill(table, EMPTY);
+        mask = tableSize - 1;
+        maxFill = maxFill(tableSize);
+
+        keyOffsets = new int[maxFill];
+        keyLengths = new int[maxFill];
+        keyHashes = new long[maxFill];
+        arena = Slices.EMPTY_SLICE;
+    }
+
+    /**
+     * Returns the number of keys in this map.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used by the keys in this map.
+     */
+    public int getKeyBytes()
+    {
+        return arenaSize;
+    }
+
+    public long getRetainedSize()
+    {
+        return INSTANCE_SIZE + arena.getRetainedSize() + sizeOf(keyOffsets) + sizeOf(keyLengths) + sizeOf(keyHashes) + sizeOf(table);
+    }
+
+    public boolean containsKey(Slice key)
+    {
+        return getKeyId(key) != NOT_FOUND;
+    }
+
+    /**
+     * Returns the id of the specified key, or {@link #NOT_FOUND}.
+     */
+    public int getKeyId(Slice key)
+    {
+        return getKeyId(key, 0, key.length());
+    }
+
+    /**
+     * Returns the id of the key stored in the specified portion of the
+     * slice, or {@link #NOT_FOUND}.
+     */
+    public int getKeyId(Slice key, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, key.length());
+        long hash = XxHash64.hash(key, offset, length);
+        int id = table[findSlot(hash, key, offset, length)];
+        return (id == EMPTY) ? NOT_FOUND : id;
+    }
+
+    /**
+     * Adds the specified key if it is not already present.
+     *
+     * @return the id of the key
+     */
+    public int putKey(Slice key)
+    {
+        return putKey(key, 0, key.length());
+    }
+
+    /**
+     * Adds the key stored in the specified portion of the slice if it is not
+     * already present.  The key bytes are copied into the map.
+     *
+     * @return the id of the key
+     */
+    public int putKey(Slice key, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, key.length());
+        long hash = XxHash64.hash(key, offset, length);
+        int slot = findSlot(hash, key, offset, length);
+        if (table[slot] != EMPTY) {
+            return table[slot];
+        }
+
+        if (arenaSize > Slices.MAX_ARRAY_SIZE - length) {
+            throw new SliceTooLargeException("Key arena would exceed the maximum slice size");
+        }
+        arena = Slices.ensureSize(arena, arenaSize + length);
+        arena.setBytes(arenaSize, key, offset, length);
+
+        int id = size;
+        keyOffsets[id] = arenaSize;
+        keyLengths[id] = length;
+        keyHashes[id] = hash;
+        arenaSize += length;
+        size++;
+
+        table[slot] = id;
+        if (size >= maxFill) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Returns a view of the key with the specified id.  The returned slice
+     * shares memory with the map, and retains the entire key arena.
+     */
+    public Slice getKey(int id)
+    {
+        checkArgument(id >= 0 && id < size, "Invalid key id");
+        return arena.slice(keyOffsets[id], keyLengths[id]);
+    }
+
+    /**
+     * Returns the hash of the key with the specified id.
+     */
+    public long getKeyHash(int id)
+    {
+        checkArgument(id >= 0 && id < size, "Invalid key id");
+        return keyHashes[id];
+    }
+
+    /**
+     * Removes all keys from this map, but keeps the allocated memory.
+     */
+    public void clear()
+    {
+        Arrays.fill(table, EMPTY);
+        arenaSize = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the slot containing the key, or the empty slot where the key
+     * should be inserted.
+     */
+    private int findSlot(long hash, Slice key, int offset, int length)
+    {
+        int slot = (int) hash & mask;
+        while (true) {
+            int id = table[slot];
+            if (id == EMPTY) {
+                return slot;
+            }
+            if (keyHashes[id] == hash && keyLengths[id] == length && arena.equalsUnchecked(keyOffsets[id], key, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash()
+    {
+        if (table.length == MAX_TABLE_SIZE) {
+            throw new IllegalStateException("Hash table is too large");
+        }
+        int tableSize = table.length * 2;
+        int[] newTable = new int[tableSize];
+        Arrays.fill(newTable, EMPTY);
+        int newMask = tableSize - 1;
+
+        // the stored hashes are reused, so the keys are not read
+        for (int id = 0; id < size; id++) {
+            int slot = (int) keyHashes[id] & newMask;
+            while (newTable[slot] != EMPTY) {
+                slot = (slot + 1) & newMask;
+            }
+            newTable[slot] = id;
+        }
+
+        table = newTable;
+        mask = newMask;
+        maxFill = maxFill(tableSize);
+        keyOffsets = Arrays.copyOf(keyOffsets, maxFill);
+        keyLengths = Arrays.copyOf(keyLengths, maxFill);
+        keyHashes = Arrays.copyOf(keyHashes, maxFill);
+    }
+
+    /**
+     * Returns the maximum number of keys, which is also the capacity of the
+     * per-key arrays, for the specified table size.
+     */
+    private static int maxFill(int tableSize)
+    {
+        return (int) (tableSize * FILL_RATIO);
+    }
+
+    private static int tableSize(int expectedSize)
+    {
+        long tableSize = Long.highestOneBit((long) Math.ceil((expectedSize + 1) / FILL_RATIO) - 1) << 1;
+        return (int) Math.max(Math.min(tableSize, MAX_TABLE_SIZE), 4);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("SliceHashMap{");
+        builder.append("size=").append(size);
+        builder.append(", keyBytes=").append(arenaSize);
+        builder.append(", tableSize=").append(table.length);
+        builder.append('}');
+        return builder.toString();
+    }
+}
@@ -156,6 +156,22 @@ public abstract class SliceInput
      */
     public abstract Slice readSlice(int length);
 
+    /**
+     * Returns the next bytes of this input, at most {@code maxLength}, and
+     * increases the {@code position} by the size of the returned slice.
+     * Implementations return a view of their internal buffer when possible,
+     * so the returned slice is only valid until the next read from this
+     * input.  An empty slice is returned at the end of the input.
+     */
+    Slice readBufferedSlice(int maxLength)
+    {
+        int length = Math.min(maxLength, available());
+        if (length <= 0) {
+            return Slices.EMPTY_SLICE;
+        }
+        return readSlice(length);
+    }
+
     @Override
     public final void readFully(byte[] destination)
     {
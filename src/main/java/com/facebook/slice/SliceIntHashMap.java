@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.SizeOf.sizeOf;
+
+/**
+ * A map from binary keys to primitive {@code int} values.  Keys are stored
+ * in a {@link SliceHashMap}, and the value of each key is stored in an array
+ * indexed by the key id.  Entries can be iterated with the ids from zero to
+ * {@code size() - 1}.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class SliceIntHashMap
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(SliceIntHashMap.class).instanceSize();
+
+    private final SliceHashMap keys;
+    private int[] values;
+
+    public SliceIntHashMap()
+    {
+        this(16);
+    }
+
+    public SliceIntHashMap(int expectedSize)
+    {
+        keys = new SliceHashMap(expectedSize);
+        values = new int[Math.max(expectedSize, 4)];
+    }
+
+    public int size()
+    {
+        return keys.size();
+    }
+
+    public long getRetainedSize()
+    {
+        return INSTANCE_SIZE + keys.getRetainedSize() + sizeOf(values);
+    }
+
+    public boolean containsKey(Slice key)
+    {
+        return keys.containsKey(key);
+    }
+
+    public int get(Slice key, int defaultValue)
+    {
+        return get(key, 0, key.length(), defaultValue);
+    }
+
+    /**
+     * Returns the value of the key stored in the specified portion of the
+     * slice, or the default value if the key is not present.
+     */
+    public int get(Slice key, int offset, int length, int defaultValue)
+    {
+        int id = keys.getKeyId(key, offset, length);
+        return (id == SliceHashMap.NOT_FOUND) ? defaultValue : values[id];
+    }
+
+    public void put(Slice key, int value)
+    {
+        put(key, 0, key.length(), value);
+    }
+
+    /**
+     * Sets the value of the key stored in the specified portion of the slice.
+     * The key bytes are copied into the map.
+     */
+    public void put(Slice key, int offset, int length, int value)
+    {
+        int id = putKey(key, offset, length);
+        values[id] = value;
+    }
+
+    public int addTo(Slice key, int delta)
+    {
+        return addTo(key, 0, key.length(), delta);
+    }
+
+    /**
+     * Adds the delta to the value of the key stored in the specified portion
+     * of the slice.  Keys that are not present start with a value of zero.
+     *
+     * @return the new value of the key
+     */
+    public int addTo(Slice key, int offset, int length, int delta)
+    {
+        int id = putKey(key, offset, length);
+        values[id] += delta;
+        return values[id];
+    }
+
+    /**
+     * Returns a view of the key with the specified id.
+     */
+    public Slice getKey(int id)
+    {
+        return keys.getKey(id);
+    }
+
+    /**
+     * Returns the value of the key with the specified id.
+     */
+    public int getValue(int id)
+    {
+        checkArgument(id >= 0 && id < keys.size(), "Invalid key id");
+        return values[id];
+    }
+
+    /**
+     * Removes all entries from this map, but keeps the allocated memory.
+     */
+    public void clear()
+    {
+        keys.clear();
+        Arrays.fill(values, 0);
+    }
+
+    private int putKey(Slice key, int offset, int length)
+    {
+        int id = keys.putKey(key, offset, length);
+        if (id == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        return id;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("SliceIntHashMap{");
+        builder.append("size=").append(keys.size());
+        builder.append(", keyBytes=").append(keys.getKeyBytes());
+        builder.append('}');
+        return builder.toString();
+    }
+}
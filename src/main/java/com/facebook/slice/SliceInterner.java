@@ -0,0 +1,279 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.sizeOf;
+import static com.facebook.slice.SizeOf.sizeOfIntArray;
+import static com.facebook.slice.SizeOf.sizeOfObjectArray;
+
+/**
+ * Returns a canonical compact copy for each distinct slice content, so
+ * repeated values share a single slice.
+ * <p>
+ * The interner is split into segments by hash code, each guarded by its own
+ * lock.  The memory retained by the interner, as reported by
+ * {@link #getRetainedSize()}, is bounded by the budget passed to the
+ * constructor: when a segment would exceed its share of the budget, all of
+ * its entries are evicted.  Values that are looked up often are quickly
+ * interned again after an eviction.
+ */
+public final class SliceInterner
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(SliceInterner.class).instanceSize();
+    private static final int SEGMENT_INSTANCE_SIZE = ClassLayout.parseClass(Segment.class).instanceSize();
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long maxRetainedBytes;
+    private final Segment[] segments;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public SliceInterner(long maxRetainedBytes)
+    {
+        // the segments share the budget left after the interner itself
+        long segmentRetainedBytes = (maxRetainedBytes - INSTANCE_SIZE - sizeOfObjectArray(SEGMENT_COUNT)) / SEGMENT_COUNT;
+        checkArgument(segmentRetainedBytes >= SEGMENT_INSTANCE_SIZE + tableRetainedSize(INITIAL_CAPACITY), "maxRetainedBytes is too small");
+
+        this.maxRetainedBytes = maxRetainedBytes;
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentRetainedBytes);
+        }
+    }
+
+    /**
+     * Returns a compact slice equal to the specified slice.  The same
+     * instance is returned for equal slices, unless the value was evicted in
+     * between.
+     */
+    public Slice intern(Slice slice)
+    {
+        return intern(slice, 0, slice.length(), slice.hashCode());
+    }
+
+    /**
+     * Returns a compact slice equal to the specified portion of the slice.
+     * The same instance is returned for equal content, unless the value was
+     * evicted in between.
+     */
+    public Slice intern(Slice slice, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, slice.length());
+        return intern(slice, offset, length, slice.hashCode(offset, length));
+    }
+
+    private Slice intern(Slice slice, int offset, int length, int hash)
+    {
+        // the low bits of the hash select the slot within the segment
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        Slice canonical = segment.get(slice, offset, length, hash);
+        if (canonical != null) {
+            hitCount.increment();
+            return canonical;
+        }
+        return segment.add(slice, offset, length, hash);
+    }
+
+    public long getMaxRetainedBytes()
+    {
+        return maxRetainedBytes;
+    }
+
+    public long getRetainedSize()
+    {
+        long size = INSTANCE_SIZE + sizeOf(segments);
+        for (Segment segment : segments) {
+            size += segment.getRetainedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of interned values.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of times a segment was cleared to stay within the
+     * memory budget.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("SliceInterner{");
+        builder.append("size=").append(size());
+        builder.append(", retainedSize=").append(getRetainedSize());
+        builder.append(", maxRetainedBytes=").append(maxRetainedBytes);
+        builder.append(", hitCount=").append(getHitCount());
+        builder.append(", missCount=").append(getMissCount());
+        builder.append(", evictionCount=").append(getEvictionCount());
+        builder.append('}');
+        return builder.toString();
+    }
+
+    private static long tableRetainedSize(int capacity)
+    {
+        return sizeOfObjectArray(capacity) + sizeOfIntArray(capacity);
+    }
+
+    private static int maxFill(int capacity)
+    {
+        return capacity - (capacity >> 2);
+    }
+
+    /**
+     * An open addressing table of interned slices with linear probing.
+     */
+    private final class Segment
+    {
+        private final long maxRetainedBytes;
+
+        private Slice[] entries;
+        private int[] hashes;
+        private int count;
+        private long entriesRetainedSize;
+
+        public Segment(long maxRetainedBytes)
+        {
+            this.maxRetainedBytes = maxRetainedBytes;
+            entries = new Slice[INITIAL_CAPACITY];
+            hashes = new int[INITIAL_CAPACITY];
+        }
+
+        public synchronized Slice get(Slice slice, int offset, int length, int hash)
+        {
+            int mask = entries.length - 1;
+            for (int slot = hash & mask; entries[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && entries[slot].equals(0, entries[slot].length(), slice, offset, length)) {
+                    return entries[slot];
+                }
+            }
+            return null;
+        }
+
+        public synchronized Slice add(Slice slice, int offset, int length, int hash)
+        {
+            // another thread may have added the value since the lookup
+            Slice existing = get(slice, offset, length, hash);
+            if (existing != null) {
+                hitCount.increment();
+                return existing;
+            }
+            missCount.increment();
+
+            Slice canonical = Slices.copyOf(slice, offset, length);
+            long canonicalRetainedSize = canonical.getRetainedSize();
+            if (retainedSizeAfterAdd(canonicalRetainedSize) > maxRetainedBytes) {
+                if (count > 0) {
+                    entries = new Slice[INITIAL_CAPACITY];
+                    hashes = new int[INITIAL_CAPACITY];
+                    count = 0;
+                    entriesRetainedSize = 0;
+                    evictionCount.increment();
+                }
+                if (retainedSizeAfterAdd(canonicalRetainedSize) > maxRetainedBytes) {
+                    // the value alone does not fit in the budget
+                    return canonical;
+                }
+            }
+
+            if (count + 1 > maxFill(entries.length)) {
+                rehash(entries.length * 2);
+            }
+            int mask = entries.length - 1;
+            int slot = hash & mask;
+            while (entries[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            // cache the hash code in the canonical slice
+            canonical.hashCode();
+            entries[slot] = canonical;
+            hashes[slot] = hash;
+            count++;
+            entriesRetainedSize += canonicalRetainedSize;
+            return canonical;
+        }
+
+        private long retainedSizeAfterAdd(long canonicalRetainedSize)
+        {
+            int capacity = entries.length;
+            if (count + 1 > maxFill(capacity)) {
+                capacity *= 2;
+            }
+            return SEGMENT_INSTANCE_SIZE + tableRetainedSize(capacity) + entriesRetainedSize + canonicalRetainedSize;
+        }
+
+        private void rehash(int capacity)
+        {
+            Slice[] newEntries = new Slice[capacity];
+            int[] newHashes = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] != null) {
+                    int slot = hashes[i] & mask;
+                    while (newEntries[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newEntries[slot] = entries[i];
+                    newHashes[slot] = hashes[i];
+                }
+            }
+            entries = newEntries;
+            hashes = newHashes;
+        }
+
+        public synchronized int size()
+        {
+            return count;
+        }
+
+        public synchronized long getRetainedSize()
+        {
+            return SEGMENT_INSTANCE_SIZE + tableRetainedSize(entries.length) + entriesRetainedSize;
+        }
+    }
+}
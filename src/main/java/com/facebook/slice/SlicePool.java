@@ -0,0 +1,366 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A pool of heap or direct slices, so buffers can be reused instead of
+ * being left to the garbage collector.  Slices are pooled in power of two
+ * size classes from 64 bytes to 16 MB; larger slices are allocated
+ * directly and dropped on release.
+ * <p>
+ * Released slices of up to 64 KB are first kept in a small cache of the
+ * releasing thread, so a thread that repeatedly allocates and releases
+ * buffers does not contend with other threads.  Other slices are kept in a
+ * shared free list for each size class.  The total size of the pooled
+ * slices is bounded, and slices released beyond the bound are dropped.
+ * <p>
+ * Pooled memory is not cleared, so a slice may contain data written by a
+ * previous user.  A released slice, and any slice sharing its memory, must
+ * not be used afterwards.
+ * <p>
+ * This class is thread safe.
+ */
+public final class SlicePool
+{
+    private static final int MIN_SIZE_CLASS_SHIFT = 6;
+    private static final int MAX_SIZE_CLASS_SHIFT = 24;
+    private static final int SIZE_CLASS_COUNT = MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1;
+
+    private static final int MAX_LOCAL_SIZE_CLASS_SHIFT = 16;
+    private static final int LOCAL_SIZE_CLASS_COUNT = MAX_LOCAL_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1;
+    private static final int LOCAL_CACHE_ENTRIES = 4;
+
+    private final boolean direct;
+    private final long maxRetainedBytes;
+
+    private final FreeList[] freeLists = new FreeList[SIZE_CLASS_COUNT];
+    private final ThreadLocal<LocalCache> localCaches = ThreadLocal.withInitial(this::newLocalCache);
+    // all local caches, so the caches of terminated threads can be reclaimed
+    private final Set<LocalCache> localCacheRegistry = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder discardCount = new LongAdder();
+
+    /**
+     * Creates a pool of heap slices.
+     */
+    public static SlicePool heap(long maxRetainedBytes)
+    {
+        return new SlicePool(false, maxRetainedBytes);
+    }
+
+    /**
+     * Creates a pool of direct slices.
+     */
+    public static SlicePool direct(long maxRetainedBytes)
+    {
+        return new SlicePool(true, maxRetainedBytes);
+    }
+
+    private SlicePool(boolean direct, long maxRetainedBytes)
+    {
+        checkArgument(maxRetainedBytes >= 0, "maxRetainedBytes is negative");
+        this.direct = direct;
+        this.maxRetainedBytes = maxRetainedBytes;
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            freeLists[i] = new FreeList();
+        }
+    }
+
+    public boolean isDirect()
+    {
+        return direct;
+    }
+
+    /**
+     * Returns a slice of at least the specified size.  Unless the size is
+     * larger than the largest size class, the length of the slice is the
+     * size rounded up to a power of two, and the slice should be returned
+     * with {@link #release(Slice)} once it is no longer used.
+     */
+    public Slice allocate(int size)
+    {
+        checkArgument(size >= 0, "size is negative");
+        if (size > 1 << MAX_SIZE_CLASS_SHIFT) {
+            missCount.increment();
+            return newSlice(size);
+        }
+
+        int sizeClass = sizeClass(size);
+        int capacity = 1 << (sizeClass + MIN_SIZE_CLASS_SHIFT);
+        Slice slice = null;
+        if (sizeClass < LOCAL_SIZE_CLASS_COUNT) {
+            slice = localCaches.get().poll(sizeClass);
+        }
+        if (slice == null) {
+            slice = freeLists[sizeClass].poll();
+        }
+        if (slice == null) {
+            missCount.increment();
+            return newSlice(capacity);
+        }
+        retainedBytes.addAndGet(-capacity);
+        hitCount.increment();
+        return slice;
+    }
+
+    /**
+     * Returns a slice allocated by this pool to the pool.  Empty slices are
+     * ignored, and slices that do not fit a size class of this pool are
+     * dropped.
+     */
+    public void release(Slice slice)
+    {
+        requireNonNull(slice, "slice is null");
+        int capacity = slice.length();
+        if (capacity == 0) {
+            return;
+        }
+
+        int sizeClass = sizeClass(capacity);
+        if (capacity > 1 << MAX_SIZE_CLASS_SHIFT || capacity != 1 << (sizeClass + MIN_SIZE_CLASS_SHIFT) || !isWholeBuffer(slice) || !reserve(capacity)) {
+            discardCount.increment();
+            return;
+        }
+
+        if (sizeClass < LOCAL_SIZE_CLASS_COUNT && localCaches.get().offer(sizeClass, slice)) {
+            return;
+        }
+        freeLists[sizeClass].push(slice);
+    }
+
+    public long getMaxRetainedBytes()
+    {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Returns the total size of the slices held by this pool.
+     */
+    public long getRetainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Returns the number of allocations served from the pool.
+     */
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of allocations that created a new slice.
+     */
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the fraction of allocations served from the pool, or zero if
+     * there have been no allocations.
+     */
+    public double getHitRate()
+    {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of released slices that were dropped, because the
+     * pool was full or the slice does not fit a size class.
+     */
+    public long getDiscardCount()
+    {
+        return discardCount.sum();
+    }
+
+    private Slice newSlice(int capacity)
+    {
+        return direct ? Slices.allocateDirect(capacity) : Slices.allocate(capacity);
+    }
+
+    /**
+     * Checks that the slice covers an entire buffer of the kind this pool
+     * holds, rather than a view of part of a larger buffer.
+     */
+    private boolean isWholeBuffer(Slice slice)
+    {
+        if (direct) {
+            return slice.isWholeDirectBuffer();
+        }
+        return slice.hasByteArray() && slice.byteArrayOffset() == 0 && slice.byteArray().length == slice.length();
+    }
+
+    private boolean reserve(long bytes)
+    {
+        if (tryReserve(bytes)) {
+            return true;
+        }
+        return reclaimTerminatedThreadCaches() && tryReserve(bytes);
+    }
+
+    private boolean tryReserve(long bytes)
+    {
+        while (true) {
+            long current = retainedBytes.get();
+            if (current + bytes > maxRetainedBytes) {
+                return false;
+            }
+            if (retainedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drops the local caches of terminated threads.
+     *
+     * @return true if any memory was reclaimed
+     */
+    private boolean reclaimTerminatedThreadCaches()
+    {
+        long reclaimed = 0;
+        for (LocalCache cache : localCacheRegistry) {
+            if (cache.isOwnerTerminated()) {
+                localCacheRegistry.remove(cache);
+                reclaimed += cache.clear();
+            }
+        }
+        retainedBytes.addAndGet(-reclaimed);
+        return reclaimed > 0;
+    }
+
+    private LocalCache newLocalCache()
+    {
+        LocalCache cache = new LocalCache();
+        localCacheRegistry.add(cache);
+        return cache;
+    }
+
+    /**
+     * Returns the index of the smallest size class holding the specified size.
+     */
+    private static int sizeClass(int size)
+    {
+        if (size <= 1 << MIN_SIZE_CLASS_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_CLASS_SHIFT;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("SlicePool{");
+        builder.append("direct=").append(direct);
+        builder.append(", retainedBytes=").append(retainedBytes.get());
+        builder.append(", maxRetainedBytes=").append(maxRetainedBytes);
+        builder.append(", hitCount=").append(hitCount.sum());
+        builder.append(", missCount=").append(missCount.sum());
+        builder.append(", discardCount=").append(discardCount.sum());
+        builder.append('}');
+        return builder.toString();
+    }
+
+    private static final class FreeList
+    {
+        // used as a stack, so recently released and likely cached slices are reused first
+        private final ConcurrentLinkedDeque<Slice> slices = new ConcurrentLinkedDeque<>();
+
+        public Slice poll()
+        {
+            return slices.pollFirst();
+        }
+
+        public void push(Slice slice)
+        {
+            slices.addFirst(slice);
+        }
+    }
+
+    /**
+     * The slices cached by a single thread.  Only the owning thread accesses
+     * the cache, until it terminates.
+     */
+    private static final class LocalCache
+    {
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private final Slice[][] entries = new Slice[LOCAL_SIZE_CLASS_COUNT][LOCAL_CACHE_ENTRIES];
+        private final int[] counts = new int[LOCAL_SIZE_CLASS_COUNT];
+
+        public Slice poll(int sizeClass)
+        {
+            int count = counts[sizeClass];
+            if (count == 0) {
+                return null;
+            }
+            count--;
+            Slice slice = entries[sizeClass][count];
+            entries[sizeClass][count] = null;
+            counts[sizeClass] = count;
+            return slice;
+        }
+
+        public boolean offer(int sizeClass, Slice slice)
+        {
+            int count = counts[sizeClass];
+            if (count == LOCAL_CACHE_ENTRIES) {
+                return false;
+            }
+            entries[sizeClass][count] = slice;
+            counts[sizeClass] = count + 1;
+            return true;
+        }
+
+        public boolean isOwnerTerminated()
+        {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+
+        /**
+         * Removes all slices from the cache.
+         *
+         * @return the total size of the removed slices
+         */
+        public long clear()
+        {
+            long bytes = 0;
+            for (int sizeClass = 0; sizeClass < LOCAL_SIZE_CLASS_COUNT; sizeClass++) {
+                for (int i = 0; i < counts[sizeClass]; i++) {
+                    bytes += entries[sizeClass][i].length();
+                    entries[sizeClass][i] = null;
+                }
+                counts[sizeClass] = 0;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import java.util.Arrays;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A substring search precompiled for a single pattern.  The skip tables are
+ * built once and can be reused to search any number of slices.  Searching is
+ * linear in the length of the searched slice in the worst case.
+ * <p>
+ * Patterns of up to {@value #MAX_HORSPOOL_LENGTH} bytes use Boyer-Moore-Horspool.
+ * Each candidate position is verified with at most two word comparisons, so
+ * the search stays linear.  Longer patterns use the Two-Way algorithm of
+ * Crochemore and Perrin, combined with the Horspool bad character shift.
+ * <p>
+ * Reference implementation: https://sourceware.org/git/?p=glibc.git;a=blob;f=string/str-two-way.h
+ */
+public final class SliceSearcher
+{
+    private static final int MAX_HORSPOOL_LENGTH = 16;
+
+    private final Slice pattern;
+
+    /**
+     * Number of bytes the search window can be advanced when the last byte
+     * of the window is the table index.
+     */
+    private final int[] shifts;
+
+    /**
+     * Start of the right half of the critical factorization of the pattern.
+     * Only used for Two-Way search.
+     */
+    private final int suffix;
+
+    /**
+     * Period of the pattern if the pattern is periodic, otherwise the
+     * guaranteed shift after a mismatch in the left half.  Only used for
+     * Two-Way search.
+     */
+    private final int period;
+    private final boolean periodic;
+
+    public SliceSearcher(Slice pattern)
+    {
+        requireNonNull(pattern, "pattern is null");
+        // copy the pattern so the tables can not get out of sync with it
+        this.pattern = Slices.copyOf(pattern);
+
+        int length = pattern.length();
+        shifts = new int[256];
+        Arrays.fill(shifts, length);
+        if (length <= MAX_HORSPOOL_LENGTH) {
+            // the last byte is excluded so a match of the last byte still advances the window
+            for (int i = 0; i < length - 1; i++) {
+                shifts[this.pattern.getByteUnchecked(i) & 0xFF] = length - i - 1;
+            }
+            suffix = 0;
+            period = 0;
+            periodic = false;
+            return;
+        }
+
+        // a zero shift tells the Two-Way search the last byte matched
+        for (int i = 0; i < length; i++) {
+            shifts[this.pattern.getByteUnchecked(i) & 0xFF] = length - i - 1;
+        }
+
+        int[] factorization = criticalFactorization(this.pattern);
+        suffix = factorization[0];
+        if (this.pattern.equalsUnchecked(0, this.pattern, factorization[1], suffix)) {
+            periodic = true;
+            period = factorization[1];
+        }
+        else {
+            periodic = false;
+            period = max(suffix, length - suffix) + 1;
+        }
+    }
+
+    /**
+     * Returns the pattern searched for.
+     */
+    public Slice getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the pattern in the specified slice.
+     * If the pattern is not found -1 is returned.  If the pattern is empty, zero is
+     * returned.
+     */
+    public int indexOf(Slice slice)
+    {
+        return indexOf(slice, 0);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the pattern in the specified slice,
+     * starting at the specified offset. If the pattern is not found -1 is returned.
+     * If the pattern is empty, the offset is returned.
+     */
+    public int indexOf(Slice slice, int offset)
+    {
+        checkArgument(offset >= 0, "offset is negative");
+
+        if (slice.length() == 0 || offset >= slice.length()) {
+            return -1;
+        }
+
+        if (pattern.length() == 0) {
+            return offset;
+        }
+
+        if (pattern.length() <= MAX_HORSPOOL_LENGTH) {
+            return indexOfHorspool(slice, offset);
+        }
+        if (periodic) {
+            return indexOfTwoWayPeriodic(slice, offset);
+        }
+        return indexOfTwoWay(slice, offset);
+    }
+
+    private int indexOfHorspool(Slice slice, int offset)
+    {
+        int length = pattern.length();
+        byte last = pattern.getByteUnchecked(length - 1);
+
+        int lastValidIndex = slice.length() - length;
+        int index = offset;
+        while (index <= lastValidIndex) {
+            byte value = slice.getByteUnchecked(index + length - 1);
+            if (value == last && slice.equalsUnchecked(index, pattern, 0, length - 1)) {
+                return index;
+            }
+            index += shifts[value & 0xFF];
+        }
+        return -1;
+    }
+
+    private int indexOfTwoWay(Slice slice, int offset)
+    {
+        int length = pattern.length();
+
+        int lastValidIndex = slice.length() - length;
+        int index = offset;
+        while (index <= lastValidIndex) {
+            // check the last byte first, and skip ahead if it does not match
+            int shift = shifts[slice.getByteUnchecked(index + length - 1) & 0xFF];
+            if (shift > 0) {
+                index += shift;
+                continue;
+            }
+
+            // scan the right half, the last byte is known to match
+            int i = suffix;
+            while (i < length - 1 && pattern.getByteUnchecked(i) == slice.getByteUnchecked(index + i)) {
+                i++;
+            }
+            if (i < length - 1) {
+                index += i - suffix + 1;
+                continue;
+            }
+
+            // scan the left half
+            i = suffix - 1;
+            while (i >= 0 && pattern.getByteUnchecked(i) == slice.getByteUnchecked(index + i)) {
+                i--;
+            }
+            if (i < 0) {
+                return index;
+            }
+            index += period;
+        }
+        return -1;
+    }
+
+    private int indexOfTwoWayPeriodic(Slice slice, int offset)
+    {
+        int length = pattern.length();
+
+        int lastValidIndex = slice.length() - length;
+        int index = offset;
+        // number of bytes at the start of the window known to match from the previous attempt
+        int memory = 0;
+        while (index <= lastValidIndex) {
+            // check the last byte first, and skip ahead if it does not match
+            int shift = shifts[slice.getByteUnchecked(index + length - 1) & 0xFF];
+            if (shift > 0) {
+                if (memory != 0 && shift < period) {
+                    // the last period has a byte out of place, so there is no match before the mismatch
+                    shift = length - period;
+                }
+                memory = 0;
+                index += shift;
+                continue;
+            }
+
+            // scan the right half, the last byte is known to match
+            int i = max(suffix, memory);
+            while (i < length - 1 && pattern.getByteUnchecked(i) == slice.getByteUnchecked(index + i)) {
+                i++;
+            }
+            if (i < length - 1) {
+                index += i - suffix + 1;
+                memory = 0;
+                continue;
+            }
+
+            // scan the left half, skipping the bytes remembered from the previous attempt
+            i = suffix - 1;
+            while (memory < i + 1 && pattern.getByteUnchecked(i) == slice.getByteUnchecked(index + i)) {
+                i--;
+            }
+            if (i + 1 < memory + 1) {
+                return index;
+            }
+            // remember how many repetitions of the period in the right half matched
+            index += period;
+            memory = length - period;
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the critical factorization of the pattern using the maximal suffixes
+     * for the natural and the reversed byte order.  Returns the start of the right half,
+     * and a period of the right half.  The period of the right half is the period of
+     * the whole pattern iff the pattern is periodic.
+     */
+    private static int[] criticalFactorization(Slice pattern)
+    {
+        int length = pattern.length();
+
+        // maximal suffix for the natural order
+        int maxSuffix = -1;
+        int j = 0;
+        int k = 1;
+        int period = 1;
+        while (j + k < length) {
+            int a = pattern.getByteUnchecked(j + k) & 0xFF;
+            int b = pattern.getByteUnchecked(maxSuffix + k) & 0xFF;
+            if (a < b) {
+                // suffix is smaller, period is the entire prefix so far
+                j += k;
+                k = 1;
+                period = j - maxSuffix;
+            }
+            else if (a == b) {
+                // advance through repetition of the current period
+                if (k != period) {
+                    k++;
+                }
+                else {
+                    j += period;
+                    k = 1;
+                }
+            }
+            else {
+                // suffix is larger, start over from the current location
+                maxSuffix = j++;
+                k = 1;
+                period = 1;
+            }
+        }
+        int naturalPeriod = period;
+
+        // maximal suffix for the reversed order
+        int maxSuffixReversed = -1;
+        j = 0;
+        k = 1;
+        period = 1;
+        while (j + k < length) {
+            int a = pattern.getByteUnchecked(j + k) & 0xFF;
+            int b = pattern.getByteUnchecked(maxSuffixReversed + k) & 0xFF;
+            if (b < a) {
+                j += k;
+                k = 1;
+                period = j - maxSuffixReversed;
+            }
+            else if (a == b) {
+                if (k != period) {
+                    k++;
+                }
+                else {
+                    j += period;
+                    k = 1;
+                }
+            }
+            else {
+                maxSuffixReversed = j++;
+                k = 1;
+                period = 1;
+            }
+        }
+
+        // choose the longer of the two maximal suffixes
+        if (maxSuffixReversed < maxSuffix) {
+            return new int[] {maxSuffix + 1, naturalPeriod};
+        }
+        return new int[] {maxSuffixReversed + 1, period};
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("SliceSearcher{");
+        builder.append("patternLength=").append(pattern.length());
+        builder.append(", algorithm=").append(pattern.length() <= MAX_HORSPOOL_LENGTH ? "horspool" : "two-way");
+        builder.append('}');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sorts slices, or portions of a single slice, in the order defined by
+ * {@link Slice#compareTo(Slice)} using a most significant byte first radix
+ * sort.
+ * <p>
+ * The next eight bytes of every key are cached in an array next to the
+ * permutation being sorted, so the slices themselves are only read once for
+ * every eight bytes of depth.  Buckets smaller than
+ * {@value #INSERTION_SORT_THRESHOLD} entries are finished with an insertion
+ * sort on the cached prefixes.  The sort is stable.
+ */
+public final class SliceSorter
+{
+    /**
+     * Arrays with more entries than this are sorted in parallel by the
+     * {@code parallelSort} methods, unless another threshold is specified.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    // bucket 0 holds the keys that end before the current depth
+    private static final int BUCKETS = 257;
+
+    private SliceSorter() {}
+
+    public static void sort(Slice[] slices)
+    {
+        sort(slices, 0, slices.length);
+    }
+
+    public static void sort(Slice[] slices, int fromIndex, int toIndex)
+    {
+        checkPositionIndexes(fromIndex, toIndex, slices.length);
+        Sorter sorter = Sorter.forSlices(slices, fromIndex, toIndex);
+        sorter.sort(0, toIndex - fromIndex, 0);
+        sorter.permute();
+    }
+
+    public static void parallelSort(Slice[] slices)
+    {
+        parallelSort(slices, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Sorts the slices, using the common fork-join pool if there are more
+     * than {@code parallelThreshold} slices.
+     */
+    public static void parallelSort(Slice[] slices, int parallelThreshold)
+    {
+        checkArgument(parallelThreshold > 0, "parallelThreshold must be positive");
+        Sorter sorter = Sorter.forSlices(slices, 0, slices.length);
+        parallelSort(sorter, slices.length, parallelThreshold);
+        sorter.permute();
+    }
+
+    /**
+     * Sorts the keys stored in {@code data} at {@code offsets[i]} with length
+     * {@code lengths[i]}.  The offsets and lengths arrays are permuted
+     * together, so after the sort the entries are in ascending key order.
+     */
+    public static void sort(Slice data, int[] offsets, int[] lengths)
+    {
+        Sorter sorter = Sorter.forBlock(data, offsets, lengths);
+        sorter.sort(0, offsets.length, 0);
+        sorter.permute();
+    }
+
+    public static void parallelSort(Slice data, int[] offsets, int[] lengths)
+    {
+        parallelSort(data, offsets, lengths, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Sorts the keys stored in {@code data} at {@code offsets[i]} with length
+     * {@code lengths[i]}, using the common fork-join pool if there are more
+     * than {@code parallelThreshold} keys.
+     */
+    public static void parallelSort(Slice data, int[] offsets, int[] lengths, int parallelThreshold)
+    {
+        checkArgument(parallelThreshold > 0, "parallelThreshold must be positive");
+        Sorter sorter = Sorter.forBlock(data, offsets, lengths);
+        parallelSort(sorter, offsets.length, parallelThreshold);
+        sorter.permute();
+    }
+
+    private static void parallelSort(Sorter sorter, int count, int parallelThreshold)
+    {
+        if (count <= parallelThreshold) {
+            sorter.sort(0, count, 0);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new SortTask(sorter, 0, count, 0, max(parallelThreshold, INSERTION_SORT_THRESHOLD)));
+    }
+
+    private static final class Sorter
+    {
+        private final Slice[] slices;
+        private final int fromIndex;
+        private final Slice data;
+        private final int[] offsets;
+        private final int[] lengths;
+
+        // indexes of the entries in sorted order, with the cached prefix of each
+        // entry and the number of bytes in the prefix that are part of the key
+        private final int[] ids;
+        private final long[] keys;
+        private final byte[] keyLengths;
+
+        // targets of the bucket distribution
+        private final int[] auxIds;
+        private final long[] auxKeys;
+        private final byte[] auxKeyLengths;
+
+        private Sorter(Slice[] slices, int fromIndex, Slice data, int[] offsets, int[] lengths, int count)
+        {
+            this.slices = slices;
+            this.fromIndex = fromIndex;
+            this.data = data;
+            this.offsets = offsets;
+            this.lengths = lengths;
+
+            ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = i;
+            }
+            keys = new long[count];
+            keyLengths = new byte[count];
+            auxIds = new int[count];
+            auxKeys = new long[count];
+            auxKeyLengths = new byte[count];
+        }
+
+        public static Sorter forSlices(Slice[] slices, int fromIndex, int toIndex)
+        {
+            requireNonNull(slices, "slices is null");
+            for (int i = fromIndex; i < toIndex; i++) {
+                requireNonNull(slices[i], "slice is null");
+            }
+            return new Sorter(slices, fromIndex, null, null, null, toIndex - fromIndex);
+        }
+
+        public static Sorter forBlock(Slice data, int[] offsets, int[] lengths)
+        {
+            requireNonNull(data, "data is null");
+            requireNonNull(offsets, "offsets is null");
+            requireNonNull(lengths, "lengths is null");
+            checkArgument(offsets.length == lengths.length, "offsets and lengths must have the same size");
+            for (int i = 0; i < offsets.length; i++) {
+                checkPositionIndexes(offsets[i], offsets[i] + lengths[i], data.length());
+            }
+            return new Sorter(null, 0, data, offsets, lengths, offsets.length);
+        }
+
+        private Slice slice(int id)
+        {
+            return (slices != null) ? slices[fromIndex + id] : data;
+        }
+
+        private int offset(int id)
+        {
+            return (offsets != null) ? offsets[id] : 0;
+        }
+
+        private int length(int id)
+        {
+            return (lengths != null) ? lengths[id] : slices[fromIndex + id].length();
+        }
+
+        /**
+         * Sorts the entries in the specified range, all of which have the
+         * same first {@code depth} bytes.
+         */
+        public void sort(int from, int to, int depth)
+        {
+            if (to - from < 2) {
+                return;
+            }
+
+            int[] counts = new int[BUCKETS + 1];
+            int[] stack = new int[3 * 64];
+            int top = 0;
+
+            stack[top++] = from;
+            stack[top++] = to;
+            stack[top++] = depth;
+            while (top > 0) {
+                depth = stack[--top];
+                to = stack[--top];
+                from = stack[--top];
+
+                depth = loadKeys(from, to, depth);
+                if (to - from < INSERTION_SORT_THRESHOLD) {
+                    insertionSort(from, to, depth);
+                    continue;
+                }
+
+                distribute(from, to, depth, counts);
+                int start = from + counts[0];
+                for (int bucket = 1; bucket < BUCKETS; bucket++) {
+                    int end = from + counts[bucket];
+                    if (end - start > 1) {
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[top++] = start;
+                        stack[top++] = end;
+                        stack[top++] = depth + 1;
+                    }
+                    start = end;
+                }
+            }
+        }
+
+        /**
+         * Caches the next eight bytes of each key when the depth is at the
+         * start of a new prefix.  Prefixes shared by all entries are skipped.
+         *
+         * @return the depth of the first byte not shared by all entries
+         */
+        public int loadKeys(int from, int to, int depth)
+        {
+            while ((depth & (SIZE_OF_LONG - 1)) == 0) {
+                boolean shared = true;
+                for (int i = from; i < to; i++) {
+                    int id = ids[i];
+                    int length = length(id) - depth;
+                    keys[i] = slice(id).getAbbreviatedKey(offset(id) + depth, length);
+                    keyLengths[i] = (byte) min(length, SIZE_OF_LONG);
+                    shared &= keys[i] == keys[from] && keyLengths[i] == SIZE_OF_LONG;
+                }
+                if (!shared) {
+                    return depth;
+                }
+                depth += SIZE_OF_LONG;
+            }
+            return depth;
+        }
+
+        /**
+         * Distributes the entries in the range into buckets by the byte at
+         * {@code depth}.  On return {@code counts[bucket]} is the end of the
+         * bucket relative to {@code from}.
+         */
+        public void distribute(int from, int to, int depth, int[] counts)
+        {
+            int position = depth & (SIZE_OF_LONG - 1);
+            int shift = (SIZE_OF_LONG - 1 - position) * Byte.SIZE;
+
+            Arrays.fill(counts, 0);
+            for (int i = from; i < to; i++) {
+                counts[bucket(i, position, shift) + 1]++;
+            }
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket + 1] += counts[bucket];
+            }
+
+            for (int i = from; i < to; i++) {
+                int target = from + counts[bucket(i, position, shift)]++;
+                auxIds[target] = ids[i];
+                auxKeys[target] = keys[i];
+                auxKeyLengths[target] = keyLengths[i];
+            }
+            System.arraycopy(auxIds, from, ids, from, to - from);
+            System.arraycopy(auxKeys, from, keys, from, to - from);
+            System.arraycopy(auxKeyLengths, from, keyLengths, from, to - from);
+        }
+
+        private int bucket(int index, int position, int shift)
+        {
+            if (position >= keyLengths[index]) {
+                return 0;
+            }
+            return (int) ((keys[index] >>> shift) & 0xFF) + 1;
+        }
+
+        private void insertionSort(int from, int to, int depth)
+        {
+            int prefixStart = depth & -SIZE_OF_LONG;
+            for (int i = from + 1; i < to; i++) {
+                int id = ids[i];
+                long key = keys[i];
+                byte keyLength = keyLengths[i];
+
+                int j = i - 1;
+                while (j >= from && compare(key, id, keys[j], ids[j], prefixStart) < 0) {
+                    ids[j + 1] = ids[j];
+                    keys[j + 1] = keys[j];
+                    keyLengths[j + 1] = keyLengths[j];
+                    j--;
+                }
+                ids[j + 1] = id;
+                keys[j + 1] = key;
+                keyLengths[j + 1] = keyLength;
+            }
+        }
+
+        private int compare(long leftKey, int leftId, long rightKey, int rightId, int prefixStart)
+        {
+            // prefixes are zero padded, so differing prefixes order the keys
+            if (leftKey != rightKey) {
+                return Long.compareUnsigned(leftKey, rightKey);
+            }
+            return slice(leftId).compareTo(
+                    offset(leftId) + prefixStart,
+                    length(leftId) - prefixStart,
+                    slice(rightId),
+                    offset(rightId) + prefixStart,
+                    length(rightId) - prefixStart);
+        }
+
+        /**
+         * Applies the sorted order to the input arrays.
+         */
+        public void permute()
+        {
+            if (slices != null) {
+                Slice[] original = Arrays.copyOfRange(slices, fromIndex, fromIndex + ids.length);
+                for (int i = 0; i < ids.length; i++) {
+                    slices[fromIndex + i] = original[ids[i]];
+                }
+                return;
+            }
+
+            int[] originalOffsets = offsets.clone();
+            int[] originalLengths = lengths.clone();
+            for (int i = 0; i < ids.length; i++) {
+                offsets[i] = originalOffsets[ids[i]];
+                lengths[i] = originalLengths[ids[i]];
+            }
+        }
+    }
+
+    // never serialized, as it only runs in the fork join pool
+    @SuppressWarnings("serial")
+    private static final class SortTask
+            extends RecursiveAction
+    {
+        private final Sorter sorter;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final int parallelThreshold;
+
+        public SortTask(Sorter sorter, int from, int to, int depth, int parallelThreshold)
+        {
+            this.sorter = sorter;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= parallelThreshold) {
+                sorter.sort(from, to, depth);
+                return;
+            }
+
+            // buckets cover disjoint ranges of the sorter arrays, so they can be sorted concurrently
+            int bucketDepth = sorter.loadKeys(from, to, depth);
+            int[] counts = new int[BUCKETS + 1];
+            sorter.distribute(from, to, bucketDepth, counts);
+
+            List<SortTask> tasks = new ArrayList<>();
+            int start = from + counts[0];
+            for (int bucket = 1; bucket < BUCKETS; bucket++) {
+                int end = from + counts[bucket];
+                if (end - start > 1) {
+                    tasks.add(new SortTask(sorter, start, end, bucketDepth + 1, parallelThreshold));
+                }
+                start = end;
+            }
+            invokeAll(tasks);
+        }
+    }
+}
@@ -13,19 +13,294 @@
  */
 package com.facebook.slice;
 
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
 import static com.facebook.slice.SizeOf.SIZE_OF_LONG;
 import static java.lang.Long.rotateLeft;
+import static java.lang.Math.min;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 
 /**
  * Reference implementation: http://burtleburtle.net/bob/hash/spooky.html
+ * <p>
+ * Instances hash data incrementally, and produce the same hash as the
+ * static methods for the concatenated data.
  */
 public class SpookyHashV2
 {
     private static final long MAGIC_CONSTANT = 0xDEAD_BEEF_DEAD_BEEFL;
     private static final int SHORT_THRESHOLD = 192;
+    private static final int BLOCK_SIZE = 12 * SIZE_OF_LONG;
+
+    private final long seed;
+
+    // holds all data until the short threshold is reached, and after that
+    // the partial block in the first half with the second half as scratch space
+    private static final long BUFFER_ADDRESS = ARRAY_BYTE_BASE_OFFSET;
+    private final byte[] buffer = new byte[SHORT_THRESHOLD];
+    private final Slice bufferSlice = Slices.wrappedBuffer(buffer);
+    private int bufferSize;
+
+    private long length;
+
+    private long h0;
+    private long h1;
+    private long h2;
+    private long h3;
+    private long h4;
+    private long h5;
+    private long h6;
+    private long h7;
+    private long h8;
+    private long h9;
+    private long h10;
+    private long h11;
+
+    public SpookyHashV2(long seed)
+    {
+        this.seed = seed;
+        reset();
+    }
+
+    public SpookyHashV2 update(byte[] data)
+    {
+        return update(data, 0, data.length);
+    }
+
+    public SpookyHashV2 update(byte[] data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length);
+        updateHash(data, ARRAY_BYTE_BASE_OFFSET + offset, length);
+        return this;
+    }
+
+    public SpookyHashV2 update(Slice data)
+    {
+        return update(data, 0, data.length());
+    }
+
+    public SpookyHashV2 update(Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        updateHash(data.getBase(), data.getAddress() + offset, length);
+        return this;
+    }
+
+    /**
+     * Resets this hasher to its initial state, so it can be reused.
+     */
+    public void reset()
+    {
+        h0 = seed;
+        h1 = seed;
+        h2 = MAGIC_CONSTANT;
+        h3 = seed;
+        h4 = seed;
+        h5 = MAGIC_CONSTANT;
+        h6 = seed;
+        h7 = seed;
+        h8 = MAGIC_CONSTANT;
+        h9 = seed;
+        h10 = seed;
+        h11 = MAGIC_CONSTANT;
+        bufferSize = 0;
+        length = 0;
+    }
+
+    public int hash32()
+    {
+        return (int) hash64();
+    }
+
+    /**
+     * Returns the hash of the data added so far, which is equal to
+     * {@link #hash64(Slice, int, int, long)} of the concatenated data.
+     */
+    public long hash64()
+    {
+        if (length < SHORT_THRESHOLD) {
+            return shortHash64(bufferSlice, 0, (int) length, seed);
+        }
+
+        // pad the partial block with zeros and store its length in the last byte
+        unsafe.copyMemory(buffer, BUFFER_ADDRESS, buffer, BUFFER_ADDRESS + BLOCK_SIZE, bufferSize);
+        unsafe.setMemory(buffer, BUFFER_ADDRESS + BLOCK_SIZE + bufferSize, BLOCK_SIZE - bufferSize, (byte) 0);
+        buffer[2 * BLOCK_SIZE - 1] = (byte) bufferSize;
+
+        long address = BUFFER_ADDRESS + BLOCK_SIZE;
+        long h0 = this.h0 + unsafe.getLong(buffer, address);
+        long h1 = this.h1 + unsafe.getLong(buffer, address + SIZE_OF_LONG);
+        long h2 = this.h2 + unsafe.getLong(buffer, address + 2 * SIZE_OF_LONG);
+        long h3 = this.h3 + unsafe.getLong(buffer, address + 3 * SIZE_OF_LONG);
+        long h4 = this.h4 + unsafe.getLong(buffer, address + 4 * SIZE_OF_LONG);
+        long h5 = this.h5 + unsafe.getLong(buffer, address + 5 * SIZE_OF_LONG);
+        long h6 = this.h6 + unsafe.getLong(buffer, address + 6 * SIZE_OF_LONG);
+        long h7 = this.h7 + unsafe.getLong(buffer, address + 7 * SIZE_OF_LONG);
+        long h8 = this.h8 + unsafe.getLong(buffer, address + 8 * SIZE_OF_LONG);
+        long h9 = this.h9 + unsafe.getLong(buffer, address + 9 * SIZE_OF_LONG);
+        long h10 = this.h10 + unsafe.getLong(buffer, address + 10 * SIZE_OF_LONG);
+        long h11 = this.h11 + unsafe.getLong(buffer, address + 11 * SIZE_OF_LONG);
+
+        for (int i = 0; i < 3; i++) {
+            h11 += h1;
+            h2 ^= h11;
+            h1 = rotateLeft(h1, 44);
+            h0 += h2;
+            h3 ^= h0;
+            h2 = rotateLeft(h2, 15);
+            h1 += h3;
+            h4 ^= h1;
+            h3 = rotateLeft(h3, 34);
+            h2 += h4;
+            h5 ^= h2;
+            h4 = rotateLeft(h4, 21);
+            h3 += h5;
+            h6 ^= h3;
+            h5 = rotateLeft(h5, 38);
+            h4 += h6;
+            h7 ^= h4;
+            h6 = rotateLeft(h6, 33);
+            h5 += h7;
+            h8 ^= h5;
+            h7 = rotateLeft(h7, 10);
+            h6 += h8;
+            h9 ^= h6;
+            h8 = rotateLeft(h8, 13);
+            h7 += h9;
+            h10 ^= h7;
+            h9 = rotateLeft(h9, 38);
+            h8 += h10;
+            h11 ^= h8;
+            h10 = rotateLeft(h10, 53);
+            h9 += h11;
+            h0 ^= h9;
+            h11 = rotateLeft(h11, 42);
+            h10 += h0;
+            h1 ^= h10;
+            h0 = rotateLeft(h0, 54);
+        }
+
+        return h0;
+    }
+
+    private void updateHash(Object base, long address, int length)
+    {
+        if (this.length + length < SHORT_THRESHOLD) {
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS + bufferSize, length);
+            bufferSize += length;
+            this.length += length;
+            return;
+        }
+        this.length += length;
+
+        if (bufferSize >= BLOCK_SIZE) {
+            // only happens when the short threshold is first reached
+            mix(buffer, BUFFER_ADDRESS);
+            bufferSize -= BLOCK_SIZE;
+            unsafe.copyMemory(buffer, BUFFER_ADDRESS + BLOCK_SIZE, buffer, BUFFER_ADDRESS, bufferSize);
+        }
+
+        if (bufferSize > 0) {
+            int available = min(BLOCK_SIZE - bufferSize, length);
+
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS + bufferSize, available);
+
+            bufferSize += available;
+            address += available;
+            length -= available;
 
-    private SpookyHashV2()
+            if (bufferSize < BLOCK_SIZE) {
+                return;
+            }
+            mix(buffer, BUFFER_ADDRESS);
+            bufferSize = 0;
+        }
+
+        while (length >= BLOCK_SIZE) {
+            mix(base, address);
+            address += BLOCK_SIZE;
+            length -= BLOCK_SIZE;
+        }
+
+        if (length > 0) {
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS, length);
+            bufferSize = length;
+        }
+    }
+
+    private void mix(Object base, long address)
     {
+        h0 += unsafe.getLong(base, address);
+        h2 ^= h10;
+        h11 ^= h0;
+        h0 = rotateLeft(h0, 11);
+        h11 += h1;
+
+        h1 += unsafe.getLong(base, address + SIZE_OF_LONG);
+        h3 ^= h11;
+        h0 ^= h1;
+        h1 = rotateLeft(h1, 32);
+        h0 += h2;
+
+        h2 += unsafe.getLong(base, address + 2 * SIZE_OF_LONG);
+        h4 ^= h0;
+        h1 ^= h2;
+        h2 = rotateLeft(h2, 43);
+        h1 += h3;
+
+        h3 += unsafe.getLong(base, address + 3 * SIZE_OF_LONG);
+        h5 ^= h1;
+        h2 ^= h3;
+        h3 = rotateLeft(h3, 31);
+        h2 += h4;
+
+        h4 += unsafe.getLong(base, address + 4 * SIZE_OF_LONG);
+        h6 ^= h2;
+        h3 ^= h4;
+        h4 = rotateLeft(h4, 17);
+        h3 += h5;
+
+        h5 += unsafe.getLong(base, address + 5 * SIZE_OF_LONG);
+        h7 ^= h3;
+        h4 ^= h5;
+        h5 = rotateLeft(h5, 28);
+        h4 += h6;
+
+        h6 += unsafe.getLong(base, address + 6 * SIZE_OF_LONG);
+        h8 ^= h4;
+        h5 ^= h6;
+        h6 = rotateLeft(h6, 39);
+        h5 += h7;
+
+        h7 += unsafe.getLong(base, address + 7 * SIZE_OF_LONG);
+        h9 ^= h5;
+        h6 ^= h7;
+        h7 = rotateLeft(h7, 57);
+        h6 += h8;
+
+        h8 += unsafe.getLong(base, address + 8 * SIZE_OF_LONG);
+        h10 ^= h6;
+        h7 ^= h8;
+        h8 = rotateLeft(h8, 55);
+        h7 += h9;
+
+        h9 += unsafe.getLong(base, address + 9 * SIZE_OF_LONG);
+        h11 ^= h7;
+        h8 ^= h9;
+        h9 = rotateLeft(h9, 54);
+        h8 += h10;
+
+        h10 += unsafe.getLong(base, address + 10 * SIZE_OF_LONG);
+        h0 ^= h8;
+        h9 ^= h10;
+        h10 = rotateLeft(h10, 22);
+        h9 += h11;
+
+        h11 += unsafe.getLong(base, address + 11 * SIZE_OF_LONG);
+        h1 ^= h9;
+        h10 ^= h11;
+        h11 = rotateLeft(h11, 46);
+        h10 += h0;
     }
 
     public static long hash64(Slice data, int offset, int length, long seed)
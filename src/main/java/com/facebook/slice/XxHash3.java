@@ -0,0 +1,815 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Checksum;
+
+import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkArgument;
+import static com.facebook.slice.Preconditions.checkPositionIndexes;
+import static java.lang.Long.rotateLeft;
+import static java.lang.Math.min;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * The XXH3 64 and 128 bit hash functions, using the default secret.  XXH3
+ * has specialized code paths for inputs of up to 240 bytes, which makes it
+ * much faster than {@link XxHash64} for short keys, and it processes longer
+ * inputs in 64 byte stripes.
+ * <p>
+ * A 128 bit hash is returned as a 16 byte slice containing the low 64 bits
+ * followed by the high 64 bits, both little-endian.
+ */
+public final class XxHash3
+{
+    private static final long PRIME32_1 = 0x9E3779B1L;
+    private static final long PRIME32_2 = 0x85EBCA77L;
+    private static final long PRIME32_3 = 0xC2B2AE3DL;
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+    private static final long PRIME_MX1 = 0x165667919E3779F9L;
+    private static final long PRIME_MX2 = 0x9FB21C651E98DF25L;
+
+    private static final long DEFAULT_SEED = 0;
+
+    private static final byte[] DEFAULT_SECRET = {
+            (byte) 0xb8, (byte) 0xfe, (byte) 0x6c, (byte) 0x39, (byte) 0x23, (byte) 0xa4, (byte) 0x4b, (byte) 0xbe,
+            (byte) 0x7c, (byte) 0x01, (byte) 0x81, (byte) 0x2c, (byte) 0xf7, (byte) 0x21, (byte) 0xad, (byte) 0x1c,
+            (byte) 0xde, (byte) 0xd4, (byte) 0x6d, (byte) 0xe9, (byte) 0x83, (byte) 0x90, (byte) 0x97, (byte) 0xdb,
+            (byte) 0x72, (byte) 0x40, (byte) 0xa4, (byte) 0xa4, (byte) 0xb7, (byte) 0xb3, (byte) 0x67, (byte) 0x1f,
+            (byte) 0xcb, (byte) 0x79, (byte) 0xe6, (byte) 0x4e, (byte) 0xcc, (byte) 0xc0, (byte) 0xe5, (byte) 0x78,
+            (byte) 0x82, (byte) 0x5a, (byte) 0xd0, (byte) 0x7d, (byte) 0xcc, (byte) 0xff, (byte) 0x72, (byte) 0x21,
+            (byte) 0xb8, (byte) 0x08, (byte) 0x46, (byte) 0x74, (byte) 0xf7, (byte) 0x43, (byte) 0x24, (byte) 0x8e,
+            (byte) 0xe0, (byte) 0x35, (byte) 0x90, (byte) 0xe6, (byte) 0x81, (byte) 0x3a, (byte) 0x26, (byte) 0x4c,
+            (byte) 0x3c, (byte) 0x28, (byte) 0x52, (byte) 0xbb, (byte) 0x91, (byte) 0xc3, (byte) 0x00, (byte) 0xcb,
+            (byte) 0x88, (byte) 0xd0, (byte) 0x65, (byte) 0x8b, (byte) 0x1b, (byte) 0x53, (byte) 0x2e, (byte) 0xa3,
+            (byte) 0x71, (byte) 0x64, (byte) 0x48, (byte) 0x97, (byte) 0xa2, (byte) 0x0d, (byte) 0xf9, (byte) 0x4e,
+            (byte) 0x38, (byte) 0x19, (byte) 0xef, (byte) 0x46, (byte) 0xa9, (byte) 0xde, (byte) 0xac, (byte) 0xd8,
+            (byte) 0xa8, (byte) 0xfa, (byte) 0x76, (byte) 0x3f, (byte) 0xe3, (byte) 0x9c, (byte) 0x34, (byte) 0x3f,
+            (byte) 0xf9, (byte) 0xdc, (byte) 0xbb, (byte) 0xc7, (byte) 0xc7, (byte) 0x0b, (byte) 0x4f, (byte) 0x1d,
+            (byte) 0x8a, (byte) 0x51, (byte) 0xe0, (byte) 0x4b, (byte) 0xcd, (byte) 0xb4, (byte) 0x59, (byte) 0x31,
+            (byte) 0xc8, (byte) 0x9f, (byte) 0x7e, (byte) 0xc9, (byte) 0xd9, (byte) 0x78, (byte) 0x73, (byte) 0x64,
+            (byte) 0xea, (byte) 0xc5, (byte) 0xac, (byte) 0x83, (byte) 0x34, (byte) 0xd3, (byte) 0xeb, (byte) 0xc3,
+            (byte) 0xc5, (byte) 0x81, (byte) 0xa0, (byte) 0xff, (byte) 0xfa, (byte) 0x13, (byte) 0x63, (byte) 0xeb,
+            (byte) 0x17, (byte) 0x0d, (byte) 0xdd, (byte) 0x51, (byte) 0xb7, (byte) 0xf0, (byte) 0xda, (byte) 0x49,
+            (byte) 0xd3, (byte) 0x16, (byte) 0x55, (byte) 0x26, (byte) 0x29, (byte) 0xd4, (byte) 0x68, (byte) 0x9e,
+            (byte) 0x2b, (byte) 0x16, (byte) 0xbe, (byte) 0x58, (byte) 0x7d, (byte) 0x47, (byte) 0xa1, (byte) 0xfc,
+            (byte) 0x8f, (byte) 0xf8, (byte) 0xb8, (byte) 0xd1, (byte) 0x7a, (byte) 0xd0, (byte) 0x31, (byte) 0xce,
+            (byte) 0x45, (byte) 0xcb, (byte) 0x3a, (byte) 0x8f, (byte) 0x95, (byte) 0x16, (byte) 0x04, (byte) 0x28,
+            (byte) 0xaf, (byte) 0xd7, (byte) 0xfb, (byte) 0xca, (byte) 0xbb, (byte) 0x4b, (byte) 0x40, (byte) 0x7e,
+    };
+
+    private static final int SECRET_SIZE = 192;
+    private static final int STRIPE_LENGTH = 64;
+    private static final int ACCUMULATOR_COUNT = 8;
+    private static final int SECRET_CONSUME_RATE = 8;
+    private static final int STRIPES_PER_BLOCK = (SECRET_SIZE - STRIPE_LENGTH) / SECRET_CONSUME_RATE;
+    private static final int BLOCK_LENGTH = STRIPE_LENGTH * STRIPES_PER_BLOCK;
+
+    private static final int SECRET_SCRAMBLE_START = SECRET_SIZE - STRIPE_LENGTH;
+    private static final int SECRET_LAST_STRIPE_START = SECRET_SIZE - STRIPE_LENGTH - 7;
+    private static final int SECRET_MERGE_LOW_START = 11;
+    private static final int SECRET_MERGE_HIGH_START = SECRET_SIZE - STRIPE_LENGTH - 11;
+
+    private static final int MIDSIZE_MAX = 240;
+    private static final int MIDSIZE_START_OFFSET = 3;
+    private static final int MIDSIZE_LAST_OFFSET = 136 - 17;
+
+    private static final long BUFFER_ADDRESS = ARRAY_BYTE_BASE_OFFSET;
+    private static final int BUFFER_SIZE = 256;
+
+    private final long seed;
+    private final byte[] secret;
+
+    private final long[] accumulators = new long[ACCUMULATOR_COUNT];
+    private int stripesInBlock;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferSize;
+    // the last stripe consumed from the buffer, needed when less than a stripe is buffered
+    private final byte[] lastStripe = new byte[STRIPE_LENGTH];
+    private long totalLength;
+
+    public XxHash3()
+    {
+        this(DEFAULT_SEED);
+    }
+
+    public XxHash3(long seed)
+    {
+        this.seed = seed;
+        this.secret = secret(seed);
+        reset();
+    }
+
+    /**
+     * Resets this hasher to its initial state, so it can be reused.
+     */
+    public void reset()
+    {
+        initializeAccumulators(accumulators);
+        stripesInBlock = 0;
+        bufferSize = 0;
+        totalLength = 0;
+    }
+
+    public XxHash3 update(byte[] data)
+    {
+        return update(data, 0, data.length);
+    }
+
+    public XxHash3 update(byte[] data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length);
+        updateHash(data, ARRAY_BYTE_BASE_OFFSET + offset, length);
+        return this;
+    }
+
+    public XxHash3 update(Slice data)
+    {
+        return update(data, 0, data.length());
+    }
+
+    public XxHash3 update(Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        updateHash(data.getBase(), data.getAddress() + offset, length);
+        return this;
+    }
+
+    /**
+     * Hashes the next {@code length} bytes of the input.  The bytes are read
+     * from the internal buffer of the input when possible, without copying.
+     *
+     * @throws IndexOutOfBoundsException if the input has fewer than {@code length} bytes
+     */
+    public XxHash3 update(SliceInput input, long length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        while (length > 0) {
+            Slice slice = input.readBufferedSlice((int) min(length, Integer.MAX_VALUE));
+            if (slice.length() == 0) {
+                throw new IndexOutOfBoundsException("End of stream");
+            }
+            updateHash(slice.getBase(), slice.getAddress(), slice.length());
+            length -= slice.length();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the 64 bit hash of the bytes added so far.
+     */
+    public long hash()
+    {
+        if (totalLength <= MIDSIZE_MAX) {
+            return hash(seed, buffer, BUFFER_ADDRESS, bufferSize);
+        }
+        long[] accumulators = finishAccumulators();
+        return mergeAccumulators(accumulators, secret, SECRET_MERGE_LOW_START, totalLength * PRIME64_1);
+    }
+
+    /**
+     * Returns the 128 bit hash of the bytes added so far.
+     */
+    public Slice hash128()
+    {
+        if (totalLength <= MIDSIZE_MAX) {
+            return hash128(seed, buffer, BUFFER_ADDRESS, bufferSize);
+        }
+        long[] accumulators = finishAccumulators();
+        return toSlice(
+                mergeAccumulators(accumulators, secret, SECRET_MERGE_LOW_START, totalLength * PRIME64_1),
+                mergeAccumulators(accumulators, secret, SECRET_MERGE_HIGH_START, ~(totalLength * PRIME64_2)));
+    }
+
+    /**
+     * Returns a {@link Checksum} view of this hasher, whose value is the
+     * result of {@link #hash()}.  Updates through the view update this hasher.
+     * This allows the hasher to be used with {@link SliceChecksums} and
+     * {@link CheckedSliceOutput}.
+     */
+    public Checksum asChecksum()
+    {
+        return new HashChecksum();
+    }
+
+    private void updateHash(Object base, long address, int length)
+    {
+        if (length == 0) {
+            return;
+        }
+        totalLength += length;
+
+        if (length <= BUFFER_SIZE - bufferSize) {
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS + bufferSize, length);
+            bufferSize += length;
+            return;
+        }
+
+        // the buffer is only consumed once more input arrives, because the
+        // final stripe of the input is processed differently
+        if (bufferSize > 0) {
+            int available = BUFFER_SIZE - bufferSize;
+            unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS + bufferSize, available);
+            address += available;
+            length -= available;
+
+            stripesInBlock = consumeStripes(accumulators, stripesInBlock, buffer, BUFFER_ADDRESS, BUFFER_SIZE / STRIPE_LENGTH, secret);
+            unsafe.copyMemory(buffer, BUFFER_ADDRESS + BUFFER_SIZE - STRIPE_LENGTH, lastStripe, BUFFER_ADDRESS, STRIPE_LENGTH);
+            bufferSize = 0;
+        }
+
+        if (length > BUFFER_SIZE) {
+            // hash the input in place, leaving between 1 and 64 bytes for the buffer
+            int stripes = (length - 1) / STRIPE_LENGTH;
+            stripesInBlock = consumeStripes(accumulators, stripesInBlock, base, address, stripes, secret);
+            address += stripes * STRIPE_LENGTH;
+            length -= stripes * STRIPE_LENGTH;
+            unsafe.copyMemory(base, address - STRIPE_LENGTH, lastStripe, BUFFER_ADDRESS, STRIPE_LENGTH);
+        }
+
+        unsafe.copyMemory(base, address, buffer, BUFFER_ADDRESS, length);
+        bufferSize = length;
+    }
+
+    /**
+     * Returns a copy of the accumulators with the buffered bytes and the final
+     * stripe applied, so the state of this hasher is unchanged.
+     */
+    private long[] finishAccumulators()
+    {
+        long[] accumulators = this.accumulators.clone();
+        if (bufferSize >= STRIPE_LENGTH) {
+            int stripes = (bufferSize - 1) / STRIPE_LENGTH;
+            consumeStripes(accumulators, stripesInBlock, buffer, BUFFER_ADDRESS, stripes, secret);
+            accumulateStripe(accumulators, buffer, BUFFER_ADDRESS + bufferSize - STRIPE_LENGTH, secret, SECRET_LAST_STRIPE_START);
+        }
+        else {
+            byte[] stripe = new byte[STRIPE_LENGTH];
+            int previous = STRIPE_LENGTH - bufferSize;
+            System.arraycopy(lastStripe, bufferSize, stripe, 0, previous);
+            System.arraycopy(buffer, 0, stripe, previous, bufferSize);
+            accumulateStripe(accumulators, stripe, BUFFER_ADDRESS, secret, SECRET_LAST_STRIPE_START);
+        }
+        return accumulators;
+    }
+
+    /**
+     * Accumulates the specified number of stripes, scrambling the
+     * accumulators at the end of each block.
+     *
+     * @return the number of stripes in the current block
+     */
+    private static int consumeStripes(long[] accumulators, int stripesInBlock, Object base, long address, int stripes, byte[] secret)
+    {
+        while (stripes > 0) {
+            int count = min(stripes, STRIPES_PER_BLOCK - stripesInBlock);
+            accumulateStripes(accumulators, base, address, count, secret, stripesInBlock * SECRET_CONSUME_RATE);
+            stripesInBlock += count;
+            address += count * STRIPE_LENGTH;
+            stripes -= count;
+
+            if (stripesInBlock == STRIPES_PER_BLOCK) {
+                scrambleAccumulators(accumulators, secret);
+                stripesInBlock = 0;
+            }
+        }
+        return stripesInBlock;
+    }
+
+    /**
+     * Hashes the specified long value as 8 little-endian bytes.
+     */
+    public static long hash(long value)
+    {
+        long bitflip = secretLong(DEFAULT_SECRET, 8) ^ secretLong(DEFAULT_SECRET, 16);
+        return rrmxmx(rotateLeft(value, 32) ^ bitflip, SizeOf.SIZE_OF_LONG);
+    }
+
+    public static long hash(InputStream in)
+            throws IOException
+    {
+        return hash(DEFAULT_SEED, in);
+    }
+
+    public static long hash(long seed, InputStream in)
+            throws IOException
+    {
+        XxHash3 hash = new XxHash3(seed);
+        byte[] buffer = new byte[8192];
+        while (true) {
+            int length = in.read(buffer);
+            if (length == -1) {
+                break;
+            }
+            hash.update(buffer, 0, length);
+        }
+        return hash.hash();
+    }
+
+    public static long hash(SliceInput input)
+    {
+        return hash(DEFAULT_SEED, input);
+    }
+
+    /**
+     * Hashes the remaining bytes of the input.  The bytes are read from the
+     * internal buffer of the input when possible, without copying.
+     */
+    public static long hash(long seed, SliceInput input)
+    {
+        XxHash3 hash = new XxHash3(seed);
+        while (true) {
+            Slice slice = input.readBufferedSlice(Integer.MAX_VALUE);
+            if (slice.length() == 0) {
+                break;
+            }
+            hash.updateHash(slice.getBase(), slice.getAddress(), slice.length());
+        }
+        return hash.hash();
+    }
+
+    public static long hash(Slice data)
+    {
+        return hash(data, 0, data.length());
+    }
+
+    public static long hash(long seed, Slice data)
+    {
+        return hash(seed, data, 0, data.length());
+    }
+
+    public static long hash(Slice data, int offset, int length)
+    {
+        return hash(DEFAULT_SEED, data, offset, length);
+    }
+
+    public static long hash(long seed, Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        return hash(seed, data.getBase(), data.getAddress() + offset, length);
+    }
+
+    public static Slice hash128(Slice data)
+    {
+        return hash128(data, 0, data.length());
+    }
+
+    public static Slice hash128(long seed, Slice data)
+    {
+        return hash128(seed, data, 0, data.length());
+    }
+
+    public static Slice hash128(Slice data, int offset, int length)
+    {
+        return hash128(DEFAULT_SEED, data, offset, length);
+    }
+
+    public static Slice hash128(long seed, Slice data, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, data.length());
+        return hash128(seed, data.getBase(), data.getAddress() + offset, length);
+    }
+
+    private static long hash(long seed, Object base, long address, int length)
+    {
+        if (length <= 16) {
+            return hashShort(seed, base, address, length);
+        }
+        if (length <= 128) {
+            long accumulator = length * PRIME64_1;
+            int rounds = (length - 1) / 32 + 1;
+            for (int i = 0; i < rounds; i++) {
+                accumulator += mix16(base, address + 16 * i, 32 * i, seed);
+                accumulator += mix16(base, address + length - 16 * (i + 1), 32 * i + 16, seed);
+            }
+            return avalanche(accumulator);
+        }
+        if (length <= MIDSIZE_MAX) {
+            long accumulator = length * PRIME64_1;
+            for (int i = 0; i < 8; i++) {
+                accumulator += mix16(base, address + 16 * i, 16 * i, seed);
+            }
+            accumulator = avalanche(accumulator);
+            int rounds = length / 16;
+            for (int i = 8; i < rounds; i++) {
+                accumulator += mix16(base, address + 16 * i, 16 * (i - 8) + MIDSIZE_START_OFFSET, seed);
+            }
+            accumulator += mix16(base, address + length - 16, MIDSIZE_LAST_OFFSET, seed);
+            return avalanche(accumulator);
+        }
+
+        byte[] secret = secret(seed);
+        long[] accumulators = hashLong(base, address, length, secret);
+        return mergeAccumulators(accumulators, secret, SECRET_MERGE_LOW_START, length * PRIME64_1);
+    }
+
+    private static long hashShort(long seed, Object base, long address, int length)
+    {
+        if (length > 8) {
+            long bitflip1 = (secretLong(DEFAULT_SECRET, 24) ^ secretLong(DEFAULT_SECRET, 32)) + seed;
+            long bitflip2 = (secretLong(DEFAULT_SECRET, 40) ^ secretLong(DEFAULT_SECRET, 48)) - seed;
+            long low = unsafe.getLong(base, address) ^ bitflip1;
+            long high = unsafe.getLong(base, address + length - 8) ^ bitflip2;
+            long accumulator = length + Long.reverseBytes(low) + high + multiplyFold(low, high);
+            return avalanche(accumulator);
+        }
+        if (length >= 4) {
+            seed ^= (long) Integer.reverseBytes((int) seed) << 32;
+            long first = unsafe.getInt(base, address) & 0xFFFF_FFFFL;
+            long last = unsafe.getInt(base, address + length - 4) & 0xFFFF_FFFFL;
+            long bitflip = (secretLong(DEFAULT_SECRET, 8) ^ secretLong(DEFAULT_SECRET, 16)) - seed;
+            return rrmxmx((last + (first << 32)) ^ bitflip, length);
+        }
+        if (length > 0) {
+            long bitflip = ((secretInt(DEFAULT_SECRET, 0) ^ secretInt(DEFAULT_SECRET, 4)) & 0xFFFF_FFFFL) + seed;
+            return xxh64Avalanche(combineShort(base, address, length) ^ bitflip);
+        }
+        return xxh64Avalanche(seed ^ secretLong(DEFAULT_SECRET, 56) ^ secretLong(DEFAULT_SECRET, 64));
+    }
+
+    private static Slice hash128(long seed, Object base, long address, int length)
+    {
+        if (length <= 16) {
+            return hash128Short(seed, base, address, length);
+        }
+        if (length <= 128) {
+            long low = length * PRIME64_1;
+            long high = 0;
+            int rounds = (length - 1) / 32 + 1;
+            for (int i = rounds - 1; i >= 0; i--) {
+                long first = address + 16 * i;
+                long second = address + length - 16 * (i + 1);
+                low = mix32(low, base, first, second, 32 * i, seed);
+                high = mix32(high, base, second, first, 32 * i + 16, seed);
+            }
+            return finishMidsize128(low, high, length, seed);
+        }
+        if (length <= MIDSIZE_MAX) {
+            long low = length * PRIME64_1;
+            long high = 0;
+            for (int i = 0; i < 4; i++) {
+                long first = address + 32 * i;
+                low = mix32(low, base, first, first + 16, 32 * i, seed);
+                high = mix32(high, base, first + 16, first, 32 * i + 16, seed);
+            }
+            low = avalanche(low);
+            high = avalanche(high);
+            int rounds = length / 32;
+            for (int i = 4; i < rounds; i++) {
+                long first = address + 32 * i;
+                int secretOffset = 32 * (i - 4) + MIDSIZE_START_OFFSET;
+                low = mix32(low, base, first, first + 16, secretOffset, seed);
+                high = mix32(high, base, first + 16, first, secretOffset + 16, seed);
+            }
+            long first = address + length - 16;
+            long second = address + length - 32;
+            low = mix32(low, base, first, second, MIDSIZE_LAST_OFFSET - 16, -seed);
+            high = mix32(high, base, second, first, MIDSIZE_LAST_OFFSET, -seed);
+            return finishMidsize128(low, high, length, seed);
+        }
+
+        byte[] secret = secret(seed);
+        long[] accumulators = hashLong(base, address, length, secret);
+        return toSlice(
+                mergeAccumulators(accumulators, secret, SECRET_MERGE_LOW_START, length * PRIME64_1),
+                mergeAccumulators(accumulators, secret, SECRET_MERGE_HIGH_START, ~(length * PRIME64_2)));
+    }
+
+    private static Slice hash128Short(long seed, Object base, long address, int length)
+    {
+        if (length > 8) {
+            long bitflipLow = (secretLong(DEFAULT_SECRET, 32) ^ secretLong(DEFAULT_SECRET, 40)) - seed;
+            long bitflipHigh = (secretLong(DEFAULT_SECRET, 48) ^ secretLong(DEFAULT_SECRET, 56)) + seed;
+            long inputLow = unsafe.getLong(base, address);
+            long inputHigh = unsafe.getLong(base, address + length - 8);
+
+            long keyed = inputLow ^ inputHigh ^ bitflipLow;
+            long low = keyed * PRIME64_1 + ((long) (length - 1) << 54);
+            long high = unsignedMultiplyHigh(keyed, PRIME64_1);
+            inputHigh ^= bitflipHigh;
+            high += inputHigh + (inputHigh & 0xFFFF_FFFFL) * (PRIME32_2 - 1);
+            low ^= Long.reverseBytes(high);
+
+            long resultLow = low * PRIME64_2;
+            long resultHigh = unsignedMultiplyHigh(low, PRIME64_2) + high * PRIME64_2;
+            return toSlice(avalanche(resultLow), avalanche(resultHigh));
+        }
+        if (length >= 4) {
+            seed ^= (long) Integer.reverseBytes((int) seed) << 32;
+            long inputLow = unsafe.getInt(base, address) & 0xFFFF_FFFFL;
+            long inputHigh = unsafe.getInt(base, address + length - 4) & 0xFFFF_FFFFL;
+            long bitflip = (secretLong(DEFAULT_SECRET, 16) ^ secretLong(DEFAULT_SECRET, 24)) + seed;
+            long keyed = (inputLow + (inputHigh << 32)) ^ bitflip;
+
+            long multiplier = PRIME64_1 + ((long) length << 2);
+            long low = keyed * multiplier;
+            long high = unsignedMultiplyHigh(keyed, multiplier);
+            high += low << 1;
+            low ^= high >>> 3;
+            low ^= low >>> 35;
+            low *= PRIME_MX2;
+            low ^= low >>> 28;
+            return toSlice(low, avalanche(high));
+        }
+        if (length > 0) {
+            long combinedLow = combineShort(base, address, length);
+            long combinedHigh = Integer.rotateLeft(Integer.reverseBytes((int) combinedLow), 13) & 0xFFFF_FFFFL;
+            long bitflipLow = ((secretInt(DEFAULT_SECRET, 0) ^ secretInt(DEFAULT_SECRET, 4)) & 0xFFFF_FFFFL) + seed;
+            long bitflipHigh = ((secretInt(DEFAULT_SECRET, 8) ^ secretInt(DEFAULT_SECRET, 12)) & 0xFFFF_FFFFL) - seed;
+            return toSlice(xxh64Avalanche(combinedLow ^ bitflipLow), xxh64Avalanche(combinedHigh ^ bitflipHigh));
+        }
+        return toSlice(
+                xxh64Avalanche(seed ^ secretLong(DEFAULT_SECRET, 64) ^ secretLong(DEFAULT_SECRET, 72)),
+                xxh64Avalanche(seed ^ secretLong(DEFAULT_SECRET, 80) ^ secretLong(DEFAULT_SECRET, 88)));
+    }
+
+    private static Slice finishMidsize128(long low, long high, int length, long seed)
+    {
+        long resultLow = low + high;
+        long resultHigh = low * PRIME64_1 + high * PRIME64_4 + (length - seed) * PRIME64_2;
+        return toSlice(avalanche(resultLow), -avalanche(resultHigh));
+    }
+
+    /**
+     * Combines the first, middle and last byte of an input of 1 to 3 bytes
+     * with its length.
+     */
+    private static long combineShort(Object base, long address, int length)
+    {
+        int first = unsafe.getByte(base, address) & 0xFF;
+        int middle = unsafe.getByte(base, address + (length >> 1)) & 0xFF;
+        int last = unsafe.getByte(base, address + length - 1) & 0xFF;
+        return ((first << 16) | (middle << 24) | last | (length << 8)) & 0xFFFF_FFFFL;
+    }
+
+    private static long mix16(Object base, long address, int secretOffset, long seed)
+    {
+        long low = unsafe.getLong(base, address);
+        long high = unsafe.getLong(base, address + 8);
+        return multiplyFold(
+                low ^ (secretLong(DEFAULT_SECRET, secretOffset) + seed),
+                high ^ (secretLong(DEFAULT_SECRET, secretOffset + 8) - seed));
+    }
+
+    /**
+     * Mixes 16 bytes at {@code first} into the accumulator, and folds in the
+     * 16 bytes at {@code second}.  Each half of the 128 bit state is updated
+     * with the inputs swapped.
+     */
+    private static long mix32(long accumulator, Object base, long first, long second, int secretOffset, long seed)
+    {
+        accumulator += mix16(base, first, secretOffset, seed);
+        return accumulator ^ (unsafe.getLong(base, second) + unsafe.getLong(base, second + 8));
+    }
+
+    private static long[] hashLong(Object base, long address, int length, byte[] secret)
+    {
+        long[] accumulators = new long[ACCUMULATOR_COUNT];
+        initializeAccumulators(accumulators);
+
+        int blocks = (length - 1) / BLOCK_LENGTH;
+        for (int block = 0; block < blocks; block++) {
+            accumulateStripes(accumulators, base, address, STRIPES_PER_BLOCK, secret, 0);
+            scrambleAccumulators(accumulators, secret);
+            address += BLOCK_LENGTH;
+        }
+
+        // the last stripe always ends at the end of the input, and may overlap the previous stripe
+        int remaining = length - blocks * BLOCK_LENGTH;
+        accumulateStripes(accumulators, base, address, (remaining - 1) / STRIPE_LENGTH, secret, 0);
+        accumulateStripe(accumulators, base, address + remaining - STRIPE_LENGTH, secret, SECRET_LAST_STRIPE_START);
+        return accumulators;
+    }
+
+    private static void initializeAccumulators(long[] accumulators)
+    {
+        accumulators[0] = PRIME32_3;
+        accumulators[1] = PRIME64_1;
+        accumulators[2] = PRIME64_2;
+        accumulators[3] = PRIME64_3;
+        accumulators[4] = PRIME64_4;
+        accumulators[5] = PRIME32_2;
+        accumulators[6] = PRIME64_5;
+        accumulators[7] = PRIME32_1;
+    }
+
+    private static void accumulateStripes(long[] accumulators, Object base, long address, int stripes, byte[] secret, int secretOffset)
+    {
+        // the accumulators are kept in locals, so they stay in registers for the whole loop
+        long accumulator0 = accumulators[0];
+        long accumulator1 = accumulators[1];
+        long accumulator2 = accumulators[2];
+        long accumulator3 = accumulators[3];
+        long accumulator4 = accumulators[4];
+        long accumulator5 = accumulators[5];
+        long accumulator6 = accumulators[6];
+        long accumulator7 = accumulators[7];
+
+        long secretAddress = ARRAY_BYTE_BASE_OFFSET + secretOffset;
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            long value0 = unsafe.getLong(base, address);
+            long value1 = unsafe.getLong(base, address + 8);
+            long value2 = unsafe.getLong(base, address + 16);
+            long value3 = unsafe.getLong(base, address + 24);
+            long value4 = unsafe.getLong(base, address + 32);
+            long value5 = unsafe.getLong(base, address + 40);
+            long value6 = unsafe.getLong(base, address + 48);
+            long value7 = unsafe.getLong(base, address + 56);
+
+            accumulator0 += value1 + multiplyHalves(value0 ^ unsafe.getLong(secret, secretAddress));
+            accumulator1 += value0 + multiplyHalves(value1 ^ unsafe.getLong(secret, secretAddress + 8));
+            accumulator2 += value3 + multiplyHalves(value2 ^ unsafe.getLong(secret, secretAddress + 16));
+            accumulator3 += value2 + multiplyHalves(value3 ^ unsafe.getLong(secret, secretAddress + 24));
+            accumulator4 += value5 + multiplyHalves(value4 ^ unsafe.getLong(secret, secretAddress + 32));
+            accumulator5 += value4 + multiplyHalves(value5 ^ unsafe.getLong(secret, secretAddress + 40));
+            accumulator6 += value7 + multiplyHalves(value6 ^ unsafe.getLong(secret, secretAddress + 48));
+            accumulator7 += value6 + multiplyHalves(value7 ^ unsafe.getLong(secret, secretAddress + 56));
+
+            address += STRIPE_LENGTH;
+            secretAddress += SECRET_CONSUME_RATE;
+        }
+
+        accumulators[0] = accumulator0;
+        accumulators[1] = accumulator1;
+        accumulators[2] = accumulator2;
+        accumulators[3] = accumulator3;
+        accumulators[4] = accumulator4;
+        accumulators[5] = accumulator5;
+        accumulators[6] = accumulator6;
+        accumulators[7] = accumulator7;
+    }
+
+    private static void accumulateStripe(long[] accumulators, Object base, long address, byte[] secret, int secretOffset)
+    {
+        accumulateStripes(accumulators, base, address, 1, secret, secretOffset);
+    }
+
+    /**
+     * Returns the product of the low and high 32 bits of the value.
+     */
+    private static long multiplyHalves(long value)
+    {
+        return (value & 0xFFFF_FFFFL) * (value >>> 32);
+    }
+
+    private static void scrambleAccumulators(long[] accumulators, byte[] secret)
+    {
+        for (int i = 0; i < ACCUMULATOR_COUNT; i++) {
+            long accumulator = accumulators[i];
+            accumulator ^= accumulator >>> 47;
+            accumulator ^= secretLong(secret, SECRET_SCRAMBLE_START + 8 * i);
+            accumulators[i] = accumulator * PRIME32_1;
+        }
+    }
+
+    private static long mergeAccumulators(long[] accumulators, byte[] secret, int secretOffset, long start)
+    {
+        long result = start;
+        for (int i = 0; i < ACCUMULATOR_COUNT / 2; i++) {
+            result += multiplyFold(
+                    accumulators[2 * i] ^ secretLong(secret, secretOffset + 16 * i),
+                    accumulators[2 * i + 1] ^ secretLong(secret, secretOffset + 16 * i + 8));
+        }
+        return avalanche(result);
+    }
+
+    /**
+     * Returns the secret for the specified seed.  Only inputs longer than
+     * {@link #MIDSIZE_MAX} use a secret derived from the seed.
+     */
+    private static byte[] secret(long seed)
+    {
+        if (seed == DEFAULT_SEED) {
+            return DEFAULT_SECRET;
+        }
+        byte[] secret = new byte[SECRET_SIZE];
+        for (int offset = 0; offset < SECRET_SIZE; offset += 16) {
+            unsafe.putLong(secret, ARRAY_BYTE_BASE_OFFSET + offset, secretLong(DEFAULT_SECRET, offset) + seed);
+            unsafe.putLong(secret, ARRAY_BYTE_BASE_OFFSET + offset + 8, secretLong(DEFAULT_SECRET, offset + 8) - seed);
+        }
+        return secret;
+    }
+
+    private static long secretLong(byte[] secret, int offset)
+    {
+        return unsafe.getLong(secret, ARRAY_BYTE_BASE_OFFSET + offset);
+    }
+
+    private static int secretInt(byte[] secret, int offset)
+    {
+        return unsafe.getInt(secret, ARRAY_BYTE_BASE_OFFSET + offset);
+    }
+
+    private static Slice toSlice(long low, long high)
+    {
+        Slice result = Slices.allocate(16);
+        result.setLong(0, low);
+        result.setLong(8, high);
+        return result;
+    }
+
+    /**
+     * Returns the low and high 64 bits of the 128 bit product folded together.
+     */
+    private static long multiplyFold(long left, long right)
+    {
+        return (left * right) ^ unsignedMultiplyHigh(left, right);
+    }
+
+    /**
+     * Returns the high 64 bits of the unsigned 128 bit product.
+     */
+    private static long unsignedMultiplyHigh(long left, long right)
+    {
+        long leftLow = left & 0xFFFF_FFFFL;
+        long leftHigh = left >>> 32;
+        long rightLow = right & 0xFFFF_FFFFL;
+        long rightHigh = right >>> 32;
+
+        long lowLow = leftLow * rightLow;
+        long highLow = leftHigh * rightLow;
+        long lowHigh = leftLow * rightHigh;
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFF_FFFFL) + lowHigh;
+        return (highLow >>> 32) + (cross >>> 32) + leftHigh * rightHigh;
+    }
+
+    private static long avalanche(long hash)
+    {
+        hash ^= hash >>> 37;
+        hash *= PRIME_MX1;
+        return hash ^ (hash >>> 32);
+    }
+
+    private static long xxh64Avalanche(long hash)
+    {
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        return hash ^ (hash >>> 32);
+    }
+
+    private static long rrmxmx(long hash, int length)
+    {
+        hash ^= rotateLeft(hash, 49) ^ rotateLeft(hash, 24);
+        hash *= PRIME_MX2;
+        hash ^= (hash >>> 35) + length;
+        hash *= PRIME_MX2;
+        return hash ^ (hash >>> 28);
+    }
+
+    private class HashChecksum
+            implements SliceChecksum
+    {
+        private final byte[] singleByte = new byte[1];
+
+        @Override
+        public void update(int b)
+        {
+            singleByte[0] = (byte) b;
+            updateHash(singleByte, ARRAY_BYTE_BASE_OFFSET, 1);
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int length)
+        {
+            XxHash3.this.update(data, offset, length);
+        }
+
+        @Override
+        public void update(Slice data, int offset, int length)
+        {
+            XxHash3.this.update(data, offset, length);
+        }
+
+        @Override
+        public long getValue()
+        {
+            return hash();
+        }
+
+        @Override
+        public void reset()
+        {
+            XxHash3.this.reset();
+        }
+    }
+}
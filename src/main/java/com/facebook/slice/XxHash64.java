@@ -15,8 +15,10 @@ package com.facebook.slice;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.Checksum;
 
 import static com.facebook.slice.JvmUtils.unsafe;
+import static com.facebook.slice.Preconditions.checkArgument;
 import static com.facebook.slice.Preconditions.checkPositionIndexes;
 import static java.lang.Long.rotateLeft;
 import static java.lang.Math.min;
@@ -53,10 +55,20 @@ public final class XxHash64
     public XxHash64(long seed)
     {
         this.seed = seed;
-        this.v1 = seed + PRIME64_1 + PRIME64_2;
-        this.v2 = seed + PRIME64_2;
-        this.v3 = seed;
-        this.v4 = seed - PRIME64_1;
+        reset();
+    }
+
+    /**
+     * Resets this hasher to its initial state, so it can be reused.
+     */
+    public void reset()
+    {
+        v1 = seed + PRIME64_1 + PRIME64_2;
+        v2 = seed + PRIME64_2;
+        v3 = seed;
+        v4 = seed - PRIME64_1;
+        bufferSize = 0;
+        bodyLength = 0;
     }
 
     public XxHash64 update(byte[] data)
@@ -83,6 +95,26 @@ public final class XxHash64
         return this;
     }
 
+    /**
+     * Hashes the next {@code length} bytes of the input.  The bytes are read
+     * from the internal buffer of the input when possible, without copying.
+     *
+     * @throws IndexOutOfBoundsException if the input has fewer than {@code length} bytes
+     */
+    public XxHash64 update(SliceInput input, long length)
+    {
+        checkArgument(length >= 0, "length is negative");
+        while (length > 0) {
+            Slice slice = input.readBufferedSlice((int) min(length, Integer.MAX_VALUE));
+            if (slice.length() == 0) {
+                throw new IndexOutOfBoundsException("End of stream");
+            }
+            updateHash(slice.getBase(), slice.getAddress(), slice.length());
+            length -= slice.length();
+        }
+        return this;
+    }
+
     public long hash()
     {
         long hash;
@@ -98,6 +130,17 @@ public final class XxHash64
         return updateTail(hash, buffer, BUFFER_ADDRESS, 0, bufferSize);
     }
 
+    /**
+     * Returns a {@link Checksum} view of this hasher, whose value is the
+     * result of {@link #hash()}.  Updates through the view update this hasher.
+     * This allows the hasher to be used with {@link SliceChecksums} and
+     * {@link CheckedSliceOutput}.
+     */
+    public Checksum asChecksum()
+    {
+        return new HashChecksum();
+    }
+
     private long computeBody()
     {
         long hash = rotateLeft(v1, 1) + rotateLeft(v2, 7) + rotateLeft(v3, 12) + rotateLeft(v4, 18);
@@ -187,6 +230,28 @@ public final class XxHash64
         return hash.hash();
     }
 
+    public static long hash(SliceInput input)
+    {
+        return hash(DEFAULT_SEED, input);
+    }
+
+    /**
+     * Hashes the remaining bytes of the input.  The bytes are read from the
+     * internal buffer of the input when possible, without copying.
+     */
+    public static long hash(long seed, SliceInput input)
+    {
+        XxHash64 hash = new XxHash64(seed);
+        while (true) {
+            Slice slice = input.readBufferedSlice(Integer.MAX_VALUE);
+            if (slice.length() == 0) {
+                break;
+            }
+            hash.updateHash(slice.getBase(), slice.getAddress(), slice.length());
+        }
+        return hash.hash();
+    }
+
     public static long hash(Slice data)
     {
         return hash(data, 0, data.length());
@@ -205,10 +270,76 @@ public final class XxHash64
     public static long hash(long seed, Slice data, int offset, int length)
     {
         checkPositionIndexes(0, offset + length, data.length());
+        return hash(seed, data.getBase(), data.getAddress() + offset, length);
+    }
+
+    /**
+     * Hashes {@code count} values stored in {@code data}, where value {@code i}
+     * starts at {@code offsets[i]} and has length {@code lengths[i]}, and
+     * stores the hash of value {@code i} in {@code hashes[i]}.
+     */
+    public static void hashBatch(Slice data, int[] offsets, int[] lengths, int count, long[] hashes)
+    {
+        hashBatch(DEFAULT_SEED, data, offsets, lengths, count, hashes);
+    }
+
+    public static void hashBatch(long seed, Slice data, int[] offsets, int[] lengths, int count, long[] hashes)
+    {
+        checkBatch(data, offsets, lengths, count, hashes.length);
 
         Object base = data.getBase();
-        final long address = data.getAddress() + offset;
+        long address = data.getAddress();
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash(seed, base, address + offsets[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Hashes {@code count} values stored back to back in {@code data}, where
+     * value {@code i} starts at {@code offsets[i]} and ends at
+     * {@code offsets[i + 1]}, and stores the hash of value {@code i} in
+     * {@code hashes[i]}.
+     */
+    public static void hashBatch(Slice data, int[] offsets, int count, long[] hashes)
+    {
+        checkBatch(data, offsets, count, hashes.length);
+
+        Object base = data.getBase();
+        long address = data.getAddress();
+        for (int i = 0; i < count; i++) {
+            hashes[i] = hash(DEFAULT_SEED, base, address + offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    /**
+     * Checks that the ranges of a batch are within the slice, so the values
+     * can be hashed without further bounds checks.
+     */
+    static void checkBatch(Slice data, int[] offsets, int[] lengths, int count, int hashesLength)
+    {
+        checkArgument(count >= 0, "count is negative");
+        checkPositionIndexes(0, count, offsets.length);
+        checkPositionIndexes(0, count, lengths.length);
+        checkPositionIndexes(0, count, hashesLength);
+        int size = data.length();
+        for (int i = 0; i < count; i++) {
+            checkPositionIndexes(offsets[i], offsets[i] + lengths[i], size);
+        }
+    }
+
+    static void checkBatch(Slice data, int[] offsets, int count, int hashesLength)
+    {
+        checkArgument(count >= 0, "count is negative");
+        checkPositionIndexes(0, count + 1, offsets.length);
+        checkPositionIndexes(0, count, hashesLength);
+        int size = data.length();
+        for (int i = 0; i < count; i++) {
+            checkPositionIndexes(offsets[i], offsets[i + 1], size);
+        }
+    }
 
+    private static long hash(long seed, Object base, long address, int length)
+    {
         long hash;
         if (length >= 32) {
             hash = updateBody(seed, base, address, length);
@@ -316,4 +447,41 @@ public final class XxHash64
         hash ^= hash >>> 32;
         return hash;
     }
+
+    private class HashChecksum
+            implements SliceChecksum
+    {
+        private final byte[] singleByte = new byte[1];
+
+        @Override
+        public void update(int b)
+        {
+            singleByte[0] = (byte) b;
+            updateHash(singleByte, ARRAY_BYTE_BASE_OFFSET, 1);
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int length)
+        {
+            XxHash64.this.update(data, offset, length);
+        }
+
+        @Override
+        public void update(Slice data, int offset, int length)
+        {
+            XxHash64.this.update(data, offset, length);
+        }
+
+        @Override
+        public long getValue()
+        {
+            return hash();
+        }
+
+        @Override
+        public void reset()
+        {
+            XxHash64.this.reset();
+        }
+    }
 }
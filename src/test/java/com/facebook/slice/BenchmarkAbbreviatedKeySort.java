@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkAbbreviatedKeySort
+{
+    private static final Comparator<AbbreviatedKey> ABBREVIATED_KEY_COMPARATOR = (left, right) -> {
+        int result = Long.compareUnsigned(left.prefix, right.prefix);
+        if (result != 0) {
+            return result;
+        }
+        return left.slice.compareTo(right.slice);
+    };
+
+    @Param({"1000000", "10000000"})
+    private int keyCount = 1_000_000;
+
+    // keys sharing a prefix of eight bytes or more can not be ordered by the abbreviated key alone
+    @Param({"0", "8"})
+    private int sharedPrefixLength;
+
+    private Slice[] slices;
+    private AbbreviatedKey[] abbreviatedKeys;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        slices = new Slice[keyCount];
+        abbreviatedKeys = new AbbreviatedKey[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            Slice slice = Slices.allocate(sharedPrefixLength + 8 + random.nextInt(16));
+            for (int index = sharedPrefixLength; index < slice.length(); index++) {
+                slice.setByte(index, random.nextInt(256));
+            }
+            slices[i] = slice;
+            abbreviatedKeys[i] = new AbbreviatedKey(slice);
+        }
+    }
+
+    // the copy of the input is included in both benchmarks
+    @Benchmark
+    public Object sortSlices()
+    {
+        Slice[] keys = slices.clone();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    @Benchmark
+    public Object sortAbbreviatedKeys()
+    {
+        AbbreviatedKey[] keys = abbreviatedKeys.clone();
+        Arrays.sort(keys, ABBREVIATED_KEY_COMPARATOR);
+        return keys;
+    }
+
+    @Benchmark
+    public Object sortRadix()
+    {
+        Slice[] keys = slices.clone();
+        SliceSorter.sort(keys);
+        return keys;
+    }
+
+    @Benchmark
+    public Object parallelSortRadix()
+    {
+        Slice[] keys = slices.clone();
+        SliceSorter.parallelSort(keys);
+        return keys;
+    }
+
+    private static final class AbbreviatedKey
+    {
+        private final long prefix;
+        private final Slice slice;
+
+        public AbbreviatedKey(Slice slice)
+        {
+            this.prefix = slice.getAbbreviatedKey(0, slice.length());
+            this.slice = slice;
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        // assure the benchmarks are valid before running
+        BenchmarkAbbreviatedKeySort benchmark = new BenchmarkAbbreviatedKeySort();
+        benchmark.setup();
+        Slice[] expected = (Slice[]) benchmark.sortSlices();
+        AbbreviatedKey[] actual = (AbbreviatedKey[]) benchmark.sortAbbreviatedKeys();
+        for (int i = 0; i < expected.length; i++) {
+            if (!expected[i].equals(actual[i].slice)) {
+                throw new AssertionError("abbreviated key sort does not match");
+            }
+        }
+        if (!Arrays.equals(expected, (Slice[]) benchmark.sortRadix()) || !Arrays.equals(expected, (Slice[]) benchmark.parallelSortRadix())) {
+            throw new AssertionError("radix sort does not match");
+        }
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkAbbreviatedKeySort.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares random reads from a new mapping of a file with and without
+ * loading the file first.  The file is mapped again for each invocation,
+ * so every page is faulted in again, but the file stays in the page cache.
+ * To measure reads from the storage device, drop the page cache before
+ * each invocation.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class BenchmarkMappedSliceFileLoad
+{
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    @Param({"67108864", "268435456"})
+    private long fileSize = 67108864;
+
+    @Param({"10000", "1000000"})
+    private int lookups = 1_000_000;
+
+    private File file;
+    private long[] positions;
+    private MappedSliceFile mappedFile;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        Random random = new Random(42);
+        file = File.createTempFile("benchmark-mapped-slice-file", ".bin");
+        Slice chunk = Slices.allocateDirect(CHUNK_SIZE);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            for (long position = 0; position < fileSize; position += CHUNK_SIZE) {
+                for (int i = 0; i < CHUNK_SIZE; i += 8) {
+                    chunk.setLong(i, random.nextLong());
+                }
+                SliceChannels.write(randomAccessFile.getChannel(), chunk);
+            }
+        }
+
+        positions = new long[lookups];
+        for (int i = 0; i < lookups; i++) {
+            positions[i] = (random.nextLong() >>> 1) % (fileSize - 8);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Setup(Level.Invocation)
+    public void mapFile()
+            throws IOException
+    {
+        mappedFile = MappedSliceFile.map(file);
+    }
+
+    @TearDown(Level.Invocation)
+    public void unmapFile()
+            throws IOException
+    {
+        mappedFile.close();
+    }
+
+    @Benchmark
+    public long randomReads()
+    {
+        return readPositions();
+    }
+
+    @Benchmark
+    public long loadAndRandomReads()
+    {
+        mappedFile.load(0, mappedFile.length());
+        return readPositions();
+    }
+
+    private long readPositions()
+    {
+        long sum = 0;
+        for (long position : positions) {
+            sum += mappedFile.getLong(position);
+        }
+        return sum;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkMappedSliceFileLoad.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
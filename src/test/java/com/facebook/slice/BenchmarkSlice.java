@@ -62,6 +62,43 @@ public class BenchmarkSlice
         return data.slice1.equals(data.slice2);
     }
 
+    @Benchmark
+    public Object indexOfByte(IndexOfData data)
+    {
+        return data.data.indexOfByte(IndexOfData.NEEDLE);
+    }
+
+    @Benchmark
+    public Object indexOfByteBaseline(IndexOfData data)
+    {
+        // byte at a time scan for comparison with the word at a time version
+        Slice slice = data.data;
+        for (int i = 0; i < slice.length(); i++) {
+            if (slice.getByteUnchecked(i) == IndexOfData.NEEDLE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public Object indexOf(IndexOfData data)
+    {
+        return data.data.indexOf(data.pattern, 0);
+    }
+
+    @Benchmark
+    public Object indexOfSearcher(IndexOfData data)
+    {
+        return data.searcher.indexOf(data.data, 0);
+    }
+
+    @Benchmark
+    public Object indexOfBruteForce(IndexOfData data)
+    {
+        return data.data.indexOfBruteForce(data.pattern, 0);
+    }
+
     @State(Scope.Thread)
     public static class BenchmarkData
     {
@@ -86,6 +123,32 @@ public class BenchmarkSlice
         }
     }
 
+    @State(Scope.Thread)
+    public static class IndexOfData
+    {
+        private static final byte NEEDLE = '\n';
+
+        @Param({"16", "128", "1024", "32779", "1048576"})
+        private int size = 16;
+
+        private Slice data;
+        private Slice pattern;
+        private SliceSearcher searcher;
+
+        @Setup(Level.Iteration)
+        public void setup()
+        {
+            // printable bytes other than the needle, with the needle and the pattern only at the end
+            pattern = Slices.utf8Slice("\"key\":\n");
+            data = Slices.allocate(size + pattern.length());
+            for (int i = 0; i < size; i++) {
+                data.setByte(i, ThreadLocalRandom.current().nextInt(' ', '~'));
+            }
+            data.setBytes(size, pattern);
+            searcher = new SliceSearcher(pattern);
+        }
+    }
+
     public static void main(String[] args)
             throws Throwable
     {
@@ -94,6 +157,18 @@ public class BenchmarkSlice
         data.setup();
         new BenchmarkSlice().equalsObject(data);
 
+        IndexOfData indexOfData = new IndexOfData();
+        indexOfData.setup();
+        if (!new BenchmarkSlice().indexOfByte(indexOfData).equals(new BenchmarkSlice().indexOfByteBaseline(indexOfData))) {
+            throw new AssertionError("indexOfByte does not match baseline");
+        }
+        if (!new BenchmarkSlice().indexOf(indexOfData).equals(new BenchmarkSlice().indexOfBruteForce(indexOfData))) {
+            throw new AssertionError("indexOf does not match brute force");
+        }
+        if (!new BenchmarkSlice().indexOfSearcher(indexOfData).equals(new BenchmarkSlice().indexOfBruteForce(indexOfData))) {
+            throw new AssertionError("searcher does not match brute force");
+        }
+
         Options options = new OptionsBuilder()
                 .verbosity(VerboseMode.NORMAL)
                 .include(".*" + BenchmarkSlice.class.getSimpleName() + ".*")
@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing slices to a file through the {@code OutputStream} API
+ * and through {@link SliceChannels}.  The file is overwritten from the
+ * start by each invocation, so the writes mostly go to the page cache.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class BenchmarkSliceChannels
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"4096", "65536", "1048576", "16777216", "67108864"})
+    private int payloadSize = 1048576;
+
+    @Param({"heap", "direct"})
+    private String memory = "direct";
+
+    private File file;
+    private FileOutputStream outputStream;
+    private FileChannel channel;
+
+    private Slice payload;
+    private List<Slice> chunks;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        file = File.createTempFile("benchmark-slice-channels", ".bin");
+        outputStream = new FileOutputStream(file);
+        channel = outputStream.getChannel();
+
+        payload = memory.equals("heap") ? Slices.allocate(payloadSize) : Slices.allocateDirect(payloadSize);
+        for (int i = 0; i < payloadSize; i += 8) {
+            payload.setLong(i, ThreadLocalRandom.current().nextLong());
+        }
+        chunks = new ArrayList<>();
+        for (int i = 0; i < payloadSize; i += CHUNK_SIZE) {
+            chunks.add(payload.slice(i, Math.min(CHUNK_SIZE, payloadSize - i)));
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException
+    {
+        outputStream.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long outputStream()
+            throws IOException
+    {
+        channel.position(0);
+        payload.getBytes(0, outputStream, payload.length());
+        return channel.position();
+    }
+
+    @Benchmark
+    public long outputStreamChunks()
+            throws IOException
+    {
+        channel.position(0);
+        for (Slice chunk : chunks) {
+            chunk.getBytes(0, outputStream, chunk.length());
+        }
+        return channel.position();
+    }
+
+    @Benchmark
+    public long channel()
+            throws IOException
+    {
+        channel.position(0);
+        SliceChannels.write(channel, payload);
+        return channel.position();
+    }
+
+    @Benchmark
+    public long channelGathering()
+            throws IOException
+    {
+        channel.position(0);
+        return SliceChannels.write(channel, chunks);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkSliceChannels.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -17,7 +17,9 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.runner.Runner;
@@ -26,6 +28,7 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.VerboseMode;
 
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 @State(Scope.Thread)
@@ -49,6 +52,60 @@ public class BenchmarkXxHash64
         return XxHash64.hash(data.getValue());
     }
 
+    @Benchmark
+    public long[] hashValues(BatchData data, ByteCounter counter)
+    {
+        counter.add(data.data.length());
+        int[] offsets = data.offsets;
+        int[] lengths = data.lengths;
+        long[] hashes = data.hashes;
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = XxHash64.hash(data.data, offsets[i], lengths[i]);
+        }
+        return hashes;
+    }
+
+    @Benchmark
+    public long[] hashBatch(BatchData data, ByteCounter counter)
+    {
+        counter.add(data.data.length());
+        XxHash64.hashBatch(data.data, data.offsets, data.lengths, data.hashes.length, data.hashes);
+        return data.hashes;
+    }
+
+    @State(Scope.Thread)
+    public static class BatchData
+    {
+        private static final int VALUE_COUNT = 1024;
+
+        // short values, such as group by keys, are dominated by per call overhead
+        @Param({"4", "16", "64"})
+        public int maxValueLength;
+
+        private Slice data;
+        private int[] offsets;
+        private int[] lengths;
+        private long[] hashes;
+
+        @Setup
+        public void setup()
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            offsets = new int[VALUE_COUNT];
+            lengths = new int[VALUE_COUNT];
+            hashes = new long[VALUE_COUNT];
+            int size = 0;
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                offsets[i] = size;
+                lengths[i] = random.nextInt(maxValueLength + 1);
+                size += lengths[i];
+            }
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            data = Slices.wrappedBuffer(bytes);
+        }
+    }
+
     public static void main(String[] args)
             throws RunnerException
     {
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestBlockedBloomFilter
+{
+    @Test
+    public void testNoFalseNegatives()
+    {
+        for (BlockedBloomFilter filter : new BlockedBloomFilter[] {BlockedBloomFilter.create(10_000, 0.01), BlockedBloomFilter.createDirect(10_000, 0.01)}) {
+            for (int i = 0; i < 10_000; i++) {
+                filter.put(utf8Slice("key-" + i));
+            }
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(filter.mightContain(utf8Slice("key-" + i)));
+            }
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(100_000, 0.01);
+        assertEquals(filter.getHashCount(), 7);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(utf8Slice("key-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(utf8Slice("other-" + i))) {
+                falsePositives++;
+            }
+        }
+        // blocking costs some accuracy, but the rate stays close to the target
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testKeyRange()
+    {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(100, 0.01);
+        Slice data = utf8Slice("prefix-key-suffix");
+        filter.put(data, 7, 3);
+        assertTrue(filter.mightContain(utf8Slice("key")));
+        assertTrue(filter.mightContain(data, 7, 3));
+        assertTrue(filter.mightContainHash(XxHash64.hash(utf8Slice("key"))));
+    }
+
+    @Test
+    public void testHash()
+    {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(1000, 0.001);
+        for (int i = 0; i < 1000; i++) {
+            filter.putHash(Murmur3Hash128.hash64(utf8Slice("key-" + i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContainHash(Murmur3Hash128.hash64(utf8Slice("key-" + i))));
+        }
+    }
+
+    @Test
+    public void testSerialize()
+    {
+        BlockedBloomFilter filter = BlockedBloomFilter.create(1000, 0.01);
+        filter.put(utf8Slice("apple"));
+
+        Slice serialized = filter.serialize();
+        assertEquals(serialized.length(), 8 + filter.getBlockCount() * 64);
+
+        Slice copy = Slices.allocateDirect(serialized.length());
+        copy.setBytes(0, serialized);
+        BlockedBloomFilter deserialized = BlockedBloomFilter.deserialize(copy);
+        assertEquals(deserialized.getBlockCount(), filter.getBlockCount());
+        assertEquals(deserialized.getHashCount(), filter.getHashCount());
+        assertTrue(deserialized.mightContain(utf8Slice("apple")));
+        assertFalse(deserialized.mightContain(utf8Slice("banana")));
+
+        // the deserialized filter is backed by the slice
+        deserialized.put(utf8Slice("banana"));
+        assertTrue(BlockedBloomFilter.deserialize(copy).mightContain(utf8Slice("banana")));
+        assertFalse(filter.mightContain(utf8Slice("banana")));
+    }
+
+    @Test
+    public void testMerge()
+    {
+        BlockedBloomFilter left = BlockedBloomFilter.create(1000, 0.01);
+        BlockedBloomFilter right = BlockedBloomFilter.createDirect(1000, 0.01);
+        for (int i = 0; i < 500; i++) {
+            left.put(utf8Slice("left-" + i));
+            right.put(utf8Slice("right-" + i));
+        }
+        left.merge(right);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(left.mightContain(utf8Slice("left-" + i)));
+            assertTrue(left.mightContain(utf8Slice("right-" + i)));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentSizes()
+    {
+        BlockedBloomFilter.create(1000, 0.01).merge(BlockedBloomFilter.create(100_000, 0.01));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDeserializeTruncated()
+    {
+        Slice serialized = BlockedBloomFilter.create(1000, 0.01).serialize();
+        BlockedBloomFilter.deserialize(serialized.slice(0, serialized.length() - 8));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDeserializeInvalidVersion()
+    {
+        BlockedBloomFilter.deserialize(Slices.allocate(72));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestCheckedSliceOutput
+{
+    private final byte[] data;
+
+    public TestCheckedSliceOutput()
+    {
+        data = new byte[5000];
+        new Random(13).nextBytes(data);
+    }
+
+    @Test
+    public void testChecksums()
+            throws IOException
+    {
+        assertChecksum(new CRC32());
+        assertChecksum(new Adler32());
+        assertChecksum(new Crc32c());
+    }
+
+    @Test
+    public void testHashers()
+            throws IOException
+    {
+        CheckedSliceOutput output = new CheckedSliceOutput(new DynamicSliceOutput(16), new XxHash64(7).asChecksum());
+        writeAll(output);
+        assertEquals(output.getChecksum().getValue(), XxHash64.hash(7, output.slice()));
+
+        output = new CheckedSliceOutput(new DynamicSliceOutput(16), new XxHash3(7).asChecksum());
+        writeAll(output);
+        assertEquals(output.getChecksum().getValue(), XxHash3.hash(7, output.slice()));
+    }
+
+    @Test
+    public void testOutputStreamSliceOutput()
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XxHash64 hash = new XxHash64();
+        try (CheckedSliceOutput output = new CheckedSliceOutput(new OutputStreamSliceOutput(bytes), hash.asChecksum())) {
+            writeAll(output);
+        }
+        assertEquals(hash.hash(), XxHash64.hash(Slices.wrappedBuffer(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testReset()
+    {
+        CheckedSliceOutput output = new CheckedSliceOutput(new DynamicSliceOutput(16), new CRC32());
+        output.writeLong(1);
+        output.reset();
+        output.writeInt(2);
+        assertEquals(output.size(), 4);
+        assertEquals(output.getChecksum().getValue(), SliceChecksums.crc32(output.slice()));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testResetToPosition()
+    {
+        CheckedSliceOutput output = new CheckedSliceOutput(new DynamicSliceOutput(16), new CRC32());
+        output.writeLong(1);
+        output.reset(4);
+    }
+
+    private void assertChecksum(Checksum checksum)
+            throws IOException
+    {
+        CheckedSliceOutput output = new CheckedSliceOutput(new DynamicSliceOutput(16), checksum);
+        writeAll(output);
+        Checksum expected = newInstance(checksum);
+        SliceChecksums.update(expected, output.slice());
+        assertEquals(output.getChecksum().getValue(), expected.getValue());
+        // reading the checksum does not disturb later writes
+        output.writeInt(3);
+        expected.update(new byte[] {3, 0, 0, 0}, 0, 4);
+        assertEquals(output.getChecksum().getValue(), expected.getValue());
+    }
+
+    private void writeAll(SliceOutput output)
+            throws IOException
+    {
+        output.writeByte(1);
+        output.writeShort(2);
+        output.writeInt(3);
+        output.writeLong(4);
+        output.writeFloat(5.5f);
+        output.writeDouble(6.5);
+        output.writeBoolean(true);
+        // small writes are buffered, and large ones are checksummed in place
+        output.writeBytes(data, 0, 10);
+        output.writeBytes(data, 10, 2000);
+        output.writeBytes(Slices.wrappedBuffer(data), 100, 20);
+        Slice direct = Slices.allocateDirect(data.length);
+        direct.setBytes(0, data);
+        output.writeBytes(direct, 7, 3000);
+        output.writeZero(1500);
+        output.writeBytes(new ByteArrayInputStream(data), 1234);
+        output.appendLong(7).appendInt(8).appendShort(9).appendByte(10).appendDouble(11);
+        for (int i = 0; i < 1000; i++) {
+            output.writeInt(i);
+        }
+    }
+
+    private static Checksum newInstance(Checksum checksum)
+    {
+        if (checksum instanceof CRC32) {
+            return new CRC32();
+        }
+        if (checksum instanceof Adler32) {
+            return new Adler32();
+        }
+        return new Crc32c();
+    }
+}
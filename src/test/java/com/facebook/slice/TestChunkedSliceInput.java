@@ -40,7 +40,7 @@ public class TestChunkedSliceInput
         return new ChunkedSliceInput(new SliceSliceLoader(slice), BUFFER_SIZE);
     }
 
-    private static class SliceSliceLoader
+    static class SliceSliceLoader
             implements SliceLoader<BufferReference>
     {
         private final Slice data;
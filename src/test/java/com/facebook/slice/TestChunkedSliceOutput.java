@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestChunkedSliceOutput
+{
+    @Test
+    public void testWritesMatchDynamicSliceOutput()
+            throws Exception
+    {
+        // a chunk size that is not a multiple of any value size, so values span chunks
+        for (int chunkSize : new int[] {1, 7, 13, 4096}) {
+            ChunkedSliceOutput chunked = new ChunkedSliceOutput(chunkSize);
+            DynamicSliceOutput expected = new DynamicSliceOutput(16);
+            writeValues(chunked, new Random(chunkSize));
+            writeValues(expected, new Random(chunkSize));
+
+            assertEquals(chunked.size(), expected.size());
+            assertEquals(chunked.slice(), expected.slice());
+            assertEquals(chunked.copySlice(), expected.slice());
+            assertEquals(concat(chunked.getChunks()), expected.slice());
+        }
+    }
+
+    @Test
+    public void testGrowingDoesNotCopy()
+    {
+        ChunkedSliceOutput output = new ChunkedSliceOutput(16);
+        output.writeLong(1);
+        Slice firstChunk = output.getUnderlyingSlice();
+        for (int i = 0; i < 100; i++) {
+            output.writeLong(i);
+        }
+        List<Slice> chunks = output.getChunks();
+        assertEquals(chunks.size(), 51);
+        assertSame(chunks.get(0), firstChunk);
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertEquals(chunks.get(i).length(), 16);
+        }
+        assertEquals(chunks.get(50).length(), 8);
+        assertEquals(firstChunk.getLong(0), 1);
+    }
+
+    @Test
+    public void testSingleChunkSliceIsView()
+    {
+        ChunkedSliceOutput output = new ChunkedSliceOutput(64);
+        assertEquals(output.slice().length(), 0);
+        assertTrue(output.getChunks().isEmpty());
+
+        output.writeInt(42);
+        Slice slice = output.slice();
+        assertSame(slice.getBase(), output.getUnderlyingSlice().getBase());
+        assertEquals(output.toString(UTF_8).length(), 4);
+    }
+
+    @Test
+    public void testReset()
+    {
+        ChunkedSliceOutput output = new ChunkedSliceOutput(10);
+        for (int i = 0; i < 35; i++) {
+            output.writeByte(i);
+        }
+        output.reset(20);
+        assertEquals(output.size(), 20);
+        assertEquals(output.getChunks().size(), 2);
+        output.writeByte(100);
+        Slice slice = output.slice();
+        assertEquals(slice.length(), 21);
+        assertEquals(slice.getByte(19), 19);
+        assertEquals(slice.getByte(20), 100);
+
+        output.reset(15);
+        output.writeByte(101);
+        assertEquals(output.slice().getByte(15), 101);
+        assertEquals(output.size(), 16);
+
+        output.reset();
+        assertEquals(output.size(), 0);
+        assertTrue(output.getChunks().isEmpty());
+        output.writeByte(7);
+        assertEquals(output.slice(), Slices.wrappedBuffer(new byte[] {7}));
+    }
+
+    @Test
+    public void testPool()
+    {
+        SlicePool pool = SlicePool.heap(1 << 20);
+        for (int round = 0; round < 2; round++) {
+            ChunkedSliceOutput output = new ChunkedSliceOutput(100, pool);
+            output.writeZero(1000);
+            List<Slice> chunks = output.getChunks();
+            assertEquals(chunks.size(), 8);
+            assertEquals(chunks.get(0).length(), 128);
+            assertEquals(output.slice(), Slices.allocate(1000));
+            output.release();
+            assertEquals(output.size(), 0);
+        }
+        assertEquals(pool.getMissCount(), 8);
+        assertEquals(pool.getHitCount(), 8);
+        assertEquals(pool.getRetainedBytes(), 8 * 128);
+    }
+
+    @Test
+    public void testRetainedSize()
+    {
+        ChunkedSliceOutput output = new ChunkedSliceOutput(1024);
+        long emptySize = output.getRetainedSize();
+        output.writeZero(4096);
+        assertTrue(output.getRetainedSize() >= emptySize + 4 * SizeOf.sizeOfByteArray(1024));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testResetBeyondSize()
+    {
+        ChunkedSliceOutput output = new ChunkedSliceOutput(16);
+        output.writeInt(1);
+        output.reset(5);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testWriteBytesOutOfBounds()
+    {
+        new ChunkedSliceOutput(16).writeBytes(new byte[4], 2, 3);
+    }
+
+    private static void writeValues(SliceOutput output, Random random)
+            throws Exception
+    {
+        for (int i = 0; i < 200; i++) {
+            output.writeByte(random.nextInt());
+            output.writeShort(random.nextInt());
+            output.writeInt(random.nextInt());
+            output.writeLong(random.nextLong());
+            output.writeFloat(random.nextFloat());
+            output.writeDouble(random.nextDouble());
+            byte[] bytes = new byte[random.nextInt(40)];
+            random.nextBytes(bytes);
+            output.writeBytes(bytes);
+            output.writeBytes(Slices.wrappedBuffer(bytes), 1 % (bytes.length + 1), bytes.length / 2);
+            output.writeBytes(new ByteArrayInputStream(bytes), bytes.length);
+            output.writeZero(random.nextInt(20));
+        }
+    }
+
+    private static Slice concat(List<Slice> chunks)
+    {
+        DynamicSliceOutput output = new DynamicSliceOutput(16);
+        for (Slice chunk : chunks) {
+            output.writeBytes(chunk);
+        }
+        return output.slice();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.testng.Assert.assertEquals;
+
+public class TestCrc32c
+{
+    @Test
+    public void testKnownValues()
+    {
+        assertCrc32c("123456789".getBytes(US_ASCII), 0xE3069283L);
+        assertCrc32c(new byte[0], 0);
+
+        // test vectors from RFC 3720
+        byte[] data = new byte[32];
+        assertCrc32c(data, 0x8A9136AAL);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) 0xFF;
+        }
+        assertCrc32c(data, 0x62A8AB43L);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        assertCrc32c(data, 0x46DD794EL);
+    }
+
+    @Test
+    public void testMatchesJdk()
+    {
+        Random random = new Random(5);
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        Slice direct = Slices.allocateDirect(data.length);
+        direct.setBytes(0, data);
+
+        for (int length = 0; length < 100; length++) {
+            int offset = random.nextInt(data.length - length);
+            Checksum expected = SliceChecksums.newCrc32c();
+            expected.update(data, offset, length);
+
+            Crc32c actual = new Crc32c();
+            actual.update(data, offset, length);
+            assertEquals(actual.getValue(), expected.getValue());
+
+            actual.reset();
+            actual.update(direct, offset, length);
+            assertEquals(actual.getValue(), expected.getValue());
+        }
+    }
+
+    @Test
+    public void testIncremental()
+    {
+        byte[] data = "incremental updates over several calls".getBytes(US_ASCII);
+        Crc32c expected = new Crc32c();
+        expected.update(data, 0, data.length);
+
+        Crc32c actual = new Crc32c();
+        actual.update(data[0]);
+        actual.update(data, 1, 10);
+        actual.update(Slices.wrappedBuffer(data), 11, data.length - 11);
+        assertEquals(actual.getValue(), expected.getValue());
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfBounds()
+    {
+        new Crc32c().update(Slices.allocate(10), 5, 6);
+    }
+
+    private static void assertCrc32c(byte[] data, long expected)
+    {
+        Crc32c crc32c = new Crc32c();
+        crc32c.update(data, 0, data.length);
+        assertEquals(crc32c.getValue(), expected);
+        assertEquals(SliceChecksums.crc32c(Slices.wrappedBuffer(data)), expected);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestFileChannelSliceLoader
+        extends AbstractSliceInputTest
+{
+    private final List<ChunkedSliceInput> inputs = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdown();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void closeInputs()
+    {
+        for (ChunkedSliceInput input : inputs) {
+            input.close();
+        }
+        inputs.clear();
+        for (File file : files) {
+            file.delete();
+        }
+        files.clear();
+    }
+
+    @Override
+    protected SliceInput createSliceInput(Slice slice)
+    {
+        return createInput(slice, true, executor, BUFFER_SIZE);
+    }
+
+    @Test
+    public void testSequentialScanUsesReadAhead()
+    {
+        Slice data = randomSlice(new Random(1), 1_000_000);
+        for (boolean direct : new boolean[] {false, true}) {
+            FileChannelSliceLoader loader = createLoader(data, direct, executor);
+            ChunkedSliceInput input = new ChunkedSliceInput(loader, 4096);
+            inputs.add(input);
+
+            // longs at an odd offset span the chunk boundaries, which makes the input reread them
+            assertEquals(input.readByte(), data.getByte(0));
+            for (int position = 1; position + 8 <= data.length(); position += 8) {
+                assertEquals(input.readLong(), data.getLong(position));
+            }
+            assertTrue(loader.getLoadCount() > 200);
+            assertEquals(loader.getReadAheadHitCount(), loader.getLoadCount() - 1);
+            assertTrue(loader.getReadAheadHitRate() > 0.99);
+        }
+    }
+
+    @Test
+    public void testRandomAccess()
+    {
+        Slice data = randomSlice(new Random(2), 100_000);
+        FileChannelSliceLoader loader = createLoader(data, true, executor);
+        ChunkedSliceInput input = new ChunkedSliceInput(loader, 1024);
+        inputs.add(input);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            int position = random.nextInt(data.length() - 4);
+            input.setPosition(position);
+            assertEquals(input.readInt(), data.getInt(position));
+        }
+        assertTrue(loader.getReadAheadHitRate() < 0.5);
+    }
+
+    @Test
+    public void testWithoutReadAhead()
+    {
+        Slice data = randomSlice(new Random(4), 10_000);
+        FileChannelSliceLoader loader = createLoader(data, false, null);
+        ChunkedSliceInput input = new ChunkedSliceInput(loader, 256);
+        inputs.add(input);
+
+        assertEquals(input.readSlice(data.length()), data);
+        assertEquals(loader.getReadAheadHitCount(), 0);
+        assertEquals(loader.getReadAheadHitRate(), 0.0);
+    }
+
+    @Test
+    public void testCloseClosesChannel()
+            throws Exception
+    {
+        File file = File.createTempFile("file-channel-slice-loader", ".bin");
+        files.add(file);
+        Files.write(file.toPath(), new byte[1000]);
+        FileChannel channel = FileChannel.open(file.toPath(), READ);
+        ChunkedSliceInput input = new ChunkedSliceInput(new FileChannelSliceLoader(channel, false, executor), 128);
+        input.readLong();
+        input.close();
+        assertTrue(!channel.isOpen());
+    }
+
+    private ChunkedSliceInput createInput(Slice data, boolean direct, ExecutorService executor, int bufferSize)
+    {
+        ChunkedSliceInput input = new ChunkedSliceInput(createLoader(data, direct, executor), bufferSize);
+        inputs.add(input);
+        return input;
+    }
+
+    private FileChannelSliceLoader createLoader(Slice data, boolean direct, ExecutorService executor)
+    {
+        try {
+            File file = File.createTempFile("file-channel-slice-loader", ".bin");
+            files.add(file);
+            Files.write(file.toPath(), data.getBytes());
+            return new FileChannelSliceLoader(FileChannel.open(file.toPath(), READ), direct, executor);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Slice randomSlice(Random random, int length)
+    {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return Slices.wrappedBuffer(bytes);
+    }
+}
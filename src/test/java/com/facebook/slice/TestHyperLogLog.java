@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class TestHyperLogLog
+{
+    @Test
+    public void testCardinality()
+    {
+        for (int count : new int[] {0, 1, 10, 100, 1000, 10_000, 100_000}) {
+            HyperLogLog sketch = HyperLogLog.newInstance(12);
+            for (int i = 0; i < count; i++) {
+                sketch.add(utf8Slice("value-" + i));
+                // duplicates do not change the estimate
+                sketch.add(utf8Slice("value-" + (i / 2)));
+            }
+            assertWithinError(sketch.cardinality(), count, 12);
+        }
+    }
+
+    @Test
+    public void testSparseToDense()
+    {
+        HyperLogLog sketch = HyperLogLog.newInstance(10);
+        assertTrue(sketch.isSparse());
+        long sparseSize = sketch.getRetainedSize();
+        for (int i = 0; i < 200; i++) {
+            sketch.add(utf8Slice("value-" + i));
+        }
+        assertTrue(sketch.isSparse());
+        assertTrue(sketch.getRetainedSize() > sparseSize);
+        long sparseCardinality = sketch.cardinality();
+
+        for (int i = 200; i < 400; i++) {
+            sketch.add(utf8Slice("value-" + i));
+        }
+        assertFalse(sketch.isSparse());
+        assertWithinError(sparseCardinality, 200, 10);
+        assertWithinError(sketch.cardinality(), 400, 10);
+    }
+
+    @Test
+    public void testAddHash()
+    {
+        HyperLogLog sketch = HyperLogLog.newInstance(14);
+        for (int i = 0; i < 200_000; i++) {
+            sketch.addHash(Murmur3Hash128.hash64(utf8Slice("value-" + i)));
+        }
+        assertWithinError(sketch.cardinality(), 200_000, 14);
+
+        HyperLogLog range = HyperLogLog.newInstance(14);
+        range.add(utf8Slice("xx-value-1-yy"), 3, 7);
+        HyperLogLog full = HyperLogLog.newInstance(14);
+        full.add(utf8Slice("value-1"));
+        assertEquals(range.serialize(), full.serialize());
+    }
+
+    @Test
+    public void testMerge()
+    {
+        for (int leftCount : new int[] {10, 20_000}) {
+            for (int rightCount : new int[] {10, 20_000}) {
+                HyperLogLog left = HyperLogLog.newInstance(11);
+                HyperLogLog right = HyperLogLog.newInstance(11);
+                HyperLogLog expected = HyperLogLog.newInstance(11);
+                for (int i = 0; i < leftCount; i++) {
+                    left.add(utf8Slice("left-" + i));
+                    expected.add(utf8Slice("left-" + i));
+                }
+                for (int i = 0; i < rightCount; i++) {
+                    right.add(utf8Slice("right-" + i));
+                    expected.add(utf8Slice("right-" + i));
+                }
+                left.mergeWith(right);
+                assertEquals(left.cardinality(), expected.cardinality());
+                assertWithinError(left.cardinality(), leftCount + rightCount, 11);
+            }
+        }
+    }
+
+    @Test
+    public void testSerialize()
+    {
+        for (int count : new int[] {0, 5, 10_000}) {
+            HyperLogLog sketch = HyperLogLog.newInstance(8);
+            for (int i = 0; i < count; i++) {
+                sketch.add(utf8Slice("value-" + i));
+            }
+
+            byte[] bytes = sketch.serialize().getBytes();
+            HyperLogLog deserialized = HyperLogLog.deserialize(Slices.wrappedBuffer(bytes));
+            assertEquals(deserialized.isSparse(), sketch.isSparse());
+            assertEquals(deserialized.getIndexBitLength(), 8);
+            assertEquals(deserialized.cardinality(), sketch.cardinality());
+            assertEquals(deserialized.serialize(), sketch.serialize());
+        }
+    }
+
+    @Test
+    public void testMergeWrappedDense()
+    {
+        HyperLogLog sketch = HyperLogLog.newInstance(8);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(utf8Slice("value-" + i));
+        }
+        byte[] bytes = sketch.serialize().getBytes();
+
+        // the wrapped sketch is backed by the byte array
+        HyperLogLog target = HyperLogLog.deserialize(Slices.wrappedBuffer(bytes));
+        HyperLogLog other = HyperLogLog.newInstance(8);
+        for (int i = 1000; i < 2000; i++) {
+            other.add(utf8Slice("value-" + i));
+        }
+        target.mergeWith(other);
+        assertEquals(HyperLogLog.deserialize(Slices.wrappedBuffer(bytes)).cardinality(), target.cardinality());
+        assertWithinError(target.cardinality(), 2000, 8);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeDifferentSizes()
+    {
+        HyperLogLog.newInstance(8).mergeWith(HyperLogLog.newInstance(9));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDeserializeInvalidRegister()
+    {
+        Slice serialized = Slices.allocate(2 + 16);
+        serialized.setByte(0, 1);
+        serialized.setByte(1, 4);
+        serialized.setByte(5, 100);
+        HyperLogLog.deserialize(serialized);
+    }
+
+    @Test
+    public void testDeserializeInvalidSparseEntry()
+    {
+        // the largest value for 4 index bits is 61
+        assertTrue(HyperLogLog.deserialize(sparse(4, 3, 61)).isSparse());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.deserialize(sparse(4, 3, 0)));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.deserialize(sparse(4, 3, 62)));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.deserialize(sparse(4, 16, 1)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidIndexBitLength()
+    {
+        HyperLogLog.newInstance(3);
+    }
+
+    private static Slice sparse(int indexBitLength, int index, int value)
+    {
+        Slice serialized = Slices.allocate(2 + 4 + 4);
+        serialized.setByte(0, 2);
+        serialized.setByte(1, indexBitLength);
+        serialized.setInt(2, 1);
+        serialized.setInt(6, (index << 8) | value);
+        return serialized;
+    }
+
+    private static void assertWithinError(long actual, long expected, int indexBitLength)
+    {
+        // four standard errors
+        double error = 4 * 1.04 / Math.sqrt(1 << indexBitLength);
+        assertTrue(Math.abs(actual - expected) <= Math.max(1, expected * error), "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.facebook.slice.MappedSliceFile.AccessHint.DONT_NEED;
+import static com.facebook.slice.MappedSliceFile.AccessHint.RANDOM;
+import static com.facebook.slice.MappedSliceFile.AccessHint.SEQUENTIAL;
+import static com.facebook.slice.MappedSliceFile.AccessHint.WILL_NEED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class TestMappedSliceFile
+        extends AbstractSliceInputTest
+{
+    private final List<MappedSliceFile> mappedFiles = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+
+    @AfterMethod(alwaysRun = true)
+    public void closeFiles()
+            throws IOException
+    {
+        for (MappedSliceFile mappedFile : mappedFiles) {
+            mappedFile.close();
+        }
+        mappedFiles.clear();
+        for (File file : files) {
+            file.delete();
+        }
+        files.clear();
+    }
+
+    // small segments, so values span segments
+    @Override
+    protected SliceInput createSliceInput(Slice slice)
+    {
+        return map(slice, 64).getInput();
+    }
+
+    @Test
+    public void testGetValues()
+    {
+        Slice data = randomSlice(new Random(1), 10_000);
+        MappedSliceFile file = map(data, 256);
+        assertEquals(file.length(), 10_000);
+        assertEquals(file.getSegmentSize(), 256);
+        for (int position = 0; position < data.length() - 8; position++) {
+            assertEquals(file.getByte(position), data.getByte(position));
+            assertEquals(file.getShort(position), data.getShort(position));
+            assertEquals(file.getInt(position), data.getInt(position));
+            assertEquals(file.getLong(position), data.getLong(position));
+            assertEquals(Float.floatToRawIntBits(file.getFloat(position)), Float.floatToRawIntBits(data.getFloat(position)));
+            assertEquals(Double.doubleToRawLongBits(file.getDouble(position)), Double.doubleToRawLongBits(data.getDouble(position)));
+        }
+    }
+
+    @Test
+    public void testSlice()
+    {
+        Slice data = randomSlice(new Random(2), 1000);
+        MappedSliceFile file = map(data, 256);
+
+        Slice first = file.slice(10, 100);
+        Slice second = file.slice(10, 100);
+        assertEquals(first, data.slice(10, 100));
+        // views of the same mapped memory
+        assertEquals(first.getAddress(), second.getAddress());
+        assertSame(first.getBase(), null);
+
+        Slice spanning = file.slice(200, 600);
+        assertEquals(spanning, data.slice(200, 600));
+        assertNotSame(spanning.getBase(), null);
+        assertEquals(file.slice(1000, 0).length(), 0);
+
+        byte[] bytes = new byte[700];
+        file.getBytes(250, bytes, 50, 650);
+        assertEquals(Slices.wrappedBuffer(bytes, 50, 650), data.slice(250, 650));
+    }
+
+    @Test
+    public void testInputReadsViewsAndStreams()
+            throws Exception
+    {
+        Slice data = randomSlice(new Random(3), 5000);
+        MappedSliceFile file = map(data, 1024);
+        FixedLengthSliceInput input = file.getInput();
+        assertEquals(input.length(), 5000);
+
+        input.setPosition(1000);
+        Slice buffered = input.readBufferedSlice(4000);
+        assertEquals(buffered, data.slice(1000, 24));
+        assertEquals(input.position(), 1024);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        input.readBytes(out, 3000);
+        assertEquals(Slices.wrappedBuffer(out.toByteArray()), data.slice(1024, 3000));
+        assertEquals(input.remaining(), 976);
+        assertEquals(input.skip(2000), 976);
+        assertEquals(input.read(), -1);
+    }
+
+    @Test
+    public void testFileLargerThanTwoGigabytes()
+            throws Exception
+    {
+        File file = createTempFile();
+        long length = (3L << 30) + 100;
+        long position = (2L << 30) - 4;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // a sparse file, so the test does not write gigabytes
+            randomAccessFile.setLength(length);
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, 0x0123456789ABCDEFL);
+            randomAccessFile.getChannel().write(buffer, position);
+            buffer.clear();
+            buffer.putLong(0, 42);
+            randomAccessFile.getChannel().write(buffer, length - 8);
+        }
+
+        MappedSliceFile mappedFile = MappedSliceFile.map(file);
+        mappedFiles.add(mappedFile);
+        assertEquals(mappedFile.length(), length);
+        // spans the first and second segment
+        assertEquals(mappedFile.getLong(position), 0x0123456789ABCDEFL);
+        assertEquals(mappedFile.getLong(length - 8), 42);
+        assertEquals(mappedFile.slice(length - 8, 8).getLong(0), 42);
+
+        FixedLengthSliceInput input = mappedFile.getInput();
+        input.setPosition(position);
+        assertEquals(input.readLong(), 0x0123456789ABCDEFL);
+        assertEquals(input.position(), position + 8);
+        assertThrows(IndexOutOfBoundsException.class, () -> mappedFile.getLong(length - 7));
+    }
+
+    @Test
+    public void testEmptyFile()
+            throws Exception
+    {
+        MappedSliceFile file = map(Slices.EMPTY_SLICE, 1024);
+        assertEquals(file.length(), 0);
+        assertEquals(file.getInput().read(), -1);
+    }
+
+    @Test
+    public void testClose()
+            throws Exception
+    {
+        MappedSliceFile file = map(randomSlice(new Random(4), 1000), 256);
+        FixedLengthSliceInput input = file.getInput();
+        file.close();
+        file.close();
+        assertThrows(IllegalStateException.class, () -> file.getByte(0));
+        assertThrows(IllegalStateException.class, () -> file.getLong(0));
+        assertThrows(IllegalStateException.class, () -> file.getBytes(0, new byte[10], 0, 10));
+        assertThrows(IllegalStateException.class, () -> file.slice(0, 10));
+        assertThrows(IllegalStateException.class, () -> file.getSegment(0));
+        assertThrows(IllegalStateException.class, () -> file.load(0, 1000));
+        assertThrows(IllegalStateException.class, () -> file.advise(0, 1000, WILL_NEED));
+        assertThrows(IllegalStateException.class, file::force);
+        assertThrows(IllegalStateException.class, input::readLong);
+        assertThrows(IllegalStateException.class, () -> input.readSlice(10));
+    }
+
+    @Test
+    public void testCloseReadWrite()
+            throws Exception
+    {
+        File file = createTempFile();
+        Files.write(file.toPath(), new byte[1000]);
+        MappedSliceFile mappedFile = MappedSliceFile.mapReadWrite(file, 256);
+        mappedFile.close();
+        assertThrows(IllegalStateException.class, () -> mappedFile.setLong(0, 1));
+        assertThrows(IllegalStateException.class, () -> mappedFile.setBytes(0, new byte[10], 0, 10));
+        assertThrows(IllegalStateException.class, mappedFile::force);
+        assertThrows(IllegalStateException.class, () -> mappedFile.grow(2000));
+    }
+
+    @Test
+    public void testReadWrite()
+            throws Exception
+    {
+        File file = createTempFile();
+        Files.write(file.toPath(), new byte[1000]);
+        try (MappedSliceFile mappedFile = MappedSliceFile.mapReadWrite(file, 256)) {
+            assertEquals(mappedFile.getMapMode(), MapMode.READ_WRITE);
+            // values within and across segments
+            for (long position : new long[] {0, 100, 249, 263, 380, 991}) {
+                mappedFile.setLong(position, 0x0123456789ABCDEFL + position);
+                assertEquals(mappedFile.getLong(position), 0x0123456789ABCDEFL + position);
+            }
+            mappedFile.setInt(510, 0xCAFEBABE);
+            mappedFile.setShort(767, 0x1234);
+            mappedFile.setByte(999, 0x7F);
+            mappedFile.setDouble(600, 1.5);
+            mappedFile.setBytes(200, Slices.utf8Slice("hello across segments"), 0, 21);
+            mappedFile.setBytes(700, new byte[] {1, 2, 3}, 1, 2);
+
+            // the segments are writable slices of the file
+            mappedFile.getSegment(3).setByte(2, 0x42);
+            assertEquals(mappedFile.getByte(770), 0x42);
+            mappedFile.force();
+
+            Slice expected = Slices.wrappedBuffer(Files.readAllBytes(file.toPath()));
+            assertEquals(mappedFile.slice(0, 1000), expected);
+            assertEquals(expected.getInt(510), 0xCAFEBABE);
+            assertEquals(expected.getShort(767), 0x1234);
+            assertEquals(expected.getByte(999), 0x7F);
+            assertEquals(expected.getDouble(600), 1.5);
+            assertEquals(expected.slice(200, 21), Slices.utf8Slice("hello across segments"));
+            assertEquals(expected.getByte(701), 3);
+            assertEquals(expected.getLong(249), 0x0123456789ABCDEFL + 249);
+        }
+    }
+
+    @Test
+    public void testGrow()
+            throws Exception
+    {
+        File file = createTempFile();
+        file.delete();
+        try (MappedSliceFile mappedFile = MappedSliceFile.mapReadWrite(file, 256)) {
+            assertEquals(mappedFile.length(), 0);
+            assertEquals(mappedFile.getSegmentCount(), 0);
+
+            // an append-only log of longs, growing the file as it fills
+            long position = 0;
+            Slice earlier = null;
+            for (int i = 0; i < 1000; i++) {
+                if (position + 8 > mappedFile.length()) {
+                    mappedFile.grow(mappedFile.length() + 100);
+                }
+                mappedFile.setLong(position, i);
+                position += 8;
+                if (i == 5) {
+                    earlier = mappedFile.slice(0, 48);
+                }
+            }
+            assertEquals(mappedFile.length(), 8000);
+            assertEquals(mappedFile.getSegmentCount(), 32);
+            // a slice obtained before growing the partial segment remains valid and shares the file
+            assertEquals(earlier.getLong(40), 5);
+            mappedFile.setLong(40, 55);
+            assertEquals(earlier.getLong(40), 55);
+            mappedFile.force();
+
+            Slice expected = Slices.wrappedBuffer(Files.readAllBytes(file.toPath()));
+            assertEquals(expected.length(), 8000);
+            assertEquals(expected.getLong(40), 55);
+            assertEquals(expected.getLong(7992), 999);
+
+            // each grow of a partial last segment retired its previous mapping, all but the grows from 0 and 6400
+            assertEquals(mappedFile.getRetiredMappingCount(), 78);
+            earlier = null;
+            mappedFile.releaseRetiredMappings();
+            assertEquals(mappedFile.getRetiredMappingCount(), 0);
+            assertEquals(mappedFile.getLong(40), 55);
+            assertEquals(mappedFile.slice(0, 8000), expected);
+
+            assertThrows(IllegalArgumentException.class, () -> mappedFile.grow(10));
+        }
+    }
+
+    @Test
+    public void testPrivate()
+            throws Exception
+    {
+        Slice data = randomSlice(new Random(5), 1000);
+        File file = createTempFile();
+        Files.write(file.toPath(), data.getBytes());
+        try (MappedSliceFile mappedFile = MappedSliceFile.mapPrivate(file, 256)) {
+            mappedFile.setLong(252, 42);
+            assertEquals(mappedFile.getLong(252), 42);
+            mappedFile.force();
+            assertThrows(UnsupportedOperationException.class, () -> mappedFile.grow(2000));
+        }
+        // the file is not changed
+        assertEquals(Slices.wrappedBuffer(Files.readAllBytes(file.toPath())), data);
+    }
+
+    @Test
+    public void testReadOnly()
+    {
+        MappedSliceFile mappedFile = map(randomSlice(new Random(6), 100), 64);
+        assertEquals(mappedFile.getMapMode(), MapMode.READ_ONLY);
+        assertThrows(UnsupportedOperationException.class, () -> mappedFile.setByte(0, 1));
+        assertThrows(UnsupportedOperationException.class, () -> mappedFile.setBytes(0, new byte[1], 0, 1));
+        assertThrows(UnsupportedOperationException.class, () -> mappedFile.grow(200));
+    }
+
+    @Test
+    public void testLoad()
+    {
+        Slice data = randomSlice(new Random(7), 100_000);
+        MappedSliceFile mappedFile = map(data, 1 << 15);
+        // whole file, whole segments, and ranges within and across segments
+        mappedFile.load(0, data.length());
+        mappedFile.load(1 << 15, 1 << 16);
+        mappedFile.load(100, 10);
+        mappedFile.load(30_000, 50_000);
+        mappedFile.load(99_999, 1);
+        mappedFile.load(100_000, 0);
+        assertEquals(mappedFile.slice(0, data.length()), data);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> mappedFile.load(99_999, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> mappedFile.load(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> mappedFile.load(0, -1));
+    }
+
+    @Test
+    public void testAdvise()
+    {
+        Slice data = randomSlice(new Random(8), 10_000);
+        MappedSliceFile mappedFile = map(data, 4096);
+        assertTrue(mappedFile.advise(1000, 5000, WILL_NEED));
+        assertFalse(mappedFile.advise(0, 10_000, SEQUENTIAL));
+        assertFalse(mappedFile.advise(0, 10_000, RANDOM));
+        assertFalse(mappedFile.advise(0, 10_000, DONT_NEED));
+        assertEquals(mappedFile.slice(0, data.length()), data);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> mappedFile.advise(0, 10_001, RANDOM));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSegmentSize()
+            throws Exception
+    {
+        MappedSliceFile.map(createTempFile(), 1000);
+    }
+
+    private MappedSliceFile map(Slice data, int segmentSize)
+    {
+        try {
+            File file = createTempFile();
+            Files.write(file.toPath(), data.getBytes());
+            MappedSliceFile mappedFile = MappedSliceFile.map(file, segmentSize);
+            mappedFiles.add(mappedFile);
+            return mappedFile;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private File createTempFile()
+            throws IOException
+    {
+        File file = File.createTempFile("mapped-slice-file", ".bin");
+        files.add(file);
+        return file;
+    }
+
+    private static Slice randomSlice(Random random, int length)
+    {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return Slices.wrappedBuffer(bytes);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.facebook.slice.Slices.EMPTY_SLICE;
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestMultiSliceSearcher
+{
+    @Test
+    public void testOverlappingPatterns()
+    {
+        MultiSliceSearcher searcher = new MultiSliceSearcher(utf8Slice("he"), utf8Slice("she"), utf8Slice("his"), utf8Slice("hers"));
+        assertEquals(findAll(searcher, utf8Slice("ushers")), ImmutableList.of(
+                match(1, 1),
+                match(0, 2),
+                match(3, 2)));
+        assertEquals(findAll(searcher, utf8Slice("ahishers")), ImmutableList.of(
+                match(2, 1),
+                match(1, 3),
+                match(0, 4),
+                match(3, 4)));
+        assertEquals(findAll(searcher, utf8Slice("nothing")), ImmutableList.of());
+        assertEquals(findAll(searcher, EMPTY_SLICE), ImmutableList.of());
+    }
+
+    @Test
+    public void testDuplicateAndNestedPatterns()
+    {
+        MultiSliceSearcher searcher = new MultiSliceSearcher(utf8Slice("a"), utf8Slice("aa"), utf8Slice("a"), utf8Slice("aaa"));
+        assertEquals(findAll(searcher, utf8Slice("aaa")), ImmutableList.of(
+                match(2, 0),
+                match(0, 0),
+                match(1, 0),
+                match(2, 1),
+                match(0, 1),
+                match(3, 0),
+                match(1, 1),
+                match(2, 2),
+                match(0, 2)));
+    }
+
+    @Test
+    public void testRandom()
+    {
+        Random random = new Random(42);
+        for (int test = 0; test < 50; test++) {
+            List<Slice> patterns = new ArrayList<>();
+            int patternCount = 1 + random.nextInt(20);
+            for (int i = 0; i < patternCount; i++) {
+                patterns.add(randomSlice(random, 1 + random.nextInt(6), 3));
+            }
+            MultiSliceSearcher searcher = new MultiSliceSearcher(patterns);
+            assertEquals(searcher.getPatternCount(), patternCount);
+
+            Slice data = randomSlice(random, random.nextInt(500), 3);
+
+            Set<List<Integer>> expected = new HashSet<>();
+            for (int pattern = 0; pattern < patterns.size(); pattern++) {
+                for (int index = data.indexOfBruteForce(patterns.get(pattern), 0); index >= 0; index = data.indexOfBruteForce(patterns.get(pattern), index + 1)) {
+                    expected.add(match(pattern, index));
+                }
+            }
+
+            List<List<Integer>> actual = findAll(searcher, data);
+            assertEquals(actual.size(), expected.size());
+            assertEquals(new HashSet<>(actual), expected);
+            assertEquals(searcher.containsAny(data), !expected.isEmpty());
+        }
+    }
+
+    @Test
+    public void testHighBytes()
+    {
+        Slice pattern = Slices.wrappedBuffer(new byte[] {(byte) 0xFF, (byte) 0x80});
+        MultiSliceSearcher searcher = new MultiSliceSearcher(pattern, utf8Slice("é"));
+        Slice data = Slices.allocateDirect(10);
+        data.setBytes(3, pattern);
+        data.setBytes(7, utf8Slice("é"));
+        assertEquals(findAll(searcher, data), ImmutableList.of(match(0, 3), match(1, 7)));
+    }
+
+    @Test
+    public void testRange()
+    {
+        MultiSliceSearcher searcher = new MultiSliceSearcher(utf8Slice("ab"));
+        Slice data = utf8Slice("abxabxab");
+        List<List<Integer>> matches = new ArrayList<>();
+        searcher.find(data, 1, 6, (patternId, offset) -> matches.add(match(patternId, offset)));
+        assertEquals(matches, ImmutableList.of(match(0, 3)));
+    }
+
+    @Test
+    public void testStopEarly()
+    {
+        MultiSliceSearcher searcher = new MultiSliceSearcher(utf8Slice("a"), utf8Slice("b"));
+        List<List<Integer>> matches = new ArrayList<>();
+        searcher.find(utf8Slice("xaxbxa"), (patternId, offset) -> {
+            matches.add(match(patternId, offset));
+            return patternId != 1;
+        });
+        assertEquals(matches, ImmutableList.of(match(0, 1), match(1, 3)));
+    }
+
+    @Test
+    public void testContainsAny()
+    {
+        MultiSliceSearcher searcher = new MultiSliceSearcher(ImmutableList.of(utf8Slice("error"), utf8Slice("fatal")));
+        assertTrue(searcher.containsAny(utf8Slice("a fatal problem")));
+        assertTrue(searcher.containsAny(utf8Slice("error")));
+        assertFalse(searcher.containsAny(utf8Slice("erro rs are fata l")));
+        assertFalse(searcher.containsAny(EMPTY_SLICE));
+    }
+
+    @Test
+    public void testRetainedSize()
+    {
+        MultiSliceSearcher small = new MultiSliceSearcher(utf8Slice("a"));
+        MultiSliceSearcher large = new MultiSliceSearcher(utf8Slice("a-much-longer-pattern"), utf8Slice("and-another-one"));
+        assertTrue(small.getRetainedSize() > 0);
+        assertTrue(large.getRetainedSize() > small.getRetainedSize());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyPattern()
+    {
+        new MultiSliceSearcher(utf8Slice("a"), EMPTY_SLICE);
+    }
+
+    private static List<List<Integer>> findAll(MultiSliceSearcher searcher, Slice data)
+    {
+        List<List<Integer>> matches = new ArrayList<>();
+        searcher.find(data, (patternId, offset) -> matches.add(match(patternId, offset)));
+        return matches;
+    }
+
+    private static List<Integer> match(int patternId, int offset)
+    {
+        return ImmutableList.of(patternId, offset);
+    }
+
+    private static Slice randomSlice(Random random, int length, int alphabet)
+    {
+        Slice slice = Slices.allocate(length);
+        for (int i = 0; i < length; i++) {
+            slice.setByte(i, 'a' + random.nextInt(alphabet));
+        }
+        return slice;
+    }
+}
@@ -182,6 +182,77 @@ public class TestMurmur3Hash128
         assertEquals(actual, expected);
     }
 
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testIncrementalHashDestinationTooSmall()
+    {
+        new Murmur3Hash128().hash(Slices.allocate(20), 5);
+    }
+
+    @Test
+    public void testIncremental()
+    {
+        byte[] data = randomBytes(300);
+        Slice slice = Slices.wrappedBuffer(data);
+        Murmur3Hash128 hasher = new Murmur3Hash128(42);
+        Slice destination = Slices.allocate(20);
+        for (int length = 0; length < data.length; length++) {
+            Slice expected = Murmur3Hash128.hash(42, slice, 0, length);
+            for (int chunkSize : new int[] {1, 5, 15, 16, 17, 100}) {
+                hasher.reset();
+                for (int i = 0; i < length; i += chunkSize) {
+                    hasher.update(slice, i, Math.min(chunkSize, length - i));
+                }
+                assertEquals(hasher.hash(), expected);
+                hasher.hash(destination, 3);
+                assertEquals(destination.slice(3, 16), expected);
+                assertEquals(hasher.hash64(), Murmur3Hash128.hash64(42, slice, 0, length));
+            }
+            assertEquals(new Murmur3Hash128().update(data, 0, length).hash(), Murmur3Hash128.hash(slice, 0, length));
+            assertEquals(new Murmur3Hash128().update(slice.slice(0, length)).hash64(), Murmur3Hash128.hash64(slice, 0, length));
+        }
+    }
+
+    @Test
+    public void testBatch()
+    {
+        int count = 40;
+        int[] offsets = new int[count + 1];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = i;
+            offsets[i + 1] = offsets[i] + i;
+        }
+        Slice data = Slices.wrappedBuffer(randomBytes(offsets[count]));
+
+        long[] hashes = new long[count];
+        Murmur3Hash128.hash64Batch(data, offsets, lengths, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], Murmur3Hash128.hash64(data, offsets[i], lengths[i]));
+        }
+
+        Murmur3Hash128.hash64Batch(42, data, offsets, lengths, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], Murmur3Hash128.hash64(42, data, offsets[i], lengths[i]));
+        }
+
+        Murmur3Hash128.hash64Batch(data, offsets, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], Murmur3Hash128.hash64(data, offsets[i], lengths[i]));
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testBatchOutOfBounds()
+    {
+        Murmur3Hash128.hash64Batch(Slices.utf8Slice("abc"), new int[] {0, 2}, new int[] {1, 2}, 2, new long[2]);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfBounds()
+    {
+        Murmur3Hash128.hash64(Slices.utf8Slice("abc"), 2, 2);
+    }
+
     private static byte[] randomBytes(int length)
     {
         byte[] result = new byte[length];
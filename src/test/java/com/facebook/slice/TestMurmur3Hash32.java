@@ -115,6 +115,47 @@ public class TestMurmur3Hash32
         assertEquals(actual, expected);
     }
 
+    @Test
+    public void testBatch()
+    {
+        int count = 40;
+        int[] offsets = new int[count + 1];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = i;
+            offsets[i + 1] = offsets[i] + i;
+        }
+        Slice data = Slices.wrappedBuffer(randomBytes(offsets[count]));
+
+        int[] hashes = new int[count];
+        Murmur3Hash32.hashBatch(data, offsets, lengths, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], Murmur3Hash32.hash(data, offsets[i], lengths[i]));
+        }
+
+        Murmur3Hash32.hashBatch(42, data, offsets, lengths, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], Murmur3Hash32.hash(42, data, offsets[i], lengths[i]));
+        }
+
+        Murmur3Hash32.hashBatch(data, offsets, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], Murmur3Hash32.hash(data, offsets[i], lengths[i]));
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testBatchOutOfBounds()
+    {
+        Murmur3Hash32.hashBatch(Slices.utf8Slice("abc"), new int[] {0, 2}, new int[] {1, 2}, 2, new int[2]);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfBounds()
+    {
+        Murmur3Hash32.hash(Slices.utf8Slice("abc"), 2, 2);
+    }
+
     private static byte[] randomBytes(int length)
     {
         byte[] result = new byte[length];
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestOffHeapMemory
+{
+    @Test
+    public void testAllocate()
+    {
+        long allocatedBytes = OffHeapMemory.getAllocatedBytes();
+        long allocationCount = OffHeapMemory.getAllocationCount();
+
+        try (OffHeapMemory memory = OffHeapMemory.allocate(1000)) {
+            assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes + 1000);
+            assertEquals(OffHeapMemory.getAllocationCount(), allocationCount + 1);
+
+            Slice slice = memory.getSlice();
+            assertEquals(slice.length(), 1000);
+            assertEquals(memory.size(), 1000);
+            assertFalse(slice.hasByteArray());
+            assertNull(slice.getBase());
+            for (int i = 0; i < slice.length(); i++) {
+                assertEquals(slice.getByte(i), 0);
+            }
+
+            slice.setLong(992, 0x0123456789ABCDEFL);
+            assertEquals(slice.getLong(992), 0x0123456789ABCDEFL);
+            assertEquals(slice.slice(992, 8).getLong(0), 0x0123456789ABCDEFL);
+            assertSame(memory.getSlice(), slice);
+        }
+        assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes);
+        assertEquals(OffHeapMemory.getAllocationCount(), allocationCount);
+    }
+
+    @Test
+    public void testAllocateUninitialized()
+    {
+        try (OffHeapMemory memory = OffHeapMemory.allocateUninitialized(64)) {
+            Slice slice = memory.getSlice();
+            slice.fill((byte) 0x5A);
+            assertEquals(slice.getByte(63), 0x5A);
+        }
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        OffHeapMemory memory = OffHeapMemory.allocate(0);
+        assertSame(memory.getSlice(), Slices.EMPTY_SLICE);
+        memory.close();
+        assertTrue(memory.isClosed());
+    }
+
+    @Test
+    public void testCloseTwice()
+    {
+        long allocatedBytes = OffHeapMemory.getAllocatedBytes();
+        OffHeapMemory memory = OffHeapMemory.allocate(100);
+        memory.close();
+        memory.close();
+        assertTrue(memory.isClosed());
+        assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testGetSliceAfterClose()
+    {
+        OffHeapMemory memory = OffHeapMemory.allocate(100);
+        memory.close();
+        memory.getSlice();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeSize()
+    {
+        OffHeapMemory.allocate(-1);
+    }
+
+    @Test
+    public void testLeakDetection()
+            throws Exception
+    {
+        List<Throwable> leaks = new CopyOnWriteArrayList<>();
+        OffHeapMemory.setLeakListener(leaks::add);
+        try {
+            long leakCount = OffHeapMemory.getLeakCount();
+            long allocatedBytes = OffHeapMemory.getAllocatedBytes();
+
+            // closed memory is never reported
+            OffHeapMemory.allocate(10).close();
+            allocateAndLeak();
+
+            for (int i = 0; i < 100 && leaks.isEmpty(); i++) {
+                System.gc();
+                Thread.sleep(10);
+                OffHeapMemory.detectLeaks();
+            }
+            assertEquals(leaks.size(), 1);
+            assertTrue(leaks.get(0).getMessage().contains("123 bytes"));
+            assertTrue(stackTraceContains(leaks.get(0), "allocateAndLeak"));
+            assertEquals(OffHeapMemory.getLeakCount(), leakCount + 1);
+            // the leaked memory is freed
+            assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes);
+        }
+        finally {
+            OffHeapMemory.setLeakListener(null);
+        }
+    }
+
+    private static void allocateAndLeak()
+    {
+        OffHeapMemory.allocate(123).getSlice().setInt(0, 42);
+    }
+
+    private static boolean stackTraceContains(Throwable throwable, String methodName)
+    {
+        for (StackTraceElement element : throwable.getStackTrace()) {
+            if (element.getMethodName().equals(methodName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
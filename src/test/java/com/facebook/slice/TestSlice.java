@@ -805,6 +805,157 @@ public class TestSlice
         assertIndexOf(utf8Slice("test"), utf8Slice("no"), -1, -1);
     }
 
+    @Test
+    public void testAbbreviatedKey()
+    {
+        Slice slice = allocate(12);
+        for (int i = 0; i < slice.length(); i++) {
+            slice.setByte(i, 0xF1 + i);
+        }
+
+        assertEquals(slice.getAbbreviatedKey(0, 0), 0);
+        assertEquals(slice.getAbbreviatedKey(0, 1), 0xF100_0000_0000_0000L);
+        assertEquals(slice.getAbbreviatedKey(0, 3), 0xF1F2_F300_0000_0000L);
+        assertEquals(slice.getAbbreviatedKey(0, 8), 0xF1F2_F3F4_F5F6_F7F8L);
+        assertEquals(slice.getAbbreviatedKey(0, 12), 0xF1F2_F3F4_F5F6_F7F8L);
+        assertEquals(slice.getAbbreviatedKey(4, 8), 0xF5F6_F7F8_F9FA_FBFCL);
+        assertEquals(slice.getAbbreviatedKey(9, 3), 0xFAFB_FC00_0000_0000L);
+        assertEquals(slice.getAbbreviatedKey(12, 0), 0);
+
+        // abbreviated keys are ordered like the slices unless they are equal
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            Slice left = randomSlice(random, random.nextInt(12));
+            Slice right = randomSlice(random, random.nextInt(12));
+            int expected = Integer.signum(left.compareTo(right));
+            int actual = Long.signum(Long.compareUnsigned(left.getAbbreviatedKey(0, left.length()), right.getAbbreviatedKey(0, right.length())));
+            if (actual != 0) {
+                assertEquals(actual, expected);
+            }
+            else {
+                assertTrue(left.commonPrefixLength(right) >= Math.min(SIZE_OF_LONG, Math.min(left.length(), right.length())));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testAbbreviatedKeyOutOfBounds()
+    {
+        allocate(8).getAbbreviatedKey(4, 5);
+    }
+
+    @Test
+    public void testCommonPrefixLength()
+    {
+        for (int size = 0; size < 40; size++) {
+            Slice slice = allocate(size);
+            slice.fill((byte) 0xA5);
+            Slice other = allocate(size + 3);
+            other.fill((byte) 0xA5);
+
+            assertEquals(slice.commonPrefixLength(slice), size);
+            assertEquals(slice.commonPrefixLength(other), size);
+            assertEquals(other.commonPrefixLength(slice), size);
+            assertEquals(slice.commonPrefixLength(EMPTY_SLICE), 0);
+
+            for (int i = 0; i < size; i++) {
+                other.setByte(i, 0x5A);
+                assertEquals(slice.commonPrefixLength(other), i);
+                assertEquals(other.commonPrefixLength(slice), i);
+                assertEquals(slice.commonPrefixLength(i + 1, size - i - 1, other, i + 1, size - i - 1), size - i - 1);
+                other.setByte(i, 0xA5);
+            }
+        }
+    }
+
+    private Slice randomSlice(Random random, int length)
+    {
+        Slice slice = allocate(length);
+        for (int i = 0; i < length; i++) {
+            // small alphabet to produce shared prefixes
+            slice.setByte(i, random.nextInt(3) * 0x7F);
+        }
+        return slice;
+    }
+
+    @Test
+    public void testIndexOfRandom()
+    {
+        // small alphabet to produce many partial matches
+        Random random = new Random(42);
+        for (int size = 0; size < 100; size++) {
+            Slice data = allocate(size);
+            for (int i = 0; i < size; i++) {
+                data.setByte(i, 'a' + random.nextInt(3));
+            }
+            for (int patternLength = 1; patternLength < 12; patternLength++) {
+                Slice pattern = allocate(patternLength);
+                for (int i = 0; i < patternLength; i++) {
+                    pattern.setByte(i, 'a' + random.nextInt(3));
+                }
+                assertIndexOf(data, pattern);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexOfByte()
+    {
+        for (int size = 0; size < 40; size++) {
+            Slice slice = allocate(size);
+            slice.fill((byte) 0xA5);
+            assertEquals(slice.indexOfByte(0x42), -1);
+            assertEquals(slice.indexOfByte(0), -1);
+
+            for (int position = 0; position < size; position++) {
+                for (int value : new int[] {0, 0x42, 0x80, 0xFF}) {
+                    slice.setByte(position, value);
+                    assertEquals(slice.indexOfByte(value), position);
+                    assertEquals(slice.indexOfByte((byte) value), position);
+                    assertEquals(slice.indexOfByte(value, 0, size), position);
+                    assertEquals(slice.indexOfByte(value, position, size), position);
+                    assertEquals(slice.indexOfByte(value, 0, position + 1), position);
+                    assertEquals(slice.indexOfByte(value, 0, position), -1);
+                    assertEquals(slice.indexOfByte(value, position + 1, size), -1);
+                }
+                slice.setByte(position, 0xA5);
+            }
+        }
+
+        // first occurrence wins when the byte appears more than once within a word
+        Slice slice = utf8Slice("abcabcabcabcabcabc");
+        assertEquals(slice.indexOfByte('c'), 2);
+        assertEquals(slice.indexOfByte('c', 3, slice.length()), 5);
+        assertEquals(slice.indexOfByte('c', 9, 11), -1);
+        assertEquals(slice.indexOfByte('c', 9, 12), 11);
+    }
+
+    @Test
+    public void testIndexOfByteEmptyRange()
+    {
+        Slice slice = allocate(10);
+        assertEquals(slice.indexOfByte(0, 10, 10), -1);
+        assertEquals(slice.indexOfByte(0, 3, 3), -1);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testIndexOfByteNegativeFromIndex()
+    {
+        allocate(10).indexOfByte(0, -1, 5);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testIndexOfByteToIndexPastEnd()
+    {
+        allocate(10).indexOfByte(0, 0, 11);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testIndexOfByteInvertedRange()
+    {
+        allocate(10).indexOfByte(0, 6, 5);
+    }
+
     public static void assertIndexOf(Slice data, Slice pattern, int offset, int expected)
     {
         assertEquals(data.indexOf(pattern, offset), expected);
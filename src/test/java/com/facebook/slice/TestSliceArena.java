@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.testng.annotations.Test;
+
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceArena
+{
+    @Test
+    public void testAllocate()
+    {
+        for (SliceArena arena : new SliceArena[] {SliceArena.heap(1024), SliceArena.offHeap(1024)}) {
+            try (SliceArena closing = arena) {
+                Slice[] slices = new Slice[100];
+                for (int i = 0; i < slices.length; i++) {
+                    slices[i] = arena.allocate(i % 50 + 1);
+                    slices[i].fill((byte) i);
+                    assertEquals(slices[i].hasByteArray(), !arena.isOffHeap());
+                }
+                // allocations do not overlap
+                for (int i = 0; i < slices.length; i++) {
+                    assertEquals(slices[i].length(), i % 50 + 1);
+                    for (int index = 0; index < slices[i].length(); index++) {
+                        assertEquals(slices[i].getByte(index), (byte) i);
+                    }
+                }
+                assertEquals(arena.getAllocatedBytes(), 2 * (50 * 51 / 2));
+                assertSame(arena.allocate(0), Slices.EMPTY_SLICE);
+            }
+        }
+    }
+
+    @Test
+    public void testAllocationsShareBlocks()
+    {
+        SliceArena arena = SliceArena.heap(1024);
+        Slice first = arena.allocate(10);
+        Slice second = arena.allocate(20);
+        assertSame(first.getBase(), second.getBase());
+        assertEquals(second.getAddress(), first.getAddress() + 10);
+
+        // does not fit the remainder of the first block
+        arena.allocate(250);
+        arena.allocate(250);
+        arena.allocate(250);
+        Slice next = arena.allocate(250);
+        assertFalse(next.getBase() == first.getBase());
+    }
+
+    @Test
+    public void testLargeAllocation()
+    {
+        SliceArena arena = SliceArena.heap(1024);
+        Slice small = arena.allocate(10);
+        Slice large = arena.allocate(257);
+        assertEquals(large.length(), 257);
+        assertTrue(large.isCompact());
+        // the current block is still used
+        assertEquals(arena.allocate(10).getAddress(), small.getAddress() + 10);
+    }
+
+    @Test
+    public void testReset()
+    {
+        SliceArena arena = SliceArena.heap(1024);
+        Slice first = arena.allocate(100);
+        arena.allocate(1000);
+        long retainedSize = arena.getRetainedSize();
+
+        arena.reset();
+        assertEquals(arena.getAllocatedBytes(), 0);
+        assertTrue(arena.getRetainedSize() < retainedSize - 1000);
+
+        // the block is reused
+        Slice reused = arena.allocate(100);
+        assertSame(reused.getBase(), first.getBase());
+        assertEquals(reused.getAddress(), first.getAddress());
+    }
+
+    @Test
+    public void testOffHeapClose()
+    {
+        long allocatedBytes = OffHeapMemory.getAllocatedBytes();
+        SliceArena arena = SliceArena.offHeap(4096);
+        arena.allocate(100);
+        arena.allocate(2000);
+        assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes + 4096 + 2000);
+
+        arena.reset();
+        assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes + 4096);
+
+        arena.close();
+        arena.close();
+        assertEquals(OffHeapMemory.getAllocatedBytes(), allocatedBytes);
+    }
+
+    @Test
+    public void testCopy()
+    {
+        SliceArena arena = SliceArena.heap();
+        Slice source = utf8Slice("hello arena");
+        assertEquals(arena.copy(source), source);
+        assertEquals(arena.copy(source, 6, 5), utf8Slice("arena"));
+    }
+
+    @Test
+    public void testRetainedSize()
+            throws Exception
+    {
+        long blockSize = ClassLayout.parseClass(Class.forName(SliceArena.class.getName() + "$Block")).instanceSize() +
+                ClassLayout.parseClass(Slice.class).instanceSize();
+
+        try (SliceArena arena = SliceArena.heap(1024)) {
+            long emptySize = arena.getRetainedSize();
+            arena.allocate(10);
+            arena.allocate(10);
+            assertEquals(arena.getRetainedSize(), emptySize + blockSize + SizeOf.sizeOfByteArray(1024));
+            // a dedicated block
+            arena.allocate(500);
+            assertEquals(arena.getRetainedSize(), emptySize + 2 * blockSize + SizeOf.sizeOfByteArray(1024) + SizeOf.sizeOfByteArray(500));
+        }
+
+        try (SliceArena arena = SliceArena.offHeap(1024)) {
+            long emptySize = arena.getRetainedSize();
+            arena.allocate(10);
+            arena.allocate(10);
+            assertEquals(arena.getRetainedSize(), emptySize + blockSize + 1024);
+            arena.allocate(500);
+            assertEquals(arena.getRetainedSize(), emptySize + 2 * blockSize + 1024 + 500);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAllocateAfterClose()
+    {
+        SliceArena arena = SliceArena.heap();
+        arena.close();
+        arena.allocate(1);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testCopyOutOfBounds()
+    {
+        SliceArena.heap().copy(utf8Slice("abc"), 2, 2);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.min;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+public class TestSliceChannels
+{
+    @Test
+    public void testWriteToFile()
+            throws Exception
+    {
+        File file = File.createTempFile("slice-channels", ".bin");
+        try (OffHeapMemory memory = OffHeapMemory.allocate(100_000)) {
+            Random random = new Random(1);
+            Slice heap = randomSlice(random, Slices.allocate(70_000));
+            Slice direct = randomSlice(random, Slices.allocateDirect(5_000));
+            Slice offHeap = randomSlice(random, memory.getSlice());
+            List<Slice> slices = Arrays.asList(heap, Slices.EMPTY_SLICE, direct.slice(1, 4_000), offHeap, heap.slice(10, 20), direct);
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), WRITE)) {
+                assertEquals(SliceChannels.write(channel, slices), 70_000 + 4_000 + 100_000 + 20 + 5_000);
+                SliceChannels.write(channel, offHeap, 5, 10);
+                SliceChannels.write(channel, heap);
+            }
+            DynamicSliceOutput expected = new DynamicSliceOutput(16);
+            for (Slice slice : slices) {
+                expected.writeBytes(slice);
+            }
+            expected.writeBytes(offHeap, 5, 10);
+            expected.writeBytes(heap);
+            assertEquals(Slices.wrappedBuffer(Files.readAllBytes(file.toPath())), expected.slice());
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testPartialWrites()
+            throws Exception
+    {
+        Random random = new Random(2);
+        List<Slice> slices = new ArrayList<>();
+        DynamicSliceOutput expected = new DynamicSliceOutput(16);
+        for (int i = 0; i < 50; i++) {
+            Slice slice = randomSlice(random, (i % 2 == 0) ? Slices.allocate(random.nextInt(100)) : Slices.allocateDirect(random.nextInt(100) + 1));
+            slices.add(slice);
+            expected.writeBytes(slice);
+        }
+
+        LimitingChannel channel = new LimitingChannel(7);
+        assertEquals(SliceChannels.write(channel, slices), expected.size());
+        assertEquals(Slices.wrappedBuffer(channel.out.toByteArray()), expected.slice());
+    }
+
+    @Test
+    public void testChunkedSliceOutput()
+            throws Exception
+    {
+        ChunkedSliceOutput output = new ChunkedSliceOutput(100, SlicePool.direct(1 << 20));
+        for (int i = 0; i < 1000; i++) {
+            output.writeInt(i);
+        }
+        LimitingChannel channel = new LimitingChannel(1000);
+        output.writeTo(channel);
+        assertEquals(Slices.wrappedBuffer(channel.out.toByteArray()), output.slice());
+    }
+
+    @Test
+    public void testPositionalRead()
+            throws Exception
+    {
+        File file = File.createTempFile("slice-channels", ".bin");
+        try (OffHeapMemory memory = OffHeapMemory.allocate(100_000)) {
+            Slice data = randomSlice(new Random(3), Slices.allocate(200_000));
+            Files.write(file.toPath(), data.getBytes());
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                for (Slice destination : Arrays.asList(Slices.allocate(1000), Slices.allocateDirect(1000), memory.getSlice())) {
+                    SliceChannels.readFully(channel, 777, destination);
+                    assertEquals(destination, data.slice(777, destination.length()));
+
+                    SliceChannels.readFully(channel, 5, destination, 10, 20);
+                    assertEquals(destination.slice(10, 20), data.slice(5, 20));
+                }
+                assertEquals(channel.position(), 0);
+
+                Slice heap = Slices.allocate(50_000);
+                Slice direct = Slices.allocateDirect(30_000);
+                Slice offHeap = memory.getSlice();
+                assertEquals(SliceChannels.readFully(channel, 100, Arrays.asList(heap, Slices.EMPTY_SLICE, direct, offHeap)), 180_000);
+                assertEquals(heap, data.slice(100, 50_000));
+                assertEquals(direct, data.slice(50_100, 30_000));
+                assertEquals(offHeap, data.slice(80_100, 100_000));
+                assertEquals(channel.position(), 0);
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testScatteringRead()
+            throws Exception
+    {
+        File file = File.createTempFile("slice-channels", ".bin");
+        try (OffHeapMemory memory = OffHeapMemory.allocate(70_000)) {
+            Slice data = randomSlice(new Random(4), Slices.allocate(100_100));
+            Files.write(file.toPath(), data.getBytes());
+
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                Slice small = Slices.allocate(100);
+                SliceChannels.readFully(channel, small);
+                assertEquals(small, data.slice(0, 100));
+
+                List<Slice> destinations = Arrays.asList(Slices.allocateDirect(10_000), Slices.allocate(20_000), memory.getSlice());
+                assertEquals(SliceChannels.readFully(channel, destinations), 100_000);
+                assertEquals(destinations.get(0), data.slice(100, 10_000));
+                assertEquals(destinations.get(1), data.slice(10_100, 20_000));
+                assertEquals(destinations.get(2), data.slice(30_100, 70_000));
+                assertEquals(channel.position(), 100_100);
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testReadPastEnd()
+            throws Exception
+    {
+        File file = File.createTempFile("slice-channels", ".bin");
+        try {
+            Files.write(file.toPath(), new byte[100]);
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                assertThrows(EOFException.class, () -> SliceChannels.readFully(channel, 50, Slices.allocate(51)));
+                assertThrows(EOFException.class, () -> SliceChannels.readFully(channel, 0, Arrays.asList(Slices.allocate(60), Slices.allocateDirect(41))));
+                assertThrows(EOFException.class, () -> SliceChannels.readFully(channel, Arrays.asList(Slices.allocate(60), Slices.allocate(41))));
+            }
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testWriteOutOfBounds()
+            throws Exception
+    {
+        SliceChannels.write(new LimitingChannel(10), Slices.allocate(10), 5, 6);
+    }
+
+    private static Slice randomSlice(Random random, Slice slice)
+    {
+        for (int i = 0; i < slice.length(); i++) {
+            slice.setByte(i, random.nextInt());
+        }
+        return slice;
+    }
+
+    /**
+     * Writes at most a few bytes per call, as a socket with a full send buffer might.
+     */
+    private static class LimitingChannel
+            implements GatheringByteChannel
+    {
+        private final int maxBytesPerWrite;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        public LimitingChannel(int maxBytesPerWrite)
+        {
+            this.maxBytesPerWrite = maxBytesPerWrite;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length)
+        {
+            long written = 0;
+            for (int i = offset; i < offset + length && written < maxBytesPerWrite; i++) {
+                written += write(sources[i], (int) (maxBytesPerWrite - written));
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources)
+        {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source)
+        {
+            return write(source, maxBytesPerWrite);
+        }
+
+        private int write(ByteBuffer source, int limit)
+        {
+            int size = min(source.remaining(), limit);
+            for (int i = 0; i < size; i++) {
+                out.write(source.get());
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+        }
+    }
+}
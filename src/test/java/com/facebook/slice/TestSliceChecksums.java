@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestSliceChecksums
+{
+    private final byte[] data;
+
+    public TestSliceChecksums()
+    {
+        data = new byte[10_000];
+        new Random(11).nextBytes(data);
+    }
+
+    @Test
+    public void testHeapAndDirect()
+    {
+        Slice heap = Slices.wrappedBuffer(data, 3, data.length - 3);
+        Slice direct = Slices.allocateDirect(heap.length());
+        direct.setBytes(0, heap);
+
+        for (Slice slice : new Slice[] {heap, direct}) {
+            assertEquals(SliceChecksums.crc32(slice, 10, 5000), expected(CRC32::new, 13, 5000));
+            assertEquals(SliceChecksums.adler32(slice, 10, 5000), expected(Adler32::new, 13, 5000));
+            assertEquals(SliceChecksums.crc32c(slice, 10, 5000), expected(Crc32c::new, 13, 5000));
+            assertEquals(SliceChecksums.crc32(slice), expected(CRC32::new, 3, data.length - 3));
+        }
+    }
+
+    @Test
+    public void testOtherChecksum()
+    {
+        // a checksum without a ByteBuffer method is fed through a copy
+        Slice direct = Slices.allocateDirect(data.length);
+        direct.setBytes(0, data);
+        Checksum checksum = new ForwardingChecksum(new CRC32());
+        SliceChecksums.update(checksum, direct);
+        assertEquals(checksum.getValue(), expected(CRC32::new, 0, data.length));
+
+        checksum = new ForwardingChecksum(new Adler32());
+        SliceChecksums.update(checksum, Slices.wrappedBuffer(data), 100, 200);
+        assertEquals(checksum.getValue(), expected(Adler32::new, 100, 200));
+    }
+
+    @Test
+    public void testHasherChecksums()
+    {
+        Slice direct = Slices.allocateDirect(data.length);
+        direct.setBytes(0, data);
+        for (Slice slice : new Slice[] {Slices.wrappedBuffer(data), direct}) {
+            Checksum checksum = new XxHash64().asChecksum();
+            SliceChecksums.update(checksum, slice, 10, 5000);
+            assertEquals(checksum.getValue(), XxHash64.hash(slice, 10, 5000));
+
+            checksum = new XxHash3().asChecksum();
+            SliceChecksums.update(checksum, slice, 10, 5000);
+            checksum.update(data[0]);
+            assertEquals(checksum.getValue(), new XxHash3().update(slice, 10, 5000).update(data, 0, 1).hash());
+        }
+    }
+
+    @Test
+    public void testSliceInput()
+    {
+        Slice slice = Slices.wrappedBuffer(data);
+        long expected = expected(CRC32::new, 0, data.length);
+
+        for (SliceInput input : new SliceInput[] {
+                slice.getInput(),
+                new InputStreamSliceInput(new ByteArrayInputStream(data), 1024),
+                new ChunkedSliceInput(new TestChunkedSliceInput.SliceSliceLoader(slice), 129)}) {
+            Checksum checksum = new CRC32();
+            SliceChecksums.update(checksum, input, 77);
+            SliceChecksums.update(checksum, input);
+            assertEquals(checksum.getValue(), expected);
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testSliceInputTooShort()
+    {
+        SliceChecksums.update(new CRC32(), Slices.utf8Slice("abc").getInput(), 4);
+    }
+
+    @Test
+    public void testOutputStreamSliceOutput()
+            throws IOException
+    {
+        Checksum checksum = SliceChecksums.newCrc32c();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStreamSliceOutput output = new OutputStreamSliceOutput(new CheckedOutputStream(bytes, checksum))) {
+            output.writeInt(42);
+            output.writeBytes(data, 0, 5000);
+            output.writeBytes(Slices.wrappedBuffer(data), 5000, 10);
+            output.writeLong(7);
+        }
+        assertEquals(checksum.getValue(), SliceChecksums.crc32c(Slices.wrappedBuffer(bytes.toByteArray())));
+    }
+
+    private long expected(Supplier<Checksum> supplier, int offset, int length)
+    {
+        Checksum checksum = supplier.get();
+        checksum.update(data, offset, length);
+        return checksum.getValue();
+    }
+
+    private static class ForwardingChecksum
+            implements Checksum
+    {
+        private final Checksum delegate;
+
+        public ForwardingChecksum(Checksum delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void update(int b)
+        {
+            delegate.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len)
+        {
+            delegate.update(b, off, len);
+        }
+
+        @Override
+        public long getValue()
+        {
+            return delegate.getValue();
+        }
+
+        @Override
+        public void reset()
+        {
+            delegate.reset();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.facebook.slice.Slices.EMPTY_SLICE;
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceHashMap
+{
+    @Test
+    public void testPutKey()
+    {
+        SliceHashMap map = new SliceHashMap(0);
+        assertEquals(map.putKey(utf8Slice("apple")), 0);
+        assertEquals(map.putKey(utf8Slice("banana")), 1);
+        assertEquals(map.putKey(EMPTY_SLICE), 2);
+        assertEquals(map.putKey(utf8Slice("apple")), 0);
+        assertEquals(map.size(), 3);
+        assertEquals(map.getKeyBytes(), 11);
+
+        assertEquals(map.getKeyId(utf8Slice("banana")), 1);
+        assertEquals(map.getKeyId(EMPTY_SLICE), 2);
+        assertEquals(map.getKeyId(utf8Slice("cherry")), SliceHashMap.NOT_FOUND);
+        assertTrue(map.containsKey(utf8Slice("apple")));
+        assertFalse(map.containsKey(utf8Slice("appl")));
+
+        assertEquals(map.getKey(0), utf8Slice("apple"));
+        assertEquals(map.getKey(2), EMPTY_SLICE);
+        assertEquals(map.getKeyHash(1), XxHash64.hash(utf8Slice("banana")));
+    }
+
+    @Test
+    public void testKeyRange()
+    {
+        SliceHashMap map = new SliceHashMap();
+        Slice data = utf8Slice("key1,key2,key1");
+        assertEquals(map.putKey(data, 0, 4), 0);
+        assertEquals(map.putKey(data, 5, 4), 1);
+        assertEquals(map.putKey(data, 10, 4), 0);
+        assertEquals(map.getKeyId(utf8Slice("key2")), 1);
+        assertEquals(map.getKeyId(data, 1, 3), SliceHashMap.NOT_FOUND);
+    }
+
+    @Test
+    public void testRandom()
+    {
+        Random random = new Random(42);
+        SliceHashMap map = new SliceHashMap(0);
+        Map<Slice, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            Slice key = Slices.allocate(random.nextInt(12));
+            for (int index = 0; index < key.length(); index++) {
+                key.setByte(index, random.nextInt(4));
+            }
+            Integer id = expected.computeIfAbsent(key, ignored -> expected.size());
+            assertEquals(map.putKey(key), id.intValue());
+        }
+        assertEquals(map.size(), expected.size());
+        for (Map.Entry<Slice, Integer> entry : expected.entrySet()) {
+            assertEquals(map.getKeyId(entry.getKey()), entry.getValue().intValue());
+            assertEquals(map.getKey(entry.getValue()), entry.getKey());
+        }
+    }
+
+    @Test
+    public void testRetainedSize()
+    {
+        SliceHashMap map = new SliceHashMap();
+        long emptySize = map.getRetainedSize();
+        for (int i = 0; i < 1000; i++) {
+            map.putKey(utf8Slice("key-" + i));
+        }
+        assertTrue(map.getRetainedSize() > emptySize + map.getKeyBytes());
+    }
+
+    @Test
+    public void testClear()
+    {
+        SliceHashMap map = new SliceHashMap();
+        map.putKey(utf8Slice("apple"));
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertEquals(map.getKeyBytes(), 0);
+        assertEquals(map.getKeyId(utf8Slice("apple")), SliceHashMap.NOT_FOUND);
+        assertEquals(map.putKey(utf8Slice("banana")), 0);
+        assertEquals(map.getKey(0), utf8Slice("banana"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidKeyId()
+    {
+        SliceHashMap map = new SliceHashMap();
+        map.putKey(utf8Slice("apple"));
+        map.getKey(1);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testKeyOutOfBounds()
+    {
+        new SliceHashMap().putKey(utf8Slice("apple"), 3, 3);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceInterner
+{
+    @Test
+    public void testIntern()
+    {
+        SliceInterner interner = new SliceInterner(1024 * 1024);
+        Slice input = utf8Slice("apple");
+        Slice canonical = interner.intern(input);
+        assertEquals(canonical, input);
+        assertNotSame(canonical, input);
+        assertTrue(canonical.isCompact());
+
+        assertSame(interner.intern(utf8Slice("apple")), canonical);
+        assertSame(interner.intern(utf8Slice("an apple a day"), 3, 5), canonical);
+        assertEquals(interner.intern(utf8Slice("an apple a day"), 3, 4), utf8Slice("appl"));
+
+        assertEquals(interner.size(), 2);
+        assertEquals(interner.getHitCount(), 2);
+        assertEquals(interner.getMissCount(), 2);
+        assertEquals(interner.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void testCompactCopyOfView()
+    {
+        SliceInterner interner = new SliceInterner(1024 * 1024);
+        Slice data = Slices.allocate(10_000);
+        data.setBytes(5000, utf8Slice("value"));
+        Slice view = data.slice(5000, 5);
+        assertFalse(view.isCompact());
+
+        Slice canonical = interner.intern(view);
+        assertTrue(canonical.isCompact());
+        assertTrue(canonical.getRetainedSize() < data.getRetainedSize());
+    }
+
+    @Test
+    public void testBudget()
+    {
+        long maxRetainedBytes = 64 * 1024;
+        SliceInterner interner = new SliceInterner(maxRetainedBytes);
+        for (int i = 0; i < 100_000; i++) {
+            Slice canonical = interner.intern(utf8Slice("value-" + i));
+            assertEquals(canonical, utf8Slice("value-" + i));
+            assertTrue(interner.getRetainedSize() <= maxRetainedBytes);
+        }
+        assertTrue(interner.getEvictionCount() > 0);
+        assertEquals(interner.getMissCount(), 100_000);
+
+        // a value larger than the budget is copied but not retained
+        Slice large = Slices.allocate((int) maxRetainedBytes);
+        Slice canonical = interner.intern(large);
+        assertEquals(canonical, large);
+        assertNotSame(interner.intern(large), canonical);
+        assertTrue(interner.getRetainedSize() <= maxRetainedBytes);
+    }
+
+    @Test
+    public void testBudgetWithAllSegmentsFull()
+    {
+        // four keys of the same size for each segment, selected by the high bits of the hash code
+        List<List<Slice>> keysBySegment = new ArrayList<>();
+        for (int segment = 0; segment < 16; segment++) {
+            keysBySegment.add(new ArrayList<>());
+        }
+        Random random = new Random(11);
+        while (keysBySegment.stream().anyMatch(keys -> keys.size() < 4)) {
+            Slice key = Slices.allocate(16);
+            for (int i = 0; i < key.length(); i++) {
+                key.setByte(i, random.nextInt(256));
+            }
+            List<Slice> keys = keysBySegment.get(key.hashCode() >>> 28);
+            if (keys.size() < 4) {
+                keys.add(key);
+            }
+        }
+
+        // measure the size of the segments holding all the keys
+        SliceInterner unbounded = new SliceInterner(1024 * 1024);
+        internAll(unbounded, keysBySegment);
+        long overhead = ClassLayout.parseClass(SliceInterner.class).instanceSize() + SizeOf.sizeOfObjectArray(16);
+        long segmentsSize = unbounded.getRetainedSize() - overhead;
+
+        // a budget that every segment fills exactly if the interner overhead is not deducted
+        SliceInterner interner = new SliceInterner(segmentsSize);
+        internAll(interner, keysBySegment);
+        assertTrue(interner.getRetainedSize() <= segmentsSize, "retained " + interner.getRetainedSize() + " with budget " + segmentsSize);
+        // every segment reached its share of the budget
+        assertEquals(interner.getEvictionCount(), 16);
+    }
+
+    private static void internAll(SliceInterner interner, List<List<Slice>> keysBySegment)
+    {
+        for (List<Slice> keys : keysBySegment) {
+            for (Slice key : keys) {
+                interner.intern(key);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBudgetTooSmall()
+    {
+        new SliceInterner(100);
+    }
+
+    @Test
+    public void testConcurrent()
+            throws Exception
+    {
+        SliceInterner interner = new SliceInterner(1024 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Slice[]>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    Slice[] values = new Slice[1000];
+                    for (int round = 0; round < 20; round++) {
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = interner.intern(utf8Slice("value-" + i));
+                        }
+                    }
+                    return values;
+                }));
+            }
+
+            Slice[] expected = futures.get(0).get();
+            for (Future<Slice[]> future : futures) {
+                Slice[] values = future.get();
+                for (int i = 0; i < values.length; i++) {
+                    assertSame(values[i], expected[i]);
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(interner.size(), 1000);
+        assertEquals(interner.getMissCount(), 1000);
+        assertEquals(interner.getHitCount(), 4 * 20 * 1000 - 1000);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceLongHashMap
+{
+    @Test
+    public void testPutAndGet()
+    {
+        SliceLongHashMap map = new SliceLongHashMap(0);
+        map.put(utf8Slice("apple"), Long.MAX_VALUE);
+        map.put(utf8Slice("banana"), -1);
+        map.put(utf8Slice("apple"), 42);
+
+        assertEquals(map.size(), 2);
+        assertEquals(map.get(utf8Slice("apple"), 0), 42);
+        assertEquals(map.get(utf8Slice("banana"), 0), -1);
+        assertEquals(map.get(utf8Slice("cherry"), 7), 7);
+        assertTrue(map.containsKey(utf8Slice("banana")));
+        assertFalse(map.containsKey(utf8Slice("cherry")));
+    }
+
+    @Test
+    public void testAddTo()
+    {
+        SliceLongHashMap map = new SliceLongHashMap();
+        Slice words = utf8Slice("a b a c a b");
+        for (int i = 0; i < words.length(); i += 2) {
+            map.addTo(words, i, 1, 10);
+        }
+        assertEquals(map.size(), 3);
+        assertEquals(map.get(utf8Slice("a"), 0), 30);
+        assertEquals(map.get(words, 2, 1, 0), 20);
+        assertEquals(map.addTo(utf8Slice("c"), -5), 5);
+    }
+
+    @Test
+    public void testIteration()
+    {
+        SliceLongHashMap map = new SliceLongHashMap(0);
+        for (int i = 0; i < 1000; i++) {
+            map.put(utf8Slice("key-" + i), i * 3L);
+        }
+        for (int id = 0; id < map.size(); id++) {
+            assertEquals(map.getKey(id), utf8Slice("key-" + id));
+            assertEquals(map.getValue(id), id * 3L);
+        }
+        assertTrue(map.getRetainedSize() > new SliceHashMap(1000).getRetainedSize());
+
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertEquals(map.addTo(utf8Slice("key-1"), 1), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidKeyId()
+    {
+        new SliceLongHashMap().getValue(0);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestSlicePool
+{
+    @Test
+    public void testSizeClasses()
+    {
+        SlicePool pool = SlicePool.heap(1 << 20);
+        assertEquals(pool.allocate(0).length(), 64);
+        assertEquals(pool.allocate(1).length(), 64);
+        assertEquals(pool.allocate(64).length(), 64);
+        assertEquals(pool.allocate(65).length(), 128);
+        assertEquals(pool.allocate(1000).length(), 1024);
+        assertEquals(pool.allocate(1 << 24).length(), 1 << 24);
+        // sizes above the largest size class are not rounded
+        assertEquals(pool.allocate((1 << 24) + 1).length(), (1 << 24) + 1);
+        assertEquals(pool.getMissCount(), 7);
+        assertEquals(pool.getHitCount(), 0);
+    }
+
+    @Test
+    public void testReuse()
+    {
+        for (SlicePool pool : new SlicePool[] {SlicePool.heap(1 << 20), SlicePool.direct(1 << 20)}) {
+            Slice slice = pool.allocate(100);
+            assertEquals(slice.hasByteArray(), !pool.isDirect());
+            pool.release(slice);
+            assertEquals(pool.getRetainedBytes(), 128);
+
+            assertSame(pool.allocate(120), slice);
+            assertEquals(pool.getRetainedBytes(), 0);
+            assertNotSame(pool.allocate(120), slice);
+            assertEquals(pool.getHitCount(), 1);
+            assertEquals(pool.getMissCount(), 2);
+            assertEquals(pool.getHitRate(), 1.0 / 3);
+        }
+    }
+
+    @Test
+    public void testSharedAcrossThreads()
+            throws Exception
+    {
+        SlicePool pool = SlicePool.heap(1 << 22);
+        // the first slices fill the local cache of this thread, the last goes to the shared free list
+        Slice[] slices = new Slice[5];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = pool.allocate(1024);
+        }
+        for (Slice slice : slices) {
+            pool.release(slice);
+        }
+        assertEquals(pool.getRetainedBytes(), 5 * 1024);
+
+        AtomicReference<Slice> allocated = new AtomicReference<>();
+        Thread thread = new Thread(() -> allocated.set(pool.allocate(1024)));
+        thread.start();
+        thread.join();
+        assertSame(allocated.get(), slices[4]);
+
+        // large slices are never cached per thread
+        Slice large = pool.allocate(1 << 20);
+        pool.release(large);
+        thread = new Thread(() -> allocated.set(pool.allocate(1 << 20)));
+        thread.start();
+        thread.join();
+        assertSame(allocated.get(), large);
+    }
+
+    @Test
+    public void testMaxRetainedBytes()
+    {
+        SlicePool pool = SlicePool.heap(4096);
+        Slice first = pool.allocate(4096);
+        Slice second = pool.allocate(4096);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(pool.getRetainedBytes(), 4096);
+        assertEquals(pool.getDiscardCount(), 1);
+        assertEquals(pool.getMaxRetainedBytes(), 4096);
+
+        SlicePool empty = SlicePool.heap(0);
+        empty.release(empty.allocate(10));
+        assertEquals(empty.getRetainedBytes(), 0);
+        assertEquals(empty.getDiscardCount(), 1);
+    }
+
+    @Test
+    public void testReclaimTerminatedThreadCache()
+            throws Exception
+    {
+        SlicePool pool = SlicePool.heap(4096);
+        Thread thread = new Thread(() -> pool.release(pool.allocate(4096)));
+        thread.start();
+        thread.join();
+        assertEquals(pool.getRetainedBytes(), 4096);
+
+        // the budget is used by the cache of the terminated thread, which is dropped to make room
+        Slice slice = pool.allocate(2048);
+        pool.release(slice);
+        assertEquals(pool.getRetainedBytes(), 2048);
+        assertEquals(pool.getDiscardCount(), 0);
+        assertSame(pool.allocate(2048), slice);
+    }
+
+    @Test
+    public void testReleaseForeignSlices()
+    {
+        SlicePool pool = SlicePool.heap(1 << 20);
+        pool.release(Slices.EMPTY_SLICE);
+        assertEquals(pool.getDiscardCount(), 0);
+
+        // not a size class, a view of a larger buffer, and a slice of the wrong kind
+        pool.release(Slices.allocate(100));
+        pool.release(Slices.allocate(256).slice(0, 128));
+        pool.release(Slices.allocate(256).slice(128, 128));
+        pool.release(Slices.allocateDirect(128));
+        pool.release(Slices.allocate((1 << 24) + 1));
+        assertEquals(pool.getDiscardCount(), 5);
+        assertEquals(pool.getRetainedBytes(), 0);
+
+        pool.release(Slices.allocate(128));
+        assertEquals(pool.getRetainedBytes(), 128);
+    }
+
+    @Test
+    public void testReleaseForeignDirectSlices()
+    {
+        SlicePool pool = SlicePool.direct(1 << 20);
+        int n = 1024;
+        // views of a larger buffer, which is still in use by its owner
+        pool.release(Slices.allocateDirect(2 * n).slice(n, n));
+        pool.release(Slices.allocateDirect(2 * n).slice(0, n));
+        pool.release(Slices.allocate(n));
+        assertEquals(pool.getDiscardCount(), 3);
+        assertEquals(pool.getRetainedBytes(), 0);
+
+        pool.release(Slices.allocateDirect(n));
+        assertEquals(pool.getRetainedBytes(), n);
+    }
+
+    @Test
+    public void testDynamicSliceOutput()
+    {
+        SlicePool pool = SlicePool.heap(1 << 20);
+        for (int round = 0; round < 3; round++) {
+            DynamicSliceOutput output = new DynamicSliceOutput(16, pool);
+            for (int i = 0; i < 1000; i++) {
+                output.writeInt(i);
+            }
+            output.writeZero(100);
+            Slice slice = output.slice();
+            assertEquals(slice.length(), 4100);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(slice.getInt(i * 4), i);
+            }
+            for (int i = 4000; i < 4100; i++) {
+                assertEquals(slice.getByte(i), 0);
+            }
+            output.release();
+            assertEquals(output.size(), 0);
+        }
+        // after the first round, every buffer comes from the pool
+        assertEquals(pool.getMissCount(), 8);
+        assertEquals(pool.getHitCount(), 16);
+        assertEquals(pool.getRetainedBytes(), 64 + 128 + 256 + 512 + 1024 + 2048 + 4096 + 8192);
+    }
+
+    @Test
+    public void testBasicSliceOutput()
+    {
+        SlicePool pool = SlicePool.direct(1 << 20);
+        BasicSliceOutput output = new BasicSliceOutput(pool, 1000);
+        assertEquals(output.writableBytes(), 1024);
+        output.writeLong(42);
+        assertEquals(output.slice().getLong(0), 42);
+        Slice buffer = output.getUnderlyingSlice();
+
+        output.release();
+        assertFalse(output.isWritable());
+        assertEquals(pool.getRetainedBytes(), 1024);
+
+        BasicSliceOutput reused = new BasicSliceOutput(pool, 1024);
+        assertSame(reused.getUnderlyingSlice(), buffer);
+        assertEquals(reused.size(), 0);
+        assertTrue(pool.getHitRate() > 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeSize()
+    {
+        SlicePool.heap(1024).allocate(-1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeMaxRetainedBytes()
+    {
+        SlicePool.heap(-1);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import com.google.common.base.Strings;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static com.facebook.slice.Slices.EMPTY_SLICE;
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+
+public class TestSliceSearcher
+{
+    @Test
+    public void testIndexOf()
+    {
+        assertIndexOf(utf8Slice("no-match-bigger"), utf8Slice("test"));
+        assertIndexOf(utf8Slice("no"), utf8Slice("test"));
+
+        assertIndexOf(utf8Slice("test"), utf8Slice("test"));
+        assertIndexOf(utf8Slice("test-start"), utf8Slice("test"));
+        assertIndexOf(utf8Slice("end-test"), utf8Slice("test"));
+        assertIndexOf(utf8Slice("a-test-middle"), utf8Slice("test"));
+        assertIndexOf(utf8Slice("this-test-is-a-test"), utf8Slice("test"));
+
+        Slice json = utf8Slice("{\"a\":\"x\",\"key\":\"value\",\"b\":\"key\",\"key\":\"other\"}");
+        assertIndexOf(json, utf8Slice("\"key\":\""));
+        assertIndexOf(json, utf8Slice("\"key\":\"value\",\"b\":\""));
+        assertIndexOf(json, utf8Slice("\"key\":\"value\",\"b\":\"missing"));
+
+        assertEquals(new SliceSearcher(EMPTY_SLICE).indexOf(utf8Slice("test")), 0);
+        assertEquals(new SliceSearcher(EMPTY_SLICE).indexOf(utf8Slice("test"), 2), 2);
+        assertEquals(new SliceSearcher(utf8Slice("test")).indexOf(EMPTY_SLICE), -1);
+        assertEquals(new SliceSearcher(utf8Slice("no")).indexOf(utf8Slice("test"), 4), -1);
+        assertEquals(new SliceSearcher(utf8Slice("no")).indexOf(utf8Slice("test"), 5), -1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeOffset()
+    {
+        new SliceSearcher(utf8Slice("test")).indexOf(utf8Slice("test"), -1);
+    }
+
+    @Test
+    public void testPeriodicPatterns()
+    {
+        // periodic patterns exercise the memory of the Two-Way search
+        assertIndexOf(utf8Slice(Strings.repeat("ab", 100)), utf8Slice(Strings.repeat("ab", 20)));
+        assertIndexOf(utf8Slice(Strings.repeat("ab", 100) + "c"), utf8Slice(Strings.repeat("ab", 20) + "c"));
+        assertIndexOf(utf8Slice(Strings.repeat("aab", 100)), utf8Slice(Strings.repeat("aab", 10) + "aa"));
+        assertIndexOf(utf8Slice(Strings.repeat("a", 500)), utf8Slice(Strings.repeat("a", 40)));
+        assertIndexOf(utf8Slice(Strings.repeat("a", 500)), utf8Slice(Strings.repeat("a", 40) + "b"));
+        assertIndexOf(utf8Slice(Strings.repeat("a", 500) + "b"), utf8Slice("b" + Strings.repeat("a", 40)));
+        assertIndexOf(utf8Slice(Strings.repeat("abcabd", 50)), utf8Slice(Strings.repeat("abcabd", 5) + "abc"));
+    }
+
+    @Test
+    public void testRandom()
+    {
+        // small alphabets produce many partial matches
+        Random random = new Random(42);
+        for (int alphabet = 2; alphabet <= 4; alphabet++) {
+            for (int size = 0; size < 300; size += 7) {
+                Slice data = randomSlice(random, size, alphabet);
+                for (int patternLength = 1; patternLength < 40; patternLength++) {
+                    assertIndexOf(data, randomSlice(random, patternLength, alphabet));
+
+                    // pattern taken from the data, so there is at least one match
+                    if (patternLength <= size) {
+                        int start = random.nextInt(size - patternLength + 1);
+                        assertIndexOf(data, data.slice(start, patternLength));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testHighBytes()
+    {
+        Slice data = Slices.allocate(200);
+        data.fill((byte) 0xFF);
+        data.setByte(150, 0x80);
+
+        Slice shortPattern = Slices.allocate(8);
+        shortPattern.fill((byte) 0xFF);
+        shortPattern.setByte(7, 0x80);
+        assertIndexOf(data, shortPattern);
+
+        Slice longPattern = Slices.allocate(40);
+        longPattern.fill((byte) 0xFF);
+        longPattern.setByte(39, 0x80);
+        assertIndexOf(data, longPattern);
+    }
+
+    @Test
+    public void testReuse()
+    {
+        SliceSearcher searcher = new SliceSearcher(utf8Slice("a-rather-long-pattern-for-two-way"));
+        assertEquals(searcher.indexOf(utf8Slice("xx-a-rather-long-pattern-for-two-way")), 3);
+        assertEquals(searcher.indexOf(utf8Slice("a-rather-long-pattern-for-two-wa")), -1);
+        assertEquals(searcher.indexOf(utf8Slice("a-rather-long-pattern-for-two-way")), 0);
+    }
+
+    @Test
+    public void testPatternIsCopied()
+    {
+        Slice pattern = utf8Slice("test");
+        SliceSearcher searcher = new SliceSearcher(pattern);
+        pattern.setByte(0, 'b');
+        assertEquals(searcher.getPattern(), utf8Slice("test"));
+        assertEquals(searcher.indexOf(utf8Slice("a-test")), 2);
+    }
+
+    @Test
+    public void testDirectSlice()
+    {
+        Slice data = Slices.allocateDirect(100);
+        data.fill((byte) 'a');
+        data.setBytes(60, utf8Slice("needle-in-a-direct-haystack"));
+        assertIndexOf(data, utf8Slice("needle"));
+        assertIndexOf(data, utf8Slice("needle-in-a-direct-haystack"));
+    }
+
+    private static Slice randomSlice(Random random, int length, int alphabet)
+    {
+        Slice slice = Slices.allocate(length);
+        for (int i = 0; i < length; i++) {
+            slice.setByte(i, 'a' + random.nextInt(alphabet));
+        }
+        return slice;
+    }
+
+    private static void assertIndexOf(Slice data, Slice pattern)
+    {
+        SliceSearcher searcher = new SliceSearcher(pattern);
+        for (int offset = 0; offset <= data.length(); offset++) {
+            assertEquals(searcher.indexOf(data, offset), data.indexOfBruteForce(pattern, offset), "offset " + offset);
+        }
+    }
+}
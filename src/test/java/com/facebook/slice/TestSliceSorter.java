@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.facebook.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceSorter
+{
+    @Test
+    public void testSort()
+    {
+        Slice[] slices = {
+                utf8Slice("banana"),
+                utf8Slice(""),
+                utf8Slice("apple"),
+                utf8Slice("app"),
+                utf8Slice("apple pie with cream"),
+                utf8Slice("apple pie"),
+                utf8Slice("b"),
+        };
+        SliceSorter.sort(slices);
+        assertEquals(slices, new Slice[] {
+                utf8Slice(""),
+                utf8Slice("app"),
+                utf8Slice("apple"),
+                utf8Slice("apple pie"),
+                utf8Slice("apple pie with cream"),
+                utf8Slice("b"),
+                utf8Slice("banana"),
+        });
+    }
+
+    @Test
+    public void testSortRandom()
+    {
+        Random random = new Random(42);
+        // sizes below and above the insertion sort threshold
+        for (int count : new int[] {0, 1, 2, 31, 32, 33, 1000, 20_000}) {
+            Slice[] slices = randomSlices(random, count);
+            Slice[] expected = slices.clone();
+            Arrays.sort(expected);
+
+            Slice[] actual = slices.clone();
+            SliceSorter.sort(actual);
+            assertEquals(actual, expected);
+
+            actual = slices.clone();
+            SliceSorter.parallelSort(actual, 100);
+            assertEquals(actual, expected);
+        }
+    }
+
+    @Test
+    public void testSortRange()
+    {
+        Random random = new Random(7);
+        Slice[] slices = randomSlices(random, 500);
+        Slice[] expected = slices.clone();
+        Arrays.sort(expected, 100, 400);
+
+        SliceSorter.sort(slices, 100, 400);
+        for (int i = 0; i < slices.length; i++) {
+            // the slices outside the range are untouched
+            assertTrue(slices[i] == expected[i] || (i >= 100 && i < 400 && slices[i].equals(expected[i])), "index " + i);
+        }
+    }
+
+    @Test
+    public void testSortLongSharedPrefix()
+    {
+        String prefix = "a shared prefix that spans several cached prefixes ";
+        Slice[] slices = new Slice[200];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = utf8Slice(prefix + (slices.length - i) % 37 + prefix.substring(0, i % 13));
+        }
+        Slice[] expected = slices.clone();
+        Arrays.sort(expected);
+
+        SliceSorter.sort(slices);
+        assertEquals(slices, expected);
+    }
+
+    @Test
+    public void testSortBlock()
+    {
+        Random random = new Random(3);
+        for (int count : new int[] {0, 10, 5000}) {
+            Slice[] keys = randomSlices(random, count);
+            DynamicSliceOutput output = new DynamicSliceOutput(16);
+            int[] offsets = new int[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = output.size();
+                lengths[i] = keys[i].length();
+                output.writeBytes(keys[i]);
+            }
+            Slice data = output.slice();
+
+            Arrays.sort(keys);
+            int[] sequentialOffsets = offsets.clone();
+            int[] sequentialLengths = lengths.clone();
+            SliceSorter.sort(data, sequentialOffsets, sequentialLengths);
+            assertBlockSorted(data, sequentialOffsets, sequentialLengths, keys);
+
+            SliceSorter.parallelSort(data, offsets, lengths, 64);
+            assertEquals(offsets, sequentialOffsets);
+            assertEquals(lengths, sequentialLengths);
+        }
+    }
+
+    @Test
+    public void testSortBlockIsStable()
+    {
+        Slice data = utf8Slice("xyzxyzabc");
+        int[] offsets = {6, 0, 3, 6, 3};
+        int[] lengths = {3, 3, 3, 2, 3};
+        SliceSorter.sort(data, offsets, lengths);
+        assertEquals(offsets, new int[] {6, 6, 0, 3, 3});
+        assertEquals(lengths, new int[] {2, 3, 3, 3, 3});
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testSortBlockOutOfBounds()
+    {
+        SliceSorter.sort(utf8Slice("abc"), new int[] {0, 2}, new int[] {1, 2});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSortBlockMismatchedArrays()
+    {
+        SliceSorter.sort(utf8Slice("abc"), new int[] {0, 1}, new int[] {1});
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testSortNullSlice()
+    {
+        SliceSorter.sort(new Slice[] {utf8Slice("a"), null});
+    }
+
+    private static void assertBlockSorted(Slice data, int[] offsets, int[] lengths, Slice[] expected)
+    {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(data.slice(offsets[i], lengths[i]), expected[i]);
+        }
+    }
+
+    private static Slice[] randomSlices(Random random, int count)
+    {
+        Slice[] slices = new Slice[count];
+        for (int i = 0; i < count; i++) {
+            // a small alphabet with zero bytes and common prefixes exercises padding and deep buckets
+            Slice slice = Slices.allocate(random.nextInt(24));
+            for (int index = 0; index < slice.length(); index++) {
+                slice.setByte(index, (index < 6) ? 'k' : random.nextInt(3) * 0x7F);
+            }
+            slices[i] = slice;
+        }
+        return slices;
+    }
+}
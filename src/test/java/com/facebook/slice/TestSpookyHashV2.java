@@ -302,10 +302,32 @@ public class TestSpookyHashV2
 
             for (int i = 0; i < expected.length; ++i) {
                 assertEquals(SpookyHashV2.hash64(data, offset, i, seed), expected[i], String.format("size: %s", i));
+                assertEquals(new SpookyHashV2(seed).update(data, offset, i).hash64(), expected[i], String.format("size: %s", i));
             }
         }
     }
 
+    @Test
+    public void testIncremental()
+    {
+        Slice data = makeData(0, 700);
+        SpookyHashV2 hasher = new SpookyHashV2(42);
+        for (int length = 0; length < data.length(); length++) {
+            long expected = SpookyHashV2.hash64(data, 0, length, 42);
+            for (int chunkSize : Ints.asList(1, 7, 95, 96, 97, 191, 192, 250)) {
+                hasher.reset();
+                for (int i = 0; i < length; i += chunkSize) {
+                    hasher.update(data, i, Math.min(chunkSize, length - i));
+                }
+                assertEquals(hasher.hash64(), expected, String.format("size: %s, chunk size: %s", length, chunkSize));
+                // hashing does not change the state
+                assertEquals(hasher.hash64(), expected);
+                assertEquals(hasher.hash32(), (int) expected);
+            }
+            assertEquals(new SpookyHashV2(42).update(data.getBytes(0, length)).hash64(), expected);
+        }
+    }
+
     private Slice makeData(int start, int length)
     {
         byte[] data = new byte[start + length];
@@ -0,0 +1,223 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.slice;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static com.facebook.slice.XxHash3.hash;
+import static com.facebook.slice.XxHash3.hash128;
+import static org.testng.Assert.assertEquals;
+
+public class TestXxHash3
+{
+    private static final long PRIME64 = 0x9E3779B185EBCA8DL;
+
+    // {length, seed, 64 bit hash, low and high 64 bits of the 128 bit hash} of a prefix of the sanity buffer, from the reference implementation
+    private static final long[][] REFERENCE_VECTORS = {
+            {0, 0, 0x2D06800538D394C2L, 0x6001C324468D497FL, 0x99AA06D3014798D8L},
+            {1, 0, 0xC44BDFF4074EECDBL, 0xC44BDFF4074EECDBL, 0xA6CD5E9392000F6AL},
+            {2, 0, 0x7A9978044CB8A8BBL, 0x7A9978044CB8A8BBL, 0x76750C3C7BF95668L},
+            {3, 0, 0x54247382A8D6B94DL, 0x54247382A8D6B94DL, 0x20EFC49FF02422EAL},
+            {4, 0, 0xE5DC74BC51848A51L, 0x2E7D8D6876A39FE9L, 0x970D585AC632BF8EL},
+            {6, 0, 0x27B56A84CD2D7325L, 0x3E7039BDDA43CFC6L, 0x082AFE0B8162D12AL},
+            {8, 0, 0x24CCC9ACAA9F65E4L, 0x64C69CAB4BB21DC5L, 0x47A7F080D82BB456L},
+            {9, 0, 0x14D5001C15DD3F2BL, 0xED7CCBC501EB7501L, 0x564EF6078950D457L},
+            {12, 0, 0xA713DAF0DFBB77E7L, 0x061A192713F69AD9L, 0x6E3EFD8FC7802B18L},
+            {16, 0, 0x981B17D36C7498C9L, 0x562980258A998629L, 0xC68C368ECF8A9C05L},
+            {17, 0, 0x796F5ACD3A60F862L, 0xABBC12D11973D7DBL, 0x955FA78643ED3669L},
+            {24, 0, 0xA3FE70BF9D3510EBL, 0x1E7044D28B1B901DL, 0x0CE966E4678D3761L},
+            {32, 0, 0x9FEADDBDBF57EED3L, 0x278410A17595E3F9L, 0x98FC6458710DC2E8L},
+            {33, 0, 0xABFB2D081B400A10L, 0xE593BC4E5914C9D1L, 0x3103C192CEAA2DEDL},
+            {48, 0, 0x397DA259ECBA1F11L, 0xF942219AED80F67BL, 0xA002AC4E5478227EL},
+            {64, 0, 0x9CB48487720EC49DL, 0xEFDB6A44690721A9L, 0x6D90E81A9B0FD622L},
+            {65, 0, 0xFD81AAC4BEBC3883L, 0xFE2F650FA500EC6EL, 0x6C074D65E54DB85AL},
+            {80, 0, 0xBCDEFBBB2C47C90AL, 0x454AE6BF7A8A532DL, 0xFDF2CEFDE9EAAC8AL},
+            {96, 0, 0x935A769A7F94776FL, 0xE9324473EA9AFEBEL, 0xD9D0B885F56C93F1L},
+            {97, 0, 0xCA4CA268FD3C3A6CL, 0x7C87228AE9671BA7L, 0x09DFF37FAA6B284CL},
+            {128, 0, 0xFCFF24126754D861L, 0xEBB15E34A7FB5AB1L, 0x39992220E045260AL},
+            {129, 0, 0x98F1B0A679A2CA29L, 0x86C9E3BC8F0A3B5CL, 0x03815FC91F1B30B6L},
+            {160, 0, 0x9D03A319ED4CBD2BL, 0x737126C8D7C09CEEL, 0xBA5D218964B622ADL},
+            {195, 0, 0xCD94217EE362EC3AL, 0x3FB593C086A66075L, 0x7729543A26B207EEL},
+            {240, 0, 0x81C3C2B67F568CCFL, 0x5C9AAE94C8EBE5A0L, 0xAA4202DAA2769DC8L},
+            {241, 0, 0xC5A639ECD2030E5EL, 0xC5A639ECD2030E5EL, 0x99A80ECF0ECFC647L},
+            {256, 0, 0x55DE574AD89D0AC5L, 0x55DE574AD89D0AC5L, 0x8B1C66091423D288L},
+            {403, 0, 0xCDEB804D65C6DEA4L, 0xCDEB804D65C6DEA4L, 0x1B6DE21E332DD73DL},
+            {512, 0, 0x617E49599013CB6BL, 0x617E49599013CB6BL, 0x18D2D110DCC9BCA1L},
+            {1024, 0, 0xDD85C9B5C1109C5CL, 0xDD85C9B5C1109C5CL, 0x0D30D24071C64C57L},
+            {1025, 0, 0xD870C0FA13211C6AL, 0xD870C0FA13211C6AL, 0xFD3EE4FE7F2954C6L},
+            {2048, 0, 0xDD59E2C3A5F038E0L, 0xDD59E2C3A5F038E0L, 0xF736557FD47073A5L},
+            {2240, 0, 0x6E73A90539CF2948L, 0x6E73A90539CF2948L, 0xCCB134FBFA7CE49DL},
+            {2367, 0, 0xCB37AEB9E5D361EDL, 0xCB37AEB9E5D361EDL, 0xE89C0F6FF369B427L},
+            {4096, 0, 0xE91206429D1F48F9L, 0xE91206429D1F48F9L, 0xB9CFAEA2CA5626A4L},
+            {0, PRIME64, 0xA8A6B918B2F0364AL, 0xA986DFC5D7605BFEL, 0x00FEAA732A3CE25EL},
+            {1, PRIME64, 0x032BE332DD766EF8L, 0x032BE332DD766EF8L, 0x20E49ABCC53B3842L},
+            {2, PRIME64, 0x764B35C90519AD88L, 0x764B35C90519AD88L, 0x7B96E6A600DAE67DL},
+            {3, PRIME64, 0x634B8990B4976373L, 0x634B8990B4976373L, 0x1C7ECF6A308CF00EL},
+            {4, PRIME64, 0xAA2E7ECCB0C8F747L, 0xBFAF51F1E67E0B0FL, 0x3D53E5DFD837D927L},
+            {6, PRIME64, 0x84589C116AB59AB9L, 0xC5B54D56038E4E40L, 0x014BD95A51CA5DDBL},
+            {8, PRIME64, 0x8F973410999B8F6BL, 0x7B29471DC729B5FFL, 0xF50CEC145BCD5C5AL},
+            {9, PRIME64, 0xB3AE7333D9013F60L, 0xAEF5DFC0AC9F9044L, 0x6B380B43FFA61042L},
+            {12, PRIME64, 0xE7303E1B2336DE0EL, 0x5D92B5D7190B12D1L, 0xFF0D60ACD02ED401L},
+            {16, PRIME64, 0x663F29333B4DB6B1L, 0x0346D13A7A5498C7L, 0x6FFCB80CD33085C8L},
+            {17, PRIME64, 0xF3EC5067F4306DB3L, 0x980A14119985A7DFL, 0xD77681219E464828L},
+            {24, PRIME64, 0x850E80FC35BDD690L, 0xC6CBF92A70680B19L, 0xD7895DED1F62559DL},
+            {32, PRIME64, 0x2199FAB1534893D9L, 0x0054E82631CEF166L, 0xCC587E4FCDB86BC5L},
+            {33, PRIME64, 0xAD56348DA574BB6DL, 0xC361D36CEA597C31L, 0x21273C8190C645CDL},
+            {48, PRIME64, 0xADC2CBAA44ACC616L, 0x3A94D91333ED395AL, 0xBC689F4C0152FB44L},
+            {64, PRIME64, 0x4FE8895DB9B8C077L, 0x9405BA2AFFA95CEBL, 0x37B738968D40BDA5L},
+            {65, PRIME64, 0xAD80AEEC1FC9E0A7L, 0x9D60C345E5C297CDL, 0x72503A6FA8D07ADBL},
+            {80, PRIME64, 0xC6DD0CB699532E73L, 0xA5EAC764D1FF1166L, 0x19BF02D69BC56833L},
+            {96, PRIME64, 0x70CF51937E500540L, 0xD61F3AB58705C405L, 0x6F9ED3C2008CB388L},
+            {97, PRIME64, 0xEE461D3ADD7EE6C9L, 0x49EA87F2AFE44F66L, 0x14E68F850B481ADAL},
+            {128, PRIME64, 0x73FDE75280646649L, 0x8394F5C51F1D8246L, 0xA0F7CCB68EE02ADDL},
+            {129, PRIME64, 0x21FFFDBCA099C844L, 0xD4AAE26FCEC7DC03L, 0xAD559266067C0BF3L},
+            {160, PRIME64, 0x3825C75FFE70FDE0L, 0x46A4A3F67CCD556EL, 0xC6B7ABC26DEF52ACL},
+            {195, PRIME64, 0xBA68003D370CB3D9L, 0xCF9D9EC2C8C9913FL, 0x0326104C4D4849E7L},
+            {240, PRIME64, 0xCC0F58C27EF3D8EEL, 0x604E98DB085C1864L, 0x29D2133D6EA58C5BL},
+            {241, PRIME64, 0xDDA9B0A161D4829AL, 0xDDA9B0A161D4829AL, 0xEC64AFAE6A137582L},
+            {256, PRIME64, 0x4D30234B7A3AA61CL, 0x4D30234B7A3AA61CL, 0xAAA57235B92D5E7CL},
+            {403, PRIME64, 0x6259F6ECFD6443FDL, 0x6259F6ECFD6443FDL, 0xBED311971E0BE8F2L},
+            {512, PRIME64, 0x3CE457DE14C27708L, 0x3CE457DE14C27708L, 0x925D06B8EC5B8040L},
+            {1024, PRIME64, 0xEF368A8A2EBABAEFL, 0xEF368A8A2EBABAEFL, 0x17600EFE2B493A18L},
+            {1025, PRIME64, 0x96792BCF9AF88519L, 0x96792BCF9AF88519L, 0x2C383949F57BF7E1L},
+            {2048, PRIME64, 0x66F81670669ABABCL, 0x66F81670669ABABCL, 0x23CC3A2E75EBAAEAL},
+            {2240, PRIME64, 0x757BA8487D1B5247L, 0x757BA8487D1B5247L, 0xE40842F585875BA9L},
+            {2367, PRIME64, 0xD2DB3415B942B42AL, 0xD2DB3415B942B42AL, 0xCCB7A94CCA1A6496L},
+            {4096, PRIME64, 0x2A3BBB20A5439DCDL, 0x2A3BBB20A5439DCDL, 0x8FBC8FD4D526D1BDL},
+    };
+
+    private final Slice buffer;
+
+    public TestXxHash3()
+    {
+        // the sanity buffer used by the xxHash reference tests
+        buffer = Slices.allocate(4096);
+        long value = 2654435761L;
+        for (int i = 0; i < buffer.length(); i++) {
+            buffer.setByte(i, (byte) (value >>> 56));
+            value *= PRIME64;
+        }
+    }
+
+    @Test
+    public void testReferenceVectors()
+    {
+        for (long[] vector : REFERENCE_VECTORS) {
+            int length = (int) vector[0];
+            long seed = vector[1];
+            Slice data = buffer.slice(0, length);
+
+            assertEquals(hash(seed, data), vector[2], "length " + length);
+            assertEquals(new XxHash3(seed).update(data).hash(), vector[2], "length " + length);
+
+            Slice hash128 = hash128(seed, data);
+            assertEquals(hash128.getLong(0), vector[3], "length " + length);
+            assertEquals(hash128.getLong(8), vector[4], "length " + length);
+            assertEquals(new XxHash3(seed).update(data).hash128(), hash128, "length " + length);
+
+            if (seed == 0) {
+                assertEquals(hash(data), vector[2]);
+                assertEquals(hash128(data), hash128);
+            }
+        }
+    }
+
+    @Test
+    public void testIncremental()
+    {
+        int[] chunkSizes = {1, 7, 63, 64, 65, 255, 256, 257, 1000, 5000};
+        for (int length = 0; length <= buffer.length(); length += (length < 600) ? 1 : 97) {
+            for (long seed : new long[] {0, PRIME64}) {
+                long expected = hash(seed, buffer, 0, length);
+                Slice expected128 = hash128(seed, buffer, 0, length);
+                for (int chunkSize : chunkSizes) {
+                    XxHash3 hash = new XxHash3(seed);
+                    for (int offset = 0; offset < length; offset += chunkSize) {
+                        hash.update(buffer, offset, Math.min(chunkSize, length - offset));
+                    }
+                    assertEquals(hash.hash(), expected, "length " + length + ", chunk " + chunkSize);
+                    assertEquals(hash.hash128(), expected128, "length " + length + ", chunk " + chunkSize);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDigestDoesNotChangeState()
+    {
+        XxHash3 hash = new XxHash3(PRIME64);
+        for (int offset = 0; offset < buffer.length(); offset += 100) {
+            hash.update(buffer, offset, Math.min(100, buffer.length() - offset));
+            long expected = hash(PRIME64, buffer, 0, Math.min(offset + 100, buffer.length()));
+            assertEquals(hash.hash(), expected);
+            assertEquals(hash.hash(), expected);
+            hash.hash128();
+        }
+    }
+
+    @Test
+    public void testReset()
+    {
+        XxHash3 hash = new XxHash3(PRIME64).update(buffer);
+        hash.reset();
+        assertEquals(hash.update(buffer, 0, 14).hash(), hash(PRIME64, buffer, 0, 14));
+    }
+
+    @Test
+    public void testOffset()
+    {
+        for (int length : new int[] {0, 3, 8, 16, 100, 200, 1500}) {
+            Slice copy = Slices.copyOf(buffer, 17, length);
+            assertEquals(hash(buffer, 17, length), hash(copy));
+            assertEquals(hash128(buffer, 17, length), hash128(copy));
+            assertEquals(new XxHash3().update(buffer.getBytes(), 17, length).hash(), hash(copy));
+        }
+    }
+
+    @Test
+    public void testHashLong()
+    {
+        assertEquals(hash(0x0123456789ABCDEFL), 0xB78DF414284277A6L);
+        assertEquals(hash(buffer.getLong(0)), hash(buffer, 0, SizeOf.SIZE_OF_LONG));
+    }
+
+    @Test
+    public void testStreams()
+            throws IOException
+    {
+        for (int length : new int[] {0, 100, 1000, 4096}) {
+            Slice data = buffer.slice(0, length);
+            long expected = hash(data);
+            assertEquals(hash(new ByteArrayInputStream(data.getBytes())), expected);
+            assertEquals(hash(data.getInput()), expected);
+            assertEquals(hash(PRIME64, new ChunkedSliceInput(new TestChunkedSliceInput.SliceSliceLoader(data), 129)), hash(PRIME64, data));
+            assertEquals(new XxHash3().update(data.getInput(), length).hash(), expected);
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testSliceInputTooShort()
+    {
+        new XxHash3().update(Slices.utf8Slice("abc").getInput(), 4);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testOutOfBounds()
+    {
+        hash(buffer, buffer.length() - 1, 2);
+    }
+}
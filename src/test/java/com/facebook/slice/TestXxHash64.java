@@ -13,6 +13,7 @@
  */
 package com.facebook.slice;
 
+import com.google.common.collect.ImmutableList;
 import net.jpountz.xxhash.XXHash64;
 import net.jpountz.xxhash.XXHashFactory;
 import org.testng.annotations.Test;
@@ -21,9 +22,11 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import static com.facebook.slice.Slices.EMPTY_SLICE;
+import static com.facebook.slice.Slices.utf8Slice;
 import static com.facebook.slice.XxHash64.hash;
 import static java.lang.Math.min;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
 
 public class TestXxHash64
 {
@@ -109,6 +112,110 @@ public class TestXxHash64
         }
     }
 
+    @Test
+    public void testSliceInput()
+    {
+        XXHash64 jpountz = XXHashFactory.fastestInstance().hash64();
+        for (int length : new int[] {0, 1, 31, 32, 100, 4095, 4096, 10_000}) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) (i * 31);
+            }
+            long expected = jpountz.hash(data, 0, data.length, 0);
+            Slice slice = Slices.wrappedBuffer(data);
+
+            assertEquals(hash(slice.getInput()), expected);
+            assertEquals(hash(new InputStreamSliceInput(new ByteArrayInputStream(data), 1024)), expected);
+            assertEquals(hash(new ChunkedSliceInput(new TestChunkedSliceInput.SliceSliceLoader(slice), 129)), expected);
+            assertEquals(hash(PRIME, new ChunkedSliceInput(new TestChunkedSliceInput.SliceSliceLoader(slice), 129)), hash(PRIME, slice));
+
+            for (SliceInput input : ImmutableList.of(
+                    slice.getInput(),
+                    new InputStreamSliceInput(new ByteArrayInputStream(data), 1024),
+                    new ChunkedSliceInput(new TestChunkedSliceInput.SliceSliceLoader(slice), 129))) {
+                // hash the input in two parts, interleaved with other reads
+                XxHash64 hash = new XxHash64();
+                int split = length / 3;
+                hash.update(input, split);
+                if (split < length) {
+                    hash.update(Slices.wrappedBuffer(input.readByte()));
+                    hash.update(input, length - split - 1);
+                }
+                assertEquals(hash.hash(), expected);
+                assertEquals(input.readBufferedSlice(100).length(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testReset()
+    {
+        XxHash64 hash = new XxHash64(PRIME).update(buffer);
+        hash.reset();
+        assertEquals(hash.update(buffer, 0, 14).hash(), hash(PRIME, buffer, 0, 14));
+    }
+
+    @Test
+    public void testHashBatch()
+    {
+        // values of every length up to two stripes, back to back
+        int count = 70;
+        int[] offsets = new int[count + 1];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            lengths[i] = i;
+            offsets[i + 1] = offsets[i] + i;
+        }
+        Slice data = Slices.allocate(offsets[count]);
+        for (int i = 0; i < data.length(); i++) {
+            data.setByte(i, buffer.getByte(i % buffer.length()));
+        }
+
+        long[] hashes = new long[count];
+        XxHash64.hashBatch(data, offsets, lengths, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], hash(data, offsets[i], lengths[i]));
+        }
+
+        XxHash64.hashBatch(PRIME, data, offsets, lengths, count, hashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(hashes[i], hash(PRIME, data, offsets[i], lengths[i]));
+        }
+
+        long[] packedHashes = new long[count];
+        XxHash64.hashBatch(data, offsets, count, packedHashes);
+        for (int i = 0; i < count; i++) {
+            assertEquals(packedHashes[i], hash(data, offsets[i], lengths[i]));
+        }
+    }
+
+    @Test
+    public void testHashBatchOutOfBounds()
+    {
+        long[] hashes = {1, 2};
+        try {
+            XxHash64.hashBatch(utf8Slice("abc"), new int[] {0, 2}, new int[] {1, 2}, 2, hashes);
+            fail("expected IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException expected) {
+        }
+        // nothing is hashed when any range is invalid
+        assertEquals(hashes, new long[] {1, 2});
+
+        try {
+            XxHash64.hashBatch(utf8Slice("abc"), new int[] {0, 1}, 2, hashes);
+            fail("expected IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testSliceInputTooShort()
+    {
+        new XxHash64().update(utf8Slice("abc").getInput(), 4);
+    }
+
     @Test
     public void testEmpty()
             throws Exception